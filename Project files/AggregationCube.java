@@ -0,0 +1,257 @@
+import java.util.Arrays;
+
+// Count, sum, min and max of age, blood pressure and cholesterol for every combination of age group,
+// blood group, diagnosis and risk tier. Cells live in flat primitive arrays indexed by the members'
+// codes, diagnosis outermost so that new diagnoses only extend the arrays. The cube is filled in the
+// accumulator's pass over the rows and merged like the rest of it; queries then roll up, slice and
+// pivot over the cells alone, a few thousand of them at most, without touching the rows.
+public class AggregationCube {
+    public static final int AGE = 0, BLOOD_PRESSURE = 1, CHOLESTEROL = 2;
+    // A slice member meaning "every member of this dimension"
+    public static final int ALL = -1;
+    private static final int MEASURES = 3;
+    private static final int TIERS = RiskTier.values().length;
+    private static final CubeDimension[] DIMENSIONS = CubeDimension.values();
+
+    private final int ageGroups;
+    private int bloodGroups, diagnoses;
+    private int[] counts;
+    private long[] sums;
+    private int[] mins, maxs;
+    private final String[] ageGroupLabels, bloodGroupLabels, diagnosisLabels;
+
+    AggregationCube(int ageGroups) {
+        this.ageGroups = ageGroups;
+        counts = new int[0];
+        sums = new long[0];
+        mins = new int[0];
+        maxs = new int[0];
+        ageGroupLabels = bloodGroupLabels = diagnosisLabels = null;
+    }
+
+    private AggregationCube(AggregationCube source, String[] ageGroupLabels, String[] bloodGroupLabels,
+                            String[] diagnosisLabels) {
+        ageGroups = source.ageGroups;
+        bloodGroups = bloodGroupLabels.length;
+        diagnoses = diagnosisLabels.length;
+        int cells = cellCount(bloodGroups, diagnoses);
+        counts = new int[cells];
+        sums = new long[cells * MEASURES];
+        mins = new int[cells * MEASURES];
+        maxs = new int[cells * MEASURES];
+        this.ageGroupLabels = ageGroupLabels;
+        this.bloodGroupLabels = bloodGroupLabels;
+        this.diagnosisLabels = diagnosisLabels;
+        merge(source);
+    }
+
+    // An immutable copy covering exactly the given dictionary members, for an AnalysisSnapshot.
+    AggregationCube freeze(String[] ageGroupLabels, String[] bloodGroupLabels, String[] diagnosisLabels) {
+        return new AggregationCube(this, ageGroupLabels, bloodGroupLabels, diagnosisLabels);
+    }
+
+    private int cellCount(int bloodGroups, int diagnoses) {
+        return diagnoses * bloodGroups * ageGroups * TIERS;
+    }
+
+    private int cell(int ageGroup, int bloodGroup, int diagnosis, int tier) {
+        return ((diagnosis * bloodGroups + bloodGroup) * ageGroups + ageGroup) * TIERS + tier;
+    }
+
+    // Makes room for the given numbers of blood group and diagnosis codes before rows using them are added.
+    void ensureCapacity(int bloodGroupCount, int diagnosisCount) {
+        if (bloodGroupCount <= bloodGroups && diagnosisCount <= diagnoses) return;
+        int newBloodGroups = Math.max(bloodGroups, bloodGroupCount);
+        int newDiagnoses = diagnosisCount <= diagnoses ? diagnoses : Math.max(diagnosisCount, diagnoses * 2);
+        int cells = cellCount(newBloodGroups, newDiagnoses);
+        if (newBloodGroups == bloodGroups) {
+            counts = Arrays.copyOf(counts, cells);
+            sums = Arrays.copyOf(sums, cells * MEASURES);
+            mins = Arrays.copyOf(mins, cells * MEASURES);
+            maxs = Arrays.copyOf(maxs, cells * MEASURES);
+        } else {
+            // A new blood group moves every diagnosis block, so the cells are copied one run at a time
+            int[] newCounts = new int[cells];
+            long[] newSums = new long[cells * MEASURES];
+            int[] newMins = new int[cells * MEASURES];
+            int[] newMaxs = new int[cells * MEASURES];
+            int run = ageGroups * TIERS;
+            for (int diagnosis = 0; diagnosis < diagnoses; diagnosis++) {
+                for (int bloodGroup = 0; bloodGroup < bloodGroups; bloodGroup++) {
+                    int from = cell(0, bloodGroup, diagnosis, 0);
+                    int to = ((diagnosis * newBloodGroups + bloodGroup) * ageGroups) * TIERS;
+                    System.arraycopy(counts, from, newCounts, to, run);
+                    System.arraycopy(sums, from * MEASURES, newSums, to * MEASURES, run * MEASURES);
+                    System.arraycopy(mins, from * MEASURES, newMins, to * MEASURES, run * MEASURES);
+                    System.arraycopy(maxs, from * MEASURES, newMaxs, to * MEASURES, run * MEASURES);
+                }
+            }
+            counts = newCounts;
+            sums = newSums;
+            mins = newMins;
+            maxs = newMaxs;
+        }
+        bloodGroups = newBloodGroups;
+        diagnoses = newDiagnoses;
+    }
+
+    // Min and max of an empty cell are meaningless, so the first patient in a cell sets them.
+    void add(int ageGroup, int bloodGroup, int diagnosis, int tier, int age, int bp, int cholesterol) {
+        int cell = cell(ageGroup, bloodGroup, diagnosis, tier);
+        int base = cell * MEASURES;
+        boolean first = counts[cell]++ == 0;
+        sums[base + AGE] += age;
+        sums[base + BLOOD_PRESSURE] += bp;
+        sums[base + CHOLESTEROL] += cholesterol;
+        if (first) {
+            mins[base + AGE] = maxs[base + AGE] = age;
+            mins[base + BLOOD_PRESSURE] = maxs[base + BLOOD_PRESSURE] = bp;
+            mins[base + CHOLESTEROL] = maxs[base + CHOLESTEROL] = cholesterol;
+            return;
+        }
+        mins[base + AGE] = Math.min(mins[base + AGE], age);
+        maxs[base + AGE] = Math.max(maxs[base + AGE], age);
+        mins[base + BLOOD_PRESSURE] = Math.min(mins[base + BLOOD_PRESSURE], bp);
+        maxs[base + BLOOD_PRESSURE] = Math.max(maxs[base + BLOOD_PRESSURE], bp);
+        mins[base + CHOLESTEROL] = Math.min(mins[base + CHOLESTEROL], cholesterol);
+        maxs[base + CHOLESTEROL] = Math.max(maxs[base + CHOLESTEROL], cholesterol);
+    }
+
+    // Codes come from the same dictionaries, so cells line up; only this cube's shape may differ.
+    void merge(AggregationCube other) {
+        for (int diagnosis = 0; diagnosis < Math.min(diagnoses, other.diagnoses); diagnosis++) {
+            for (int bloodGroup = 0; bloodGroup < Math.min(bloodGroups, other.bloodGroups); bloodGroup++) {
+                for (int ageGroup = 0; ageGroup < ageGroups; ageGroup++) {
+                    for (int tier = 0; tier < TIERS; tier++) {
+                        int from = other.cell(ageGroup, bloodGroup, diagnosis, tier);
+                        if (other.counts[from] == 0) continue;
+                        mergeCell(cell(ageGroup, bloodGroup, diagnosis, tier), other, from);
+                    }
+                }
+            }
+        }
+    }
+
+    private void mergeCell(int cell, AggregationCube other, int from) {
+        boolean first = counts[cell] == 0;
+        counts[cell] += other.counts[from];
+        for (int measure = 0; measure < MEASURES; measure++) {
+            int to = cell * MEASURES + measure;
+            int source = from * MEASURES + measure;
+            sums[to] += other.sums[source];
+            mins[to] = first ? other.mins[source] : Math.min(mins[to], other.mins[source]);
+            maxs[to] = first ? other.maxs[source] : Math.max(maxs[to], other.maxs[source]);
+        }
+    }
+
+    public int getMemberCount(CubeDimension dimension) {
+        switch (dimension) {
+            case AGE_GROUP: return ageGroups;
+            case BLOOD_GROUP: return bloodGroups;
+            case DIAGNOSIS: return diagnoses;
+            default: return TIERS;
+        }
+    }
+
+    public String getMemberLabel(CubeDimension dimension, int member) {
+        switch (dimension) {
+            case AGE_GROUP: return ageGroupLabels != null ? ageGroupLabels[member] : Integer.toString(member);
+            case BLOOD_GROUP: return bloodGroupLabels != null ? bloodGroupLabels[member] : Integer.toString(member);
+            case DIAGNOSIS: return diagnosisLabels != null ? diagnosisLabels[member] : Integer.toString(member);
+            default: return RiskTier.values()[member].name();
+        }
+    }
+
+    // The member of `dimension` whose label is `label`, or -1.
+    public int memberOf(CubeDimension dimension, String label) {
+        for (int member = 0; member < getMemberCount(dimension); member++) {
+            if (getMemberLabel(dimension, member).equals(label)) return member;
+        }
+        return -1;
+    }
+
+    // A slice that selects every member of every dimension; set entries, indexed by dimension ordinal,
+    // to narrow it down.
+    public static int[] allMembers() {
+        int[] slice = new int[DIMENSIONS.length];
+        Arrays.fill(slice, ALL);
+        return slice;
+    }
+
+    public CubeAggregate aggregate(int[] slice) {
+        return collect(slice, null, null)[0];
+    }
+
+    // One aggregate per member of `dimension` within the slice.
+    public CubeAggregate[] rollUp(CubeDimension dimension, int[] slice) {
+        return collect(slice, dimension, null);
+    }
+
+    // aggregates[r][c] covers row member r and column member c of the two dimensions, within the slice.
+    public CubeAggregate[][] pivot(CubeDimension rows, CubeDimension columns, int[] slice) {
+        if (rows == columns) throw new IllegalArgumentException("Rows and columns must be different dimensions");
+        CubeAggregate[] flat = collect(slice, rows, columns);
+        int columnCount = getMemberCount(columns);
+        CubeAggregate[][] result = new CubeAggregate[getMemberCount(rows)][];
+        for (int row = 0; row < result.length; row++) {
+            result[row] = Arrays.copyOfRange(flat, row * columnCount, (row + 1) * columnCount);
+        }
+        return result;
+    }
+
+    // Folds every cell in the slice into the target of its members of `rows` and `columns` (either may
+    // be null, for a single target).
+    private CubeAggregate[] collect(int[] slice, CubeDimension rows, CubeDimension columns) {
+        if (slice.length != DIMENSIONS.length) throw new IllegalArgumentException("One slice entry per dimension");
+        int columnCount = columns == null ? 1 : getMemberCount(columns);
+        int targets = (rows == null ? 1 : getMemberCount(rows)) * columnCount;
+        long[] targetCounts = new long[targets];
+        long[] targetSums = new long[targets * MEASURES];
+        int[] targetMins = new int[targets * MEASURES];
+        int[] targetMaxs = new int[targets * MEASURES];
+        int[] members = new int[DIMENSIONS.length];
+        for (int diagnosis = 0; diagnosis < diagnoses; diagnosis++) {
+            if (!selected(slice, CubeDimension.DIAGNOSIS, diagnosis)) continue;
+            members[CubeDimension.DIAGNOSIS.ordinal()] = diagnosis;
+            for (int bloodGroup = 0; bloodGroup < bloodGroups; bloodGroup++) {
+                if (!selected(slice, CubeDimension.BLOOD_GROUP, bloodGroup)) continue;
+                members[CubeDimension.BLOOD_GROUP.ordinal()] = bloodGroup;
+                for (int ageGroup = 0; ageGroup < ageGroups; ageGroup++) {
+                    if (!selected(slice, CubeDimension.AGE_GROUP, ageGroup)) continue;
+                    members[CubeDimension.AGE_GROUP.ordinal()] = ageGroup;
+                    for (int tier = 0; tier < TIERS; tier++) {
+                        if (!selected(slice, CubeDimension.RISK_TIER, tier)) continue;
+                        int cell = cell(ageGroup, bloodGroup, diagnosis, tier);
+                        if (counts[cell] == 0) continue;
+                        members[CubeDimension.RISK_TIER.ordinal()] = tier;
+                        int target = (rows == null ? 0 : members[rows.ordinal()] * columnCount)
+                                + (columns == null ? 0 : members[columns.ordinal()]);
+                        boolean first = targetCounts[target] == 0;
+                        targetCounts[target] += counts[cell];
+                        for (int measure = 0; measure < MEASURES; measure++) {
+                            int to = target * MEASURES + measure;
+                            int from = cell * MEASURES + measure;
+                            targetSums[to] += sums[from];
+                            targetMins[to] = first ? mins[from] : Math.min(targetMins[to], mins[from]);
+                            targetMaxs[to] = first ? maxs[from] : Math.max(targetMaxs[to], maxs[from]);
+                        }
+                    }
+                }
+            }
+        }
+        CubeAggregate[] result = new CubeAggregate[targets];
+        for (int target = 0; target < targets; target++) {
+            int from = target * MEASURES;
+            result[target] = new CubeAggregate(targetCounts[target],
+                    Arrays.copyOfRange(targetSums, from, from + MEASURES),
+                    Arrays.copyOfRange(targetMins, from, from + MEASURES),
+                    Arrays.copyOfRange(targetMaxs, from, from + MEASURES));
+        }
+        return result;
+    }
+
+    private static boolean selected(int[] slice, CubeDimension dimension, int member) {
+        int wanted = slice[dimension.ordinal()];
+        return wanted == ALL || wanted == member;
+    }
+}
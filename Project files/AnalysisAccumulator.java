@@ -0,0 +1,166 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class AnalysisAccumulator {
+    public static final int PARALLEL_THRESHOLD = 100_000;
+    private static final int SPLIT_SIZE = 32_768;
+
+    private final PatientStore store;
+    private final RiskScores riskScores;
+    final RiskRules rules;
+
+    int count;
+    final PatientStatistics statistics = new PatientStatistics();
+    final AggregationCube cube;
+
+    int highBPHighChol, highBPWithHeart, diabetesOver50, healthyUnder30;
+    final int[] ageGroups;
+
+    int[] diagnosisCounts = new int[16];
+    final int[] bloodGroupCounts = new int[256];
+
+    private int knownDiagnoses = -1;
+    private boolean[] heartRelated = new boolean[0];
+    private int healthyCode = -1, diabetesCode = -1;
+
+    // The cube's risk tiers are read from the scores, which must cover every row added here.
+    public AnalysisAccumulator(PatientStore store, RiskScores riskScores) {
+        this.store = store;
+        this.riskScores = riskScores;
+        rules = riskScores.getRules();
+        ageGroups = new int[rules.getAgeGroupCount()];
+        cube = new AggregationCube(ageGroups.length);
+    }
+
+    public void addRows(int from, int to) {
+        refreshDiagnosisCodes();
+        statistics.addRows(store, from, to);
+        cube.ensureCapacity(store.getBloodGroups().size(), knownDiagnoses);
+        for (int row = from; row < to; row++) {
+            int age = store.getAge(row);
+            int bp = store.getBloodPressure(row);
+            int chol = store.getCholesterol(row);
+            int diagnosisCode = store.getDiagnosisCode(row);
+
+            count++;
+
+            if (rules.isHighBloodPressure(bp) && rules.isHighCholesterol(chol)) {
+                highBPHighChol++;
+                if (heartRelated[diagnosisCode]) {
+                    highBPWithHeart++;
+                }
+            }
+            if (rules.isDiabetesAge(age) && diagnosisCode == diabetesCode) {
+                diabetesOver50++;
+            }
+            if (rules.isYoung(age) && diagnosisCode == healthyCode) {
+                healthyUnder30++;
+            }
+
+            int ageGroup = rules.ageGroup(age);
+            int bloodGroupCode = store.getBloodGroupCode(row);
+            ageGroups[ageGroup]++;
+
+            diagnosisCounts[diagnosisCode]++;
+            bloodGroupCounts[bloodGroupCode]++;
+
+            int tier = riskScores.getTier(row).ordinal();
+            cube.add(ageGroup, bloodGroupCode, diagnosisCode, tier, age, bp, chol);
+        }
+    }
+
+    public void addRows(int from, int to, ForkJoinPool pool) {
+        addRows(from, to, pool, TaskMonitor.NONE);
+    }
+
+    public void addRows(int from, int to, ForkJoinPool pool, TaskMonitor monitor) {
+        if (to - from < PARALLEL_THRESHOLD) {
+            addRows(from, to, monitor);
+            return;
+        }
+        refreshDiagnosisCodes();
+        merge(pool.invoke(new RangeTask(store, riskScores, from, to, monitor)));
+    }
+
+    public void addRows(int from, int to, TaskMonitor monitor) {
+        for (int blockStart = from; blockStart < to; blockStart += SPLIT_SIZE) {
+            monitor.checkCancelled();
+            monitor.progress("Analyzing", blockStart - from, to - from);
+            addRows(blockStart, Math.min(to, blockStart + SPLIT_SIZE));
+        }
+    }
+
+    public void merge(AnalysisAccumulator other) {
+        refreshDiagnosisCodes();
+        count += other.count;
+        statistics.merge(other.statistics);
+        highBPHighChol += other.highBPHighChol;
+        highBPWithHeart += other.highBPWithHeart;
+        diabetesOver50 += other.diabetesOver50;
+        healthyUnder30 += other.healthyUnder30;
+        for (int i = 0; i < ageGroups.length; i++) {
+            ageGroups[i] += other.ageGroups[i];
+        }
+        for (int code = 0; code < Math.min(knownDiagnoses, other.diagnosisCounts.length); code++) {
+            diagnosisCounts[code] += other.diagnosisCounts[code];
+        }
+        for (int code = 0; code < bloodGroupCounts.length; code++) {
+            bloodGroupCounts[code] += other.bloodGroupCounts[code];
+        }
+        cube.ensureCapacity(store.getBloodGroups().size(), knownDiagnoses);
+        cube.merge(other.cube);
+    }
+
+    private static class RangeTask extends RecursiveTask<AnalysisAccumulator> {
+        private final PatientStore store;
+        private final RiskScores riskScores;
+        private final int from, to;
+        private final TaskMonitor monitor;
+
+        RangeTask(PatientStore store, RiskScores riskScores, int from, int to, TaskMonitor monitor) {
+            this.store = store;
+            this.riskScores = riskScores;
+            this.from = from;
+            this.to = to;
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected AnalysisAccumulator compute() {
+            if (to - from <= SPLIT_SIZE) {
+                monitor.checkCancelled();
+                AnalysisAccumulator result = new AnalysisAccumulator(store, riskScores);
+                result.addRows(from, to);
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(store, riskScores, from, middle, monitor);
+            left.fork();
+            AnalysisAccumulator right = new RangeTask(store, riskScores, middle, to, monitor).compute();
+            AnalysisAccumulator result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+
+    private void refreshDiagnosisCodes() {
+        ValueDictionary diagnoses = store.getDiagnoses();
+        if (diagnoses.size() == knownDiagnoses) return;
+        knownDiagnoses = diagnoses.size();
+        heartRelated = new boolean[knownDiagnoses];
+        for (int code = 0; code < knownDiagnoses; code++) {
+            heartRelated[code] = rules.isHeartRelated(diagnoses.valueOf(code));
+        }
+        healthyCode = diagnoses.codeOf(rules.getHealthyDiagnosis());
+        diabetesCode = diagnoses.codeOf(rules.getDiabetesDiagnosis());
+        if (diagnosisCounts.length < knownDiagnoses) {
+            diagnosisCounts = Arrays.copyOf(diagnosisCounts, Math.max(knownDiagnoses, diagnosisCounts.length * 2));
+        }
+    }
+
+    // The risk distribution comes from the precomputed scores, which must cover the same rows.
+    public AnalysisSnapshot snapshot(RiskScores riskScores) {
+        return new AnalysisSnapshot(this, riskScores, store);
+    }
+}
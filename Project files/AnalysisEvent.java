@@ -0,0 +1,21 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Recorded around every timed miner operation, so slow analyses can be lined up with GC and
+// allocation events in the same JFR recording.
+@Name("healthcare.Operation")
+@Label("Miner Operation")
+@Category({"Healthcare", "Data Miner"})
+@Description("A timed MedicalDataMiner operation")
+public class AnalysisEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Allocated")
+    @DataAmount
+    @Description("Bytes allocated by the calling thread")
+    public long allocatedBytes;
+}
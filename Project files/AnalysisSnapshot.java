@@ -0,0 +1,109 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+public class AnalysisSnapshot {
+    private final int patientCount;
+    private final PatientStatistics statistics;
+    private final int[][] tierRows;
+    private final int[] tierCounts;
+    private final int highBPHighChol, highBPWithHeart, diabetesOver50, healthyUnder30;
+    private final int[] ageGroups;
+    private final String[] diagnoses;
+    private final int[] diagnosisCounts;
+    private final String[] bloodGroups;
+    private final int[] bloodGroupCounts;
+    private final RiskRules rules;
+    private final AggregationCube cube;
+
+    AnalysisSnapshot(AnalysisAccumulator source, RiskScores riskScores, PatientStore store) {
+        patientCount = source.count;
+        statistics = source.statistics.copy();
+        // The tier lists are append-only, so their current prefixes can be shared without copying.
+        RiskTier[] tiers = RiskTier.values();
+        tierRows = new int[tiers.length][];
+        tierCounts = new int[tiers.length];
+        for (RiskTier tier : tiers) {
+            tierRows[tier.ordinal()] = riskScores.tierRows(tier).elements();
+            tierCounts[tier.ordinal()] = riskScores.getTierCount(tier);
+        }
+        highBPHighChol = source.highBPHighChol;
+        highBPWithHeart = source.highBPWithHeart;
+        diabetesOver50 = source.diabetesOver50;
+        healthyUnder30 = source.healthyUnder30;
+        ageGroups = source.ageGroups.clone();
+        diagnoses = valuesOf(store.getDiagnoses());
+        diagnosisCounts = Arrays.copyOf(source.diagnosisCounts, diagnoses.length);
+        bloodGroups = valuesOf(store.getBloodGroups());
+        bloodGroupCounts = Arrays.copyOf(source.bloodGroupCounts, bloodGroups.length);
+        rules = source.rules;
+        String[] ageGroupLabels = new String[ageGroups.length];
+        for (int group = 0; group < ageGroupLabels.length; group++) {
+            ageGroupLabels[group] = rules.getAgeGroupLabel(group);
+        }
+        cube = source.cube.freeze(ageGroupLabels, bloodGroups, diagnoses);
+    }
+
+    private static String[] valuesOf(ValueDictionary dictionary) {
+        String[] values = new String[dictionary.size()];
+        for (int code = 0; code < values.length; code++) {
+            values[code] = dictionary.valueOf(code);
+        }
+        return values;
+    }
+
+    public int getPatientCount() { return patientCount; }
+    public boolean isEmpty() { return patientCount == 0; }
+
+    // The snapshot's own copy; copy() it before merging other statistics into it.
+    public PatientStatistics getStatistics() { return statistics; }
+    public ColumnStatistics getAge() { return statistics.getAge(); }
+    public ColumnStatistics getBloodPressure() { return statistics.getBloodPressure(); }
+    public ColumnStatistics getCholesterol() { return statistics.getCholesterol(); }
+
+    public int getTierCount(RiskTier tier) { return tierCounts[tier.ordinal()]; }
+    public int getHighRiskCount() { return getTierCount(RiskTier.HIGH); }
+
+    public int getTierRow(RiskTier tier, int index) {
+        Objects.checkIndex(index, tierCounts[tier.ordinal()]);
+        return tierRows[tier.ordinal()][index];
+    }
+
+    public int getHighRiskRow(int index) {
+        return getTierRow(RiskTier.HIGH, index);
+    }
+
+    public int[] getTierRows(RiskTier tier) {
+        return Arrays.copyOf(tierRows[tier.ordinal()], tierCounts[tier.ordinal()]);
+    }
+
+    public int[] getHighRiskRows() {
+        return getTierRows(RiskTier.HIGH);
+    }
+
+    // Rows of one tier in row order, as a list view that shares the snapshot's arrays.
+    public List<Patient> getTierPatients(PatientStore store, RiskTier tier) {
+        return store.rows(tierRows[tier.ordinal()], tierCounts[tier.ordinal()]);
+    }
+
+    public int getHighBPHighChol() { return highBPHighChol; }
+    public int getHighBPWithHeart() { return highBPWithHeart; }
+    public int getDiabetesOver50() { return diabetesOver50; }
+    public int getHealthyUnder30() { return healthyUnder30; }
+    public int getAgeGroupCount() { return ageGroups.length; }
+    public int getAgeGroup(int group) { return ageGroups[group]; }
+    public String getAgeGroupLabel(int group) { return rules.getAgeGroupLabel(group); }
+    public RiskRules getRules() { return rules; }
+    public AggregationCube getCube() { return cube; }
+
+    public int getDiagnosisCount() { return diagnoses.length; }
+    public String getDiagnosis(int code) { return diagnoses[code]; }
+    public int getDiagnosisFrequency(int code) { return diagnosisCounts[code]; }
+    public int getBloodGroupCount() { return bloodGroups.length; }
+    public String getBloodGroup(int code) { return bloodGroups[code]; }
+    public int getBloodGroupFrequency(int code) { return bloodGroupCounts[code]; }
+
+    public int percentOf(long count) {
+        return (int) ((count * 100) / patientCount);
+    }
+}
@@ -0,0 +1,296 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves one loaded dataset to many analysts over HTTP/JSON, e.g.
+//   java AnalyticsServer --port 8080 patients.hdms
+//   curl 'http://localhost:8080/api/patients?tier=HIGH&minAge=60&limit=20'
+// Each request reads the dataset view the miner has published. A reload loads into the same miner,
+// which publishes the new data in one step when it is complete, so readers never see a half-loaded
+// dataset and never wait for the reload to finish.
+public class AnalyticsServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+
+    private interface Endpoint {
+        void handle(HttpExchange exchange, MedicalDataMiner miner, Map<String, String> params) throws IOException;
+    }
+
+    private final String dataFile;
+    private final String rulesFile;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final MedicalDataMiner miner = new MedicalDataMiner();
+
+    public AnalyticsServer(String host, int port, String dataFile, String rulesFile) throws IOException {
+        this.dataFile = dataFile;
+        this.rulesFile = rulesFile;
+        miner.setLoadMode(LoadMode.PARALLEL);
+        // Reloads read the whole file afresh, final line included, rather than tailing it
+        miner.setFollowDataFile(false);
+        reload();
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        executor = requestExecutor();
+        server.setExecutor(executor);
+        for (ReportSection section : ReportSection.values()) {
+            get("/api/" + section.name().toLowerCase(Locale.ROOT),
+                    (exchange, miner, params) -> sections(exchange, miner, section));
+        }
+        get("/api/summary", (exchange, miner, params) -> sections(exchange, miner, ReportSection.values()));
+        get("/api/health", this::health);
+        get("/api/predict", this::predict);
+        get("/api/patients", this::patients);
+        server.createContext("/api/reload", exchange -> serve(exchange, "POST", "/api/reload", this::reload));
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                sendError(exchange, 404, "No such endpoint: " + exchange.getRequestURI().getPath());
+            }
+        });
+    }
+
+    // Virtual threads arrived in Java 21; on older runtimes requests share a fixed pool instead.
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()), r -> {
+                Thread thread = new Thread(r, "http-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public MedicalDataMiner getMiner() {
+        return miner;
+    }
+
+    // Re-reads the rules and data files. Reloads are serialised by the miner's writer lock, not with
+    // readers, who keep the previous view; if either file cannot be read the previous data stays.
+    public DatasetView reload() throws IOException {
+        RiskRules rules = rulesFile != null ? RiskRules.load(rulesFile) : RiskRules.defaults();
+        miner.reloadData(dataFile, rules, TaskMonitor.NONE);
+        return miner.getView();
+    }
+
+    private void get(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> serve(exchange, "GET", path, endpoint));
+    }
+
+    private void serve(HttpExchange exchange, String method, String path, Endpoint endpoint) {
+        try (exchange) {
+            try {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    sendError(exchange, 404, "No such endpoint: " + exchange.getRequestURI().getPath());
+                } else if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    sendError(exchange, 405, path + " only accepts " + method);
+                } else {
+                    endpoint.handle(exchange, miner, parameters(exchange));
+                }
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (Exception e) {
+                sendError(exchange, 500, e.toString());
+            }
+        } catch (IOException e) {
+            // The client went away; there is nobody left to tell
+        }
+    }
+
+    private static Map<String, String> parameters(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer: " + value);
+        }
+    }
+
+    private static int requiredIntParam(Map<String, String> params, String name) {
+        if (!params.containsKey(name)) throw new IllegalArgumentException("Missing parameter: " + name);
+        return intParam(params, name, 0);
+    }
+
+    private static Writer beginJson(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        try (Writer out = beginJson(exchange, status)) {
+            out.write("{\"status\": " + status + ", \"error\": ");
+            ReportWriter.writeJsonString(out, String.valueOf(message));
+            out.write("}\n");
+        }
+    }
+
+    private static void sections(HttpExchange exchange, MedicalDataMiner miner, ReportSection... sections)
+            throws IOException {
+        DatasetView data = miner.getView();
+        try (ReportWriter writer = ReportWriter.create(ReportFormat.JSON, beginJson(exchange, 200))) {
+            for (ReportSection section : sections) {
+                writer.section(section, data);
+            }
+        }
+    }
+
+    private void health(HttpExchange exchange, MedicalDataMiner miner, Map<String, String> params) throws IOException {
+        DatasetView data = miner.getView();
+        try (Writer out = beginJson(exchange, 200)) {
+            out.write("{\"status\": \"ok\", \"patients\": " + data.getStore().size() + ", \"source\": ");
+            ReportWriter.writeJsonString(out, new File(dataFile).getName());
+            out.write(", \"rules\": ");
+            ReportWriter.writeJsonString(out, data.getRiskRules().getSource());
+            out.write("}\n");
+        }
+    }
+
+    private void predict(HttpExchange exchange, MedicalDataMiner miner, Map<String, String> params) throws IOException {
+        int age = requiredIntParam(params, "age");
+        int bp = requiredIntParam(params, "bp");
+        int cholesterol = requiredIntParam(params, "cholesterol");
+        DiseaseRisk risk = miner.predictRisk(age, bp, cholesterol);
+        try (Writer out = beginJson(exchange, 200)) {
+            out.write("{\"age\": " + age + ", \"bp\": " + bp + ", \"cholesterol\": " + cholesterol
+                    + ", \"risk\": \"" + risk.name() + "\", \"prediction\": ");
+            ReportWriter.writeJsonString(out, risk.getLabel());
+            out.write(", \"recommendation\": ");
+            ReportWriter.writeJsonString(out, risk.getRecommendation());
+            out.write("}\n");
+        }
+    }
+
+    // Same filters as the GUI's Filter Patients dialog, plus offset/limit paging over the matches. With
+    // id=..., answers with that patient alone from the ID index (or no patients if there is none).
+    private void patients(HttpExchange exchange, MedicalDataMiner miner, Map<String, String> params) throws IOException {
+        DatasetView data = miner.getView();
+        if (params.containsKey("id")) {
+            int row = data.rowOf(requiredIntParam(params, "id"));
+            writePatients(exchange, data, row < 0 ? 0 : 1, 0, row < 0 ? new int[0] : new int[] {row});
+            return;
+        }
+        PatientQuery query = data.query();
+        if (params.containsKey("minAge") || params.containsKey("maxAge")) {
+            query.ageBetween(intParam(params, "minAge", Integer.MIN_VALUE), intParam(params, "maxAge", Integer.MAX_VALUE));
+        }
+        if (params.containsKey("bpAbove")) query.bpAbove(intParam(params, "bpAbove", 0));
+        if (params.containsKey("cholesterolAbove")) query.cholesterolAbove(intParam(params, "cholesterolAbove", 0));
+        if (params.containsKey("bloodGroup")) query.bloodGroup(params.get("bloodGroup"));
+        if (params.containsKey("diagnosis")) query.diagnosis(params.get("diagnosis"));
+        if (params.containsKey("tier")) {
+            try {
+                query.riskTier(RiskTier.valueOf(params.get("tier").toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("tier must be one of " + Arrays.toString(RiskTier.values()));
+            }
+        }
+        int offset = intParam(params, "offset", 0);
+        int limit = intParam(params, "limit", DEFAULT_LIMIT);
+        if (offset < 0 || limit < 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("offset must be >= 0 and limit between 0 and " + MAX_LIMIT);
+        }
+
+        writePatients(exchange, data, query.count(), offset, query.rows(offset, limit));
+    }
+
+    private static void writePatients(HttpExchange exchange, DatasetView data, int matches, int offset, int[] rows)
+            throws IOException {
+        PatientStore store = data.getStore();
+        RiskScores scores = data.getRiskScores();
+        try (ReportWriter writer = ReportWriter.create(ReportFormat.JSON, beginJson(exchange, 200))) {
+            writer.counts("query", new String[] {"matches", "offset", "count"},
+                    new long[] {matches, offset, rows.length});
+            writer.beginPatients();
+            for (int row : rows) {
+                writer.patient(store, row, scores.getScore(row), scores.getTier(row));
+            }
+            writer.endPatients();
+        }
+    }
+
+    private void reload(HttpExchange exchange, MedicalDataMiner current, Map<String, String> params) throws IOException {
+        DatasetView loaded = reload();
+        try (Writer out = beginJson(exchange, 200)) {
+            out.write("{\"status\": \"reloaded\", \"patients\": " + loaded.getStore().size() + ", \"load\": ");
+            ReportWriter.writeJsonString(out, String.valueOf(loaded.getLoadStats()));
+            out.write("}\n");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        String rules = new File("risk-rules.properties").isFile() ? "risk-rules.properties" : null;
+        String data = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--host") && i + 1 < args.length) {
+                host = args[++i];
+            } else if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--rules") && i + 1 < args.length) {
+                rules = args[++i];
+            } else if (data == null && !args[i].startsWith("--")) {
+                data = args[i];
+            } else {
+                data = null;
+                break;
+            }
+        }
+        if (data == null) {
+            System.err.println("Usage: java AnalyticsServer [--host 127.0.0.1] [--port 8080] "
+                    + "[--rules rules.properties] <patients.csv|patients.hdms>");
+            System.exit(2);
+        }
+        AnalyticsServer server = new AnalyticsServer(host, port, data, rules);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.err.println("Serving " + server.getMiner().getLastLoadStats() + " from " + data
+                + " on http://" + host + ":" + server.getPort() + "/api/");
+    }
+}
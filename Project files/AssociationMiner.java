@@ -0,0 +1,331 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+
+// Frequent-itemset (Apriori) and association-rule mining over one DatasetView. An item is one value of
+// one attribute - an age group, a blood pressure or cholesterol band, a diagnosis or a blood group - and
+// holds the rows that have it, taken from the patient index: a bitmap, or a sorted row list for items
+// too rare for a bitmap to be the smaller of the two. Each level's candidates extend a frequent itemset
+// by one item of another attribute, are dropped unless every smaller subset is frequent, and are counted
+// in parallel by intersecting their items on the fly, walking the rarest item's rows when it is a list
+// and ANDing the bitmaps word by word otherwise. Only the items are held, never a bitmap per itemset.
+public class AssociationMiner {
+    private static final int COUNT_SPLIT = 8;
+    // A sorted row list takes 32 bits a row against the bitmap's one bit a patient
+    private static final int SPARSE_RATIO = 32;
+    private static final int AGE = 0, BLOOD_PRESSURE = 1, CHOLESTEROL = 2, DIAGNOSIS = 3, BLOOD_GROUP = 4;
+
+    private final int patients;
+    private final int minSupport;
+    private final int words;
+    private final SupportCache cache;
+    private final ArrayList<String> itemLabels = new ArrayList<>();
+    private final ArrayList<Integer> itemAttributes = new ArrayList<>();
+    private final ArrayList<Item> items = new ArrayList<>();
+    private final HashMap<String, Integer> supports = new HashMap<>();
+
+    private AssociationMiner(int patients, int minSupport, SupportCache cache) {
+        this.patients = patients;
+        this.minSupport = Math.max(1, minSupport);
+        this.cache = cache;
+        words = (patients + 63) >>> 6;
+    }
+
+    // The strongest rules under the view's RiskRules, by lift, then confidence, then support.
+    public static List<AssociationRule> mine(DatasetView data, ForkJoinPool pool) {
+        return mine(data, pool, new SupportCache());
+    }
+
+    // As above, taking the supports of itemsets the cache already counted over a prefix of the rows and
+    // counting only the rows after it; the cache must belong to the view's store and rules.
+    static List<AssociationRule> mine(DatasetView data, ForkJoinPool pool, SupportCache cache) {
+        if (data.isEmpty()) return List.of();
+        RiskRules rules = data.getRiskRules();
+        AssociationMiner miner = new AssociationMiner(data.size(),
+                (int) Math.ceil(rules.getMinSupport() * data.size() / 100), cache);
+        miner.addItems(data);
+        List<Itemset> frequent = miner.frequentItemsets(rules.getMaxItems(), pool);
+        return miner.rules(frequent, rules.getMinConfidence() / 100, rules.getMaxRules());
+    }
+
+    private void addItems(DatasetView data) {
+        RiskRules rules = data.getRiskRules();
+        PatientIndex index = data.getIndex();
+        addBands(AGE, "Age", rules.getAgeGroupBounds(), index::ageBetween);
+        addBands(BLOOD_PRESSURE, "BP", rules.getBloodPressureBands(), index::bloodPressureBetween);
+        addBands(CHOLESTEROL, "Cholesterol", rules.getCholesterolBands(), index::cholesterolBetween);
+        ValueDictionary diagnoses = data.getStore().getDiagnoses();
+        for (int code = 0; code < diagnoses.size(); code++) {
+            addItem(DIAGNOSIS, diagnoses.valueOf(code), index.diagnosis(diagnoses.valueOf(code)));
+        }
+        ValueDictionary bloodGroups = data.getStore().getBloodGroups();
+        for (int code = 0; code < bloodGroups.size(); code++) {
+            addItem(BLOOD_GROUP, "Blood group " + bloodGroups.valueOf(code), index.bloodGroup(bloodGroups.valueOf(code)));
+        }
+    }
+
+    // Without bounds an attribute has a single band that every patient is in, which says nothing.
+    private void addBands(int attribute, String name, int[] bounds, BiFunction<Integer, Integer, BitSet> rows) {
+        if (bounds.length == 0) return;
+        for (int band = 0; band <= bounds.length; band++) {
+            int low = band == 0 ? Integer.MIN_VALUE : bounds[band - 1];
+            int high = band == bounds.length ? Integer.MAX_VALUE : bounds[band] - 1;
+            addItem(attribute, name + " " + RiskRules.bandLabel(bounds, band), rows.apply(low, high));
+        }
+    }
+
+    // Items below the support threshold can never be part of a frequent itemset, so they are left out.
+    private void addItem(int attribute, String label, BitSet rows) {
+        int support = rows.cardinality();
+        if (support < minSupport) return;
+        itemLabels.add(label);
+        itemAttributes.add(attribute);
+        items.add((long) support * SPARSE_RATIO < patients
+                ? new Item(attribute + "=" + label, support, null, rows.stream().toArray())
+                : new Item(attribute + "=" + label, support, Arrays.copyOf(rows.toLongArray(), words), null));
+        supports.put(key(new int[] {itemLabels.size() - 1}), support);
+    }
+
+    // Every frequent itemset of two or more items. Itemsets are kept in lexicographic item order, so
+    // the ones sharing all but their last item are adjacent.
+    private List<Itemset> frequentItemsets(int maxItems, ForkJoinPool pool) {
+        List<Itemset> level = new ArrayList<>();
+        for (int item = 0; item < items.size(); item++) {
+            level.add(new Itemset(new int[] {item}, items.get(item).support));
+        }
+        SupportCache.Counts earlier = cache.counts(patients);
+        Map<String, Integer> counted = new HashMap<>();
+        List<Itemset> result = new ArrayList<>();
+        for (int size = 2; size <= maxItems && level.size() > 1; size++) {
+            List<Candidate> candidates = candidates(level);
+            pool.invoke(new CountTask(candidates, 0, candidates.size(), earlier));
+            level = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                counted.put(candidate.key, candidate.support);
+                if (candidate.support >= minSupport) {
+                    Itemset itemset = new Itemset(candidate.items, candidate.support);
+                    supports.put(key(itemset.items), itemset.support);
+                    level.add(itemset);
+                }
+            }
+            result.addAll(level);
+        }
+        cache.update(patients, counted);
+        return result;
+    }
+
+    private List<Candidate> candidates(List<Itemset> level) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (int first = 0; first < level.size(); first++) {
+            Itemset prefix = level.get(first);
+            int length = prefix.items.length;
+            for (int second = first + 1; second < level.size(); second++) {
+                int[] other = level.get(second).items;
+                if (!samePrefix(prefix.items, other, length - 1)) break;
+                int item = other[length - 1];
+                if (itemAttributes.get(item).equals(itemAttributes.get(prefix.items[length - 1]))) continue;
+                int[] items = Arrays.copyOf(prefix.items, length + 1);
+                items[length] = item;
+                if (subsetsFrequent(items)) {
+                    candidates.add(new Candidate(items, cacheKey(items)));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean samePrefix(int[] first, int[] second, int length) {
+        for (int i = 0; i < length; i++) {
+            if (first[i] != second[i]) return false;
+        }
+        return true;
+    }
+
+    // The two subsets without one of the last two items are the itemsets the candidate was joined from.
+    private boolean subsetsFrequent(int[] items) {
+        for (int skip = 0; skip < items.length - 2; skip++) {
+            if (!supports.containsKey(key(without(items, skip)))) return false;
+        }
+        return true;
+    }
+
+    // The number of rows from the given one on that have every item of the itemset. A row list is only
+    // used for items rarer than any bitmap, so when the rarest item has a bitmap they all do.
+    private int count(int[] itemset, int from) {
+        Item[] parts = new Item[itemset.length];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = items.get(itemset[i]);
+        }
+        Arrays.sort(parts, Comparator.comparingInt(item -> item.support));
+        Item rarest = parts[0];
+        int support = 0;
+        if (rarest.rows != null) {
+            int start = Arrays.binarySearch(rarest.rows, from);
+            rows:
+            for (int i = start < 0 ? -start - 1 : start; i < rarest.rows.length; i++) {
+                int row = rarest.rows[i];
+                for (int part = 1; part < parts.length; part++) {
+                    if (!parts[part].contains(row)) continue rows;
+                }
+                support++;
+            }
+            return support;
+        }
+        for (int word = from >>> 6; word < words; word++) {
+            long bits = word == from >>> 6 ? rarest.bits[word] & -1L << from : rarest.bits[word];
+            for (int part = 1; part < parts.length && bits != 0; part++) {
+                bits &= parts[part].bits[word];
+            }
+            support += Long.bitCount(bits);
+        }
+        return support;
+    }
+
+    private List<AssociationRule> rules(List<Itemset> frequent, double minConfidence, int maxRules) {
+        List<AssociationRule> rules = new ArrayList<>();
+        for (Itemset itemset : frequent) {
+            for (int position = 0; position < itemset.items.length; position++) {
+                int[] antecedent = without(itemset.items, position);
+                int consequent = itemset.items[position];
+                double confidence = (double) itemset.support / supports.get(key(antecedent));
+                double lift = confidence * patients / items.get(consequent).support;
+                if (confidence >= minConfidence && lift > 1) {
+                    List<String> labels = new ArrayList<>();
+                    for (int item : antecedent) {
+                        labels.add(itemLabels.get(item));
+                    }
+                    rules.add(new AssociationRule(labels, itemLabels.get(consequent), itemset.support, patients,
+                            confidence, lift));
+                }
+            }
+        }
+        rules.sort(Comparator.comparingDouble(AssociationRule::getLift)
+                .thenComparingDouble(AssociationRule::getConfidencePercent)
+                .thenComparingInt(AssociationRule::getSupport).reversed());
+        return List.copyOf(rules.subList(0, Math.min(maxRules, rules.size())));
+    }
+
+    private static int[] without(int[] items, int position) {
+        int[] result = new int[items.length - 1];
+        System.arraycopy(items, 0, result, 0, position);
+        System.arraycopy(items, position + 1, result, position, result.length - position);
+        return result;
+    }
+
+    private static String key(int[] items) {
+        return Arrays.toString(items);
+    }
+
+    // Item numbers depend on which items are frequent in a view, so the cache is keyed by the items
+    // themselves. Their order is the same in every view: bands in order, then dictionary codes.
+    private String cacheKey(int[] itemset) {
+        StringBuilder key = new StringBuilder();
+        for (int item : itemset) {
+            key.append(items.get(item).key).append('\n');
+        }
+        return key.toString();
+    }
+
+    // The supports counted by the most recent mining of one store under one set of rules. Rows are only
+    // ever appended to a store the writer keeps, so the counts over its first rows stay right, and a
+    // later view adds the counts of its new rows instead of counting every row again. The writer starts
+    // a new cache whenever the rows are renumbered or the rules change.
+    static final class SupportCache {
+        private Counts counts = new Counts(0, Map.of());
+
+        // The latest counts, unless they cover rows past the end of a view mined late.
+        synchronized Counts counts(int rows) {
+            return counts.rows <= rows ? counts : new Counts(0, Map.of());
+        }
+
+        synchronized void update(int rows, Map<String, Integer> supports) {
+            if (rows >= counts.rows) {
+                counts = new Counts(rows, supports);
+            }
+        }
+
+        static final class Counts {
+            final int rows;
+            final Map<String, Integer> supports;
+
+            Counts(int rows, Map<String, Integer> supports) {
+                this.rows = rows;
+                this.supports = supports;
+            }
+        }
+    }
+
+    private static final class Item {
+        final String key;
+        final int support;
+        final long[] bits;
+        final int[] rows;
+
+        Item(String key, int support, long[] bits, int[] rows) {
+            this.key = key;
+            this.support = support;
+            this.bits = bits;
+            this.rows = rows;
+        }
+
+        boolean contains(int row) {
+            return bits != null ? (bits[row >>> 6] & 1L << row) != 0 : Arrays.binarySearch(rows, row) >= 0;
+        }
+    }
+
+    private static final class Itemset {
+        final int[] items;
+        final int support;
+
+        Itemset(int[] items, int support) {
+            this.items = items;
+            this.support = support;
+        }
+    }
+
+    private static final class Candidate {
+        final int[] items;
+        final String key;
+        int support;
+
+        Candidate(int[] items, String key) {
+            this.items = items;
+            this.key = key;
+        }
+    }
+
+    private class CountTask extends RecursiveAction {
+        private final List<Candidate> candidates;
+        private final int from, to;
+        private final SupportCache.Counts earlier;
+
+        CountTask(List<Candidate> candidates, int from, int to, SupportCache.Counts earlier) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.earlier = earlier;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= COUNT_SPLIT) {
+                for (int i = from; i < to; i++) {
+                    Candidate candidate = candidates.get(i);
+                    Integer support = earlier.supports.get(candidate.key);
+                    candidate.support = support == null ? count(candidate.items, 0)
+                            : support + count(candidate.items, earlier.rows);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CountTask(candidates, from, middle, earlier), new CountTask(candidates, middle, to, earlier));
+        }
+    }
+}
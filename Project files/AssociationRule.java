@@ -0,0 +1,42 @@
+import java.util.List;
+import java.util.Locale;
+
+// "antecedent => consequent": patients with every antecedent item tend to have the consequent too.
+// Support is the number of patients with all of the items, confidence the share of patients with the
+// antecedent that also have the consequent, and lift how much more likely the consequent is given the
+// antecedent than overall (1.0 means the items are unrelated).
+public class AssociationRule {
+    private final List<String> antecedent;
+    private final String consequent;
+    private final int support;
+    private final int patientCount;
+    private final double confidence;
+    private final double lift;
+
+    AssociationRule(List<String> antecedent, String consequent, int support, int patientCount,
+                    double confidence, double lift) {
+        this.antecedent = List.copyOf(antecedent);
+        this.consequent = consequent;
+        this.support = support;
+        this.patientCount = patientCount;
+        this.confidence = confidence;
+        this.lift = lift;
+    }
+
+    public List<String> getAntecedent() { return antecedent; }
+    public String getConsequent() { return consequent; }
+    public int getSupport() { return support; }
+    public double getSupportPercent() { return support * 100.0 / patientCount; }
+    public double getConfidencePercent() { return confidence * 100; }
+    public double getLift() { return lift; }
+
+    public String describeMeasures() {
+        return String.format(Locale.ROOT, "support %.1f%%, confidence %.1f%%, lift %.2f",
+                getSupportPercent(), getConfidencePercent(), lift);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(", ", antecedent) + " => " + consequent;
+    }
+}
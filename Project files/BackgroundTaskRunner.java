@@ -0,0 +1,130 @@
+import javax.swing.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+public class BackgroundTaskRunner {
+    public interface Job<T> {
+        T run(TaskMonitor monitor) throws Exception;
+    }
+
+    // Jobs run one at a time, in the order they were submitted, so that an analysis or report queued
+    // behind a load works on the loaded data and the single progress bar follows a single job. The
+    // miner itself would allow it: readers use published DatasetViews while writers take its lock.
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "medical-data-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LinkedHashMap<String, Worker<?>> activeJobs = new LinkedHashMap<>();
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+    private final JButton cancelButton;
+    private final Consumer<Exception> errorHandler;
+
+    public BackgroundTaskRunner(JProgressBar progressBar, JLabel statusLabel, JButton cancelButton,
+                                Consumer<Exception> errorHandler) {
+        this.progressBar = progressBar;
+        this.statusLabel = statusLabel;
+        this.cancelButton = cancelButton;
+        this.errorHandler = errorHandler;
+        cancelButton.addActionListener(e -> cancelAll());
+        updateControls();
+    }
+
+    // Submitting a job whose name is already queued or running is a no-op, so repeated clicks
+    // do not pile up duplicate work.
+    public <T> boolean submit(String name, Job<T> job, Consumer<T> onSuccess) {
+        if (activeJobs.containsKey(name)) return false;
+        Worker<T> worker = new Worker<>(name, job, onSuccess);
+        activeJobs.put(name, worker);
+        executor.execute(worker);
+        updateControls();
+        return true;
+    }
+
+    public boolean isBusy() {
+        return !activeJobs.isEmpty();
+    }
+
+    public void cancelAll() {
+        for (Worker<?> worker : activeJobs.values().toArray(new Worker<?>[0])) {
+            worker.cancel(true);
+        }
+    }
+
+    private void updateControls() {
+        cancelButton.setEnabled(isBusy());
+        progressBar.setVisible(isBusy());
+        if (!isBusy()) {
+            progressBar.setValue(0);
+        }
+    }
+
+    private class Worker<T> extends SwingWorker<T, String> implements TaskMonitor {
+        private final String name;
+        private final Job<T> job;
+        private final Consumer<T> onSuccess;
+        private volatile String lastStatus;
+
+        Worker(String name, Job<T> job, Consumer<T> onSuccess) {
+            this.name = name;
+            this.job = job;
+            this.onSuccess = onSuccess;
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) {
+                    progressBar.setValue((Integer) e.getNewValue());
+                }
+            });
+        }
+
+        @Override
+        protected T doInBackground() throws Exception {
+            publish(name + "...");
+            return job.run(this);
+        }
+
+        @Override
+        public void progress(String phase, long done, long total) {
+            int percent = total <= 0 ? 0 : (int) Math.min(100, done * 100 / total);
+            setProgress(percent);
+            String status = name + ": " + phase;
+            if (!status.equals(lastStatus)) {
+                lastStatus = status;
+                publish(status);
+            }
+        }
+
+        @Override
+        protected void process(List<String> statuses) {
+            statusLabel.setText(statuses.get(statuses.size() - 1));
+        }
+
+        @Override
+        protected void done() {
+            activeJobs.remove(name, this);
+            updateControls();
+            if (isCancelled()) {
+                statusLabel.setText(name + " cancelled");
+                return;
+            }
+            try {
+                T result = get();
+                statusLabel.setText(name + " finished");
+                onSuccess.accept(result);
+            } catch (CancellationException e) {
+                statusLabel.setText(name + " cancelled");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                statusLabel.setText(name + " failed");
+                Throwable cause = e.getCause();
+                errorHandler.accept(cause instanceof Exception ? (Exception) cause : e);
+            }
+        }
+    }
+}
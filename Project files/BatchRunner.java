@@ -0,0 +1,309 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Headless entry point for batch servers and cron: runs a chosen set of analyses over one patient
+// file or over every shard in a directory, e.g.
+//   java BatchRunner --analyses statistics,risk,report --format json --output out/ shards/
+// Text analyses go to <output>/<shard>.analysis.txt (or stdout when no output directory is given),
+// reports to <output>/<shard>.report.<ext> and predictions to <output>/<shard>.predictions.csv.
+// With several shards, the statistics analysis also merges the shards' statistics into
+// <output>/combined.analysis.txt (or a "### combined" block on stdout).
+public class BatchRunner {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+    private static final String COMBINED = "combined";
+
+    private static final String USAGE = "Usage: java BatchRunner [--analyses a,b,...] [--output dir] "
+            + "[--format text|csv|json] [--patients] [--rules rules.properties] [--workers n] "
+            + "[--duplicates keep_all|last_wins|reject] <patients.csv|patients.hdms|directory>\n"
+            + "  analyses: statistics, risk, patterns, frequency, predictions, report "
+            + "(default: statistics,risk,patterns,frequency)";
+
+    enum Analysis {
+        STATISTICS, RISK, PATTERNS, FREQUENCY, PREDICTIONS, REPORT;
+
+        static Analysis of(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown analysis: " + name.trim());
+            }
+        }
+    }
+
+    private final EnumSet<Analysis> analyses;
+    private final Path outputDir;
+    private final ReportFormat reportFormat;
+    private final boolean includePatients;
+    private final RiskRules rules;
+    private final DuplicatePolicy duplicatePolicy;
+
+    public BatchRunner(EnumSet<Analysis> analyses, Path outputDir, ReportFormat reportFormat,
+                       boolean includePatients, RiskRules rules) {
+        this(analyses, outputDir, reportFormat, includePatients, rules, DuplicatePolicy.KEEP_ALL);
+    }
+
+    public BatchRunner(EnumSet<Analysis> analyses, Path outputDir, ReportFormat reportFormat,
+                       boolean includePatients, RiskRules rules, DuplicatePolicy duplicatePolicy) {
+        this.analyses = analyses;
+        this.outputDir = outputDir;
+        this.reportFormat = reportFormat;
+        this.includePatients = includePatients;
+        this.rules = rules;
+        this.duplicatePolicy = duplicatePolicy;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        EnumSet<Analysis> analyses = EnumSet.of(Analysis.STATISTICS, Analysis.RISK, Analysis.PATTERNS,
+                Analysis.FREQUENCY);
+        Path outputDir = null;
+        ReportFormat format = ReportFormat.TEXT;
+        boolean includePatients = false;
+        RiskRules rules = RiskRules.defaults();
+        DuplicatePolicy duplicatePolicy = DuplicatePolicy.KEEP_ALL;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String input = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--analyses":
+                        analyses = EnumSet.noneOf(Analysis.class);
+                        for (String name : value(args, ++i).split(",")) {
+                            analyses.add(Analysis.of(name));
+                        }
+                        break;
+                    case "--output": outputDir = Paths.get(value(args, ++i)); break;
+                    case "--format": format = ReportFormat.valueOf(value(args, ++i).toUpperCase(Locale.ROOT)); break;
+                    case "--patients": includePatients = true; break;
+                    case "--rules": rules = RiskRules.load(value(args, ++i)); break;
+                    case "--workers": workers = Integer.parseInt(value(args, ++i)); break;
+                    case "--duplicates":
+                        duplicatePolicy = DuplicatePolicy.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || input != null) {
+                            throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                        }
+                        input = args[i];
+                }
+            }
+            if (input == null) throw new IllegalArgumentException("No input file or directory given");
+            if (workers < 1) throw new IllegalArgumentException("--workers must be at least 1");
+            if (outputDir == null && (analyses.contains(Analysis.REPORT) || analyses.contains(Analysis.PREDICTIONS))) {
+                throw new IllegalArgumentException("report and predictions need an --output directory");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        List<File> shards = shardsOf(new File(input));
+        if (shards.isEmpty()) {
+            System.err.println("No .csv or .hdms files found at " + input);
+            return EXIT_USAGE;
+        }
+        try {
+            if (outputDir != null) Files.createDirectories(outputDir);
+        } catch (IOException e) {
+            System.err.println("Cannot create output directory " + outputDir + ": " + e.getMessage());
+            return EXIT_FAILED;
+        }
+        BatchRunner runner = new BatchRunner(analyses, outputDir, format, includePatients, rules, duplicatePolicy);
+        return runner.runAll(shards, Math.min(workers, shards.size()));
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        return args[i];
+    }
+
+    private static List<File> shardsOf(File input) {
+        if (!input.isDirectory()) {
+            return input.isFile() ? List.of(input) : List.of();
+        }
+        File[] files = input.listFiles((dir, name) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            return lower.endsWith(".csv") || lower.endsWith(".hdms");
+        });
+        if (files == null) return List.of();
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    // At most `workers` shards are in memory at once. With a single worker the shard itself uses the
+    // parallel loader and analysis instead, so one large file still gets every core.
+    public int runAll(List<File> shards, int workers) {
+        String conflict = outputConflict(shards);
+        if (conflict != null) {
+            System.err.println(conflict);
+            return EXIT_USAGE;
+        }
+        long start = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "batch-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean parallelShard = workers == 1;
+        List<Future<ShardResult>> results = new ArrayList<>();
+        for (File shard : shards) {
+            results.add(pool.submit(() -> runShard(shard, parallelShard)));
+        }
+        pool.shutdown();
+
+        int failed = 0;
+        PatientStatistics combined = new PatientStatistics();
+        Writer console = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        for (int i = 0; i < shards.size(); i++) {
+            String name = shards.get(i).getName();
+            try {
+                ShardResult result = results.get(i).get();
+                String text = result.text;
+                combined.merge(result.statistics);
+                if (outputDir == null && !text.isEmpty()) {
+                    if (shards.size() > 1) console.write("### " + name + "\n");
+                    console.write(text);
+                    console.flush();
+                }
+            } catch (ExecutionException e) {
+                failed++;
+                Throwable cause = e.getCause();
+                System.err.println(name + ": FAILED - " + (cause.getMessage() != null ? cause.getMessage() : cause));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                return EXIT_FAILED;
+            } catch (IOException e) {
+                System.err.println("Cannot write to stdout: " + e.getMessage());
+                return EXIT_FAILED;
+            }
+        }
+        if (shards.size() > 1 && analyses.contains(Analysis.STATISTICS)) {
+            try {
+                writeCombined(combined, console);
+            } catch (IOException e) {
+                System.err.println("Cannot write combined statistics: " + e.getMessage());
+                failed++;
+            }
+        }
+        System.err.printf("Processed %d of %d file(s) with %d worker(s) in %.1f ms%n", shards.size() - failed,
+                shards.size(), workers, (System.nanoTime() - start) / 1_000_000.0);
+        return failed == 0 ? EXIT_OK : EXIT_FAILED;
+    }
+
+    // Each shard's outputs are named after the file without its extension, so two shards with the same
+    // base name, such as a CSV and the snapshot saved from it, would overwrite each other's outputs and
+    // both count towards the combined statistics. With several shards the combined name is taken too.
+    private static String outputConflict(List<File> shards) {
+        Map<String, String> names = new HashMap<>();
+        if (shards.size() > 1) names.put(COMBINED, "the combined statistics");
+        for (File shard : shards) {
+            String base = baseName(shard).toLowerCase(Locale.ROOT);
+            String other = names.putIfAbsent(base, shard.getName());
+            if (other != null) {
+                return shard.getName() + " and " + other + " would both write " + baseName(shard)
+                        + ".*; rename or move one of them";
+            }
+        }
+        return null;
+    }
+
+    private static String baseName(File shard) {
+        String name = shard.getName();
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+
+    // Shards that failed are left out, so the totals cover only the files that were processed.
+    private void writeCombined(PatientStatistics combined, Writer console) throws IOException {
+        String text = combined.isEmpty() ? "No data loaded\n" : MedicalDataMiner.describeStatistics(combined) + "\n";
+        if (outputDir != null) {
+            Files.writeString(outputDir.resolve(COMBINED + ".analysis.txt"), text, StandardCharsets.UTF_8);
+        } else {
+            console.write("### combined\n");
+            console.write(text);
+            console.flush();
+        }
+    }
+
+    // Loads one shard and writes the requested outputs. Returns the text analyses when they are not
+    // being written to a file, along with the shard's statistics for merging.
+    private ShardResult runShard(File shard, boolean parallel) throws IOException {
+        String name = shard.getName();
+        String base = baseName(shard);
+        MedicalDataMiner miner = new MedicalDataMiner();
+        miner.setRiskRules(rules);
+        miner.setLoadMode(parallel ? LoadMode.PARALLEL : LoadMode.SEQUENTIAL);
+        miner.setParallelAnalysis(parallel);
+        miner.setDuplicatePolicy(duplicatePolicy);
+        miner.setFollowDataFile(false);
+
+        long start = System.nanoTime();
+        miner.loadData(shard.getPath(), TaskMonitor.NONE);
+        long loaded = System.nanoTime();
+
+        StringBuilder text = new StringBuilder();
+        for (Analysis analysis : analyses) {
+            switch (analysis) {
+                case STATISTICS: text.append(miner.calculateBasicStatistics()).append("\n"); break;
+                case RISK: text.append(miner.performRiskAnalysis()).append("\n"); break;
+                case PATTERNS: text.append(miner.findPatterns()).append("\n"); break;
+                case FREQUENCY: text.append(miner.analyzeFrequency()).append("\n"); break;
+                default: break;
+            }
+        }
+        if (outputDir != null && text.length() > 0) {
+            Files.writeString(outputDir.resolve(base + ".analysis.txt"), text, StandardCharsets.UTF_8);
+        }
+        if (analyses.contains(Analysis.PREDICTIONS)) {
+            try (Writer out = Files.newBufferedWriter(outputDir.resolve(base + ".predictions.csv"), StandardCharsets.UTF_8)) {
+                DiseasePredictor.write(miner.getRiskRules(), miner.getPatientStore(), out);
+            }
+        }
+        if (analyses.contains(Analysis.REPORT)) {
+            Path report = outputDir.resolve(base + ".report" + reportFormat.getExtension());
+            miner.generateReport(report.toString(), reportFormat, includePatients, TaskMonitor.NONE);
+        }
+        long done = System.nanoTime();
+
+        System.err.printf("%s: %s; load and scoring %.1f ms, analyses %.1f ms%n", name,
+                miner.getLastLoadStats(), (loaded - start) / 1_000_000.0, (done - loaded) / 1_000_000.0);
+        return new ShardResult(outputDir == null ? text.toString() : "", miner.getAnalysisSnapshot().getStatistics());
+    }
+
+    private static final class ShardResult {
+        final String text;
+        final PatientStatistics statistics;
+
+        ShardResult(String text, PatientStatistics statistics) {
+            this.text = text;
+            this.statistics = statistics;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+// Running statistics of one integer column: count, sum, min and max exactly, mean and variance by
+// Welford's method, and quantiles from a QuantileSketch. Memory does not grow with the number of values,
+// and two instances over disjoint rows merge into the statistics of all of them, using Chan et al.'s
+// formula to combine the variances. Blocks of a column are summarized in two exact passes and combined
+// the same way, which avoids Welford's division per value.
+public class ColumnStatistics {
+    private long count;
+    private long sum;
+    private int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+    private double mean, squaredDeviations;
+    private final QuantileSketch quantiles;
+
+    public ColumnStatistics() {
+        quantiles = new QuantileSketch();
+    }
+
+    private ColumnStatistics(ColumnStatistics source) {
+        count = source.count;
+        sum = source.sum;
+        min = source.min;
+        max = source.max;
+        mean = source.mean;
+        squaredDeviations = source.squaredDeviations;
+        quantiles = source.quantiles.copy();
+    }
+
+    public ColumnStatistics copy() {
+        return new ColumnStatistics(this);
+    }
+
+    public void add(int value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+        quantiles.add(value);
+    }
+
+    public void addAll(int[] values, int from, int to) {
+        if (from >= to) return;
+        long blockSum = 0;
+        int blockMin = Integer.MAX_VALUE, blockMax = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            int value = values[i];
+            blockSum += value;
+            blockMin = Math.min(blockMin, value);
+            blockMax = Math.max(blockMax, value);
+        }
+        double blockMean = (double) blockSum / (to - from);
+        double blockDeviations = 0;
+        for (int i = from; i < to; i++) {
+            double deviation = values[i] - blockMean;
+            blockDeviations += deviation * deviation;
+        }
+        combine(to - from, blockSum, blockMin, blockMax, blockMean, blockDeviations);
+        quantiles.addAll(values, from, to);
+    }
+
+    public void merge(ColumnStatistics other) {
+        if (other.count == 0) return;
+        combine(other.count, other.sum, other.min, other.max, other.mean, other.squaredDeviations);
+        quantiles.merge(other.quantiles);
+    }
+
+    private void combine(long otherCount, long otherSum, int otherMin, int otherMax, double otherMean,
+                         double otherDeviations) {
+        long total = count + otherCount;
+        double delta = otherMean - mean;
+        squaredDeviations += otherDeviations + delta * delta * count * otherCount / total;
+        mean += delta * otherCount / total;
+        count = total;
+        sum += otherSum;
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+    }
+
+    public long getCount() { return count; }
+    public long getSum() { return sum; }
+    public int getMin() { return min; }
+    public int getMax() { return max; }
+    public double getMean() { return mean; }
+
+    // Population standard deviation, as the rows are all of the patients rather than a sample.
+    public double getStandardDeviation() {
+        return count == 0 ? 0 : Math.sqrt(squaredDeviations / count);
+    }
+
+    public int getMedian() { return getQuantile(0.5); }
+    public int getQuantile(double fraction) { return quantiles.getQuantile(fraction); }
+}
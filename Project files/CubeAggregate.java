@@ -0,0 +1,25 @@
+// Count, sum, min and max of age, blood pressure and cholesterol over the patients of some cells of an
+// AggregationCube. Measures are indexed by AggregationCube.AGE, BLOOD_PRESSURE and CHOLESTEROL.
+public class CubeAggregate {
+    private final long count;
+    private final long[] sums;
+    private final int[] mins;
+    private final int[] maxs;
+
+    CubeAggregate(long count, long[] sums, int[] mins, int[] maxs) {
+        this.count = count;
+        this.sums = sums;
+        this.mins = mins;
+        this.maxs = maxs;
+    }
+
+    public long getCount() { return count; }
+    public boolean isEmpty() { return count == 0; }
+    public long getSum(int measure) { return sums[measure]; }
+    public int getMin(int measure) { return mins[measure]; }
+    public int getMax(int measure) { return maxs[measure]; }
+
+    public double getAverage(int measure) {
+        return count == 0 ? Double.NaN : (double) sums[measure] / count;
+    }
+}
@@ -0,0 +1,16 @@
+public enum CubeDimension {
+    AGE_GROUP("Age Group"),
+    BLOOD_GROUP("Blood Group"),
+    DIAGNOSIS("Diagnosis"),
+    RISK_TIER("Risk Tier");
+
+    private final String label;
+
+    CubeDimension(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// One consistent version of the loaded data: the columns, risk scores, indexes and aggregates as of the
+// end of a load, append or rule change. MedicalDataMiner publishes a new view after each of those, so a
+// reader that takes a view once sees the same rows in every part of it, however many batches are
+// appended or reloads swapped in while it works.
+public class DatasetView {
+    private final PatientStore store;
+    private final RiskScores riskScores;
+    private final PatientIndex index;
+    private final PatientIdIndex patientIds;
+    private final SimilarityIndex similarity;
+    private final AnalysisSnapshot analysis;
+    private final LoadStats loadStats;
+    private final AssociationMiner.SupportCache supportCache;
+    private volatile List<AssociationRule> associationRules;
+
+    DatasetView(PatientStore store, RiskScores riskScores, PatientIndex index, PatientIdIndex patientIds,
+                SimilarityIndex similarity, AnalysisSnapshot analysis, LoadStats loadStats,
+                AssociationMiner.SupportCache supportCache) {
+        this.store = store;
+        this.riskScores = riskScores;
+        this.index = index;
+        this.patientIds = patientIds;
+        this.similarity = similarity;
+        this.analysis = analysis;
+        this.loadStats = loadStats;
+        this.supportCache = supportCache;
+    }
+
+    public int size() { return store.size(); }
+    public boolean isEmpty() { return store.isEmpty(); }
+
+    public PatientStore getStore() { return store; }
+    public RiskScores getRiskScores() { return riskScores; }
+    public RiskRules getRiskRules() { return riskScores.getRules(); }
+    public AnalysisSnapshot getAnalysis() { return analysis; }
+    public AggregationCube getCube() { return analysis.getCube(); }
+    public LoadStats getLoadStats() { return loadStats; }
+
+    // The row of the patient with this ID, or -1; with duplicates kept, the last one loaded.
+    public int rowOf(int patientId) {
+        return patientIds.get(patientId);
+    }
+
+    public Patient getPatientById(int patientId) {
+        int row = patientIds.get(patientId);
+        return row < 0 ? null : store.getPatient(row);
+    }
+
+    // Searches over age, blood pressure and cholesterol in standard deviations; see SimilarityIndex.
+    public SimilarPatients findSimilar(int age, int bp, int cholesterol, int k) {
+        return similarity.nearest(age, bp, cholesterol, k);
+    }
+
+    public SimilarPatients findWithin(int age, int bp, int cholesterol, double distance) {
+        return similarity.within(age, bp, cholesterol, distance);
+    }
+
+    // Mined on first use and kept, since the view never changes. Concurrent first callers may each
+    // mine, but they get identical lists. Views of the same rows and rules share a support cache, so
+    // mining after an append only counts the appended rows.
+    public List<AssociationRule> getAssociationRules() {
+        List<AssociationRule> rules = associationRules;
+        if (rules == null) {
+            rules = AssociationMiner.mine(this, ForkJoinPool.commonPool(), supportCache);
+            associationRules = rules;
+        }
+        return rules;
+    }
+
+    PatientIndex getIndex() {
+        return index;
+    }
+
+    public PatientQuery query() {
+        return new PatientQuery(index, store);
+    }
+
+    public List<Patient> getPatientsByRiskTier(RiskTier tier) {
+        return analysis.getTierPatients(store, tier);
+    }
+}
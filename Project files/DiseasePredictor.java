@@ -0,0 +1,79 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Applies the disease prediction rules to whole columns at once. Results are DiseaseRisk codes in a
+// byte array rather than formatted strings, so screening a large intake costs one pass over the data.
+public class DiseasePredictor {
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    public static byte[] predict(RiskRules rules, int[] ages, int[] bloodPressures, int[] cholesterols) {
+        byte[] codes = new byte[ages.length];
+        rules.predict(ages, bloodPressures, cholesterols, 0, ages.length, codes, 0);
+        return codes;
+    }
+
+    public static byte[] predict(RiskRules rules, PatientStore store) {
+        byte[] codes = new byte[store.size()];
+        rules.predict(store.ages(), store.bloodPressures(), store.cholesterols(), 0, store.size(), codes, 0);
+        return codes;
+    }
+
+    // Streams one "ID,RiskCode,Risk" line per patient, predicting a block at a time. Returns the time
+    // spent in the prediction kernel, excluding formatting and I/O.
+    public static long write(RiskRules rules, PatientStore store, Writer out) throws IOException {
+        long predictNanos = 0;
+        byte[] codes = new byte[BLOCK_SIZE];
+        out.write("ID,RiskCode,Risk\n");
+        for (int from = 0; from < store.size(); from += BLOCK_SIZE) {
+            int to = Math.min(store.size(), from + BLOCK_SIZE);
+            long start = System.nanoTime();
+            rules.predict(store.ages(), store.bloodPressures(), store.cholesterols(), from, to, codes, 0);
+            predictNanos += System.nanoTime() - start;
+            for (int row = from; row < to; row++) {
+                out.write(Integer.toString(store.getPatientID(row)));
+                out.write(',');
+                out.write('0' + codes[row - from]);
+                out.write(',');
+                out.write(DiseaseRisk.of(codes[row - from]).name());
+                out.write('\n');
+            }
+        }
+        return predictNanos;
+    }
+
+    // Screens a patient file (CSV or snapshot) and streams one prediction per patient as CSV,
+    // e.g. java DiseasePredictor --rules site.properties intake.csv predictions.csv
+    public static void main(String[] args) throws IOException {
+        RiskRules rules = RiskRules.defaults();
+        if (args.length >= 2 && args[0].equals("--rules")) {
+            rules = RiskRules.load(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java DiseasePredictor [--rules rules.properties] "
+                    + "<patients.csv|patients.hdms> [predictions.csv]");
+            System.exit(2);
+        }
+        PatientStore store = new PatientStore();
+        LoadStats stats = PatientSnapshotFile.isSnapshot(args[0])
+                ? PatientSnapshotFile.read(args[0], store)
+                : new MappedCsvLoader(store).load(args[0]);
+        System.err.println("Loaded " + stats);
+
+        Writer out = args.length == 2
+                ? Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        long predictNanos;
+        try (out) {
+            predictNanos = write(rules, store, out);
+        }
+        System.err.printf("Predicted %,d patients in %.1f ms (%,.0f predictions/sec)%n", store.size(),
+                predictNanos / 1_000_000.0, store.size() * 1_000_000_000.0 / Math.max(1, predictNanos));
+    }
+}
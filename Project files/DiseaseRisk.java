@@ -0,0 +1,30 @@
+// Outcomes of the disease prediction rules, in rule priority order. Each category carries exactly one
+// recommendation, so the ordinal doubles as the recommendation code in batch results.
+public enum DiseaseRisk {
+    HYPERTENSION("High Risk of Hypertension", "Immediate medical consultation recommended"),
+    HEART_DISEASE("High Risk of Heart Disease", "Cardiac evaluation suggested"),
+    PRE_CONDITION("Moderate Risk - Pre-condition Stage", "Lifestyle changes and regular monitoring needed"),
+    HEALTHY("Low Risk - Healthy Range", "Maintain current lifestyle, annual check-ups"),
+    NEEDS_MONITORING("Needs Monitoring", "Regular health check-ups every 6 months");
+
+    private static final DiseaseRisk[] VALUES = values();
+
+    private final String label;
+    private final String recommendation;
+
+    DiseaseRisk(String label, String recommendation) {
+        this.label = label;
+        this.recommendation = recommendation;
+    }
+
+    public String getLabel() { return label; }
+    public String getRecommendation() { return recommendation; }
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    public static DiseaseRisk of(byte code) {
+        return VALUES[code];
+    }
+}
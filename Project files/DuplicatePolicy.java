@@ -0,0 +1,20 @@
+// What a load does with a row whose patient ID is already in the data, whether from an earlier load or
+// append or from higher up in the same file.
+public enum DuplicatePolicy {
+    // Every row is kept; looking the ID up finds the latest one
+    KEEP_ALL("Keep All"),
+    // The new row replaces the earlier one
+    LAST_WINS("Last Wins"),
+    // The new row is skipped and reported, keeping the first
+    REJECT("Reject");
+
+    private final String label;
+
+    DuplicatePolicy(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.Arrays;
+
+// Estimates the number of distinct values added, in 2^PRECISION one-byte registers whatever the number
+// of values. Each value is given as a 64-bit hash: the top bits pick a register and the register keeps
+// the longest run of leading zeros seen in the remaining bits. The standard error is 1.04 / sqrt(2^p),
+// about 0.8% here. Merging takes the larger of each pair of registers, so counts over shards or parallel
+// ranges combine into the count of their union rather than a sum.
+public class HyperLogLog {
+    private static final int PRECISION = 14;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(HyperLogLog source) {
+        registers = source.registers.clone();
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(this);
+    }
+
+    public void addHash(long hash) {
+        int register = (int) (hash >>> (64 - PRECISION));
+        // The sentinel bit caps the run so an all-zero remainder still gives a finite rank
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    public void addInt(int value) {
+        addHash(mix(value));
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) empty++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        // Small cardinalities leave registers empty; counting them is far more accurate there
+        if (estimate <= 2.5 * REGISTERS && empty > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) return false;
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    // The SplitMix64 finalizer, which spreads nearby values (such as sequential IDs) over all 64 bits.
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
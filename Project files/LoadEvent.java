@@ -0,0 +1,28 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Recorded for every file parsed into the store, initial loads and tailed appends alike.
+@Name("healthcare.Load")
+@Label("Patient Data Load")
+@Category({"Healthcare", "Data Miner"})
+@Description("Patient rows parsed from a CSV or snapshot file")
+public class LoadEvent extends jdk.jfr.Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Malformed Rows")
+    public long malformedRows;
+
+    @Label("Duplicate Rows")
+    public long duplicateRows;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,4 @@
+public enum LoadMode {
+    SEQUENTIAL,
+    PARALLEL
+}
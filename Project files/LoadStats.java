@@ -0,0 +1,51 @@
+public class LoadStats {
+    private final long rows;
+    private final long bytes;
+    private final long elapsedNanos;
+    private final long malformedRows;
+    private final long duplicateRows;
+
+    public LoadStats(long rows, long bytes, long elapsedNanos) {
+        this(rows, bytes, elapsedNanos, 0);
+    }
+
+    public LoadStats(long rows, long bytes, long elapsedNanos, long malformedRows) {
+        this(rows, bytes, elapsedNanos, malformedRows, 0);
+    }
+
+    public LoadStats(long rows, long bytes, long elapsedNanos, long malformedRows, long duplicateRows) {
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+        this.malformedRows = malformedRows;
+        this.duplicateRows = duplicateRows;
+    }
+
+    // The same load after its duplicate IDs were resolved, without the rows that were rejected.
+    public LoadStats withDuplicates(long duplicateRows, long rejectedRows) {
+        return new LoadStats(rows - rejectedRows, bytes, elapsedNanos, malformedRows, duplicateRows);
+    }
+
+    public long getRows() { return rows; }
+    public long getBytes() { return bytes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public long getMalformedRows() { return malformedRows; }
+    public long getDuplicateRows() { return duplicateRows; }
+
+    public double getRowsPerSecond() {
+        return rows * 1_000_000_000.0 / Math.max(1, elapsedNanos);
+    }
+
+    public double getBytesPerSecond() {
+        return bytes * 1_000_000_000.0 / Math.max(1, elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%,d rows (%,d bytes) in %.1f ms - %,.0f rows/sec",
+                rows, bytes, elapsedNanos / 1_000_000.0, getRowsPerSecond());
+        if (malformedRows > 0) summary += String.format(", %,d malformed rows skipped", malformedRows);
+        if (duplicateRows > 0) summary += String.format(", %,d duplicate IDs", duplicateRows);
+        return summary;
+    }
+}
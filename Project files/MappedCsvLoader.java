@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MappedCsvLoader {
+    private static final int WINDOW_SIZE = 1 << 28;
+    private static final int FIELD_COUNT = 7;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final int ALIGN_WINDOW = 1 << 16;
+    private static final int PROGRESS_INTERVAL = 1 << 16;
+
+    private final PatientStore store;
+    private final TaskMonitor monitor;
+    private final RowErrorListener errors;
+    private final int[] fieldStarts = new int[FIELD_COUNT];
+    private final int[] fieldEnds = new int[FIELD_COUNT];
+
+    private long windowPosition;
+    private long progressTotal;
+    private long malformedRows;
+    private long parsedTo;
+    private long[] rowOffsets;
+    private int rowOffsetCount;
+
+    public MappedCsvLoader(PatientStore store) {
+        this(store, TaskMonitor.NONE);
+    }
+
+    public MappedCsvLoader(PatientStore store, TaskMonitor monitor) {
+        this(store, monitor, RowErrorListener.NONE);
+    }
+
+    public MappedCsvLoader(PatientStore store, TaskMonitor monitor, RowErrorListener errors) {
+        this.store = store;
+        this.monitor = monitor;
+        this.errors = errors;
+    }
+
+    // Keeps the byte offset of the line each stored row came from, so that rows rejected after parsing
+    // can be reported by where they are in the file. Off by default, as it costs eight bytes a row.
+    public void setRecordRowOffsets(boolean record) {
+        rowOffsets = record ? new long[64] : null;
+        rowOffsetCount = 0;
+    }
+
+    // The line offsets of the rows this loader stored, in row order, or null when not recorded.
+    public long[] getRowOffsets() {
+        return rowOffsets == null ? null : Arrays.copyOf(rowOffsets, rowOffsetCount);
+    }
+
+    public LoadStats load(String filename) throws IOException {
+        return load(filename, true);
+    }
+
+    // Without includeUnterminated the load stops at the last newline, as append does, so a file still
+    // being written can be followed from the returned byte count.
+    public LoadStats load(String filename, boolean includeUnterminated) throws IOException {
+        long startTime = System.nanoTime();
+        int firstRow = store.size();
+        long end;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            progressTotal = channel.size();
+            end = parseRange(channel, skipHeader(channel), progressTotal, includeUnterminated);
+        }
+        return new LoadStats(store.size() - firstRow, end, System.nanoTime() - startTime, malformedRows);
+    }
+
+    public LoadStats append(String filename, long offset) throws IOException {
+        long startTime = System.nanoTime();
+        int firstRow = store.size();
+        long end;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) throw new IOException(filename + " was truncated below offset " + offset);
+            progressTotal = size;
+            end = parseRange(channel, offset, size, false);
+        }
+        return new LoadStats(store.size() - firstRow, end - offset, System.nanoTime() - startTime, malformedRows);
+    }
+
+    public LoadStats loadParallel(String filename, ForkJoinPool pool) throws IOException {
+        return loadParallel(filename, pool, true);
+    }
+
+    // Chunks are parsed into their own stores and appended in file order. If one fails, or the load is
+    // cancelled or interrupted, the chunks not yet started are cancelled and the running ones stop at
+    // their next cancellation check rather than parsing the rest of the file for nothing.
+    public LoadStats loadParallel(String filename, ForkJoinPool pool, boolean includeUnterminated) throws IOException {
+        long startTime = System.nanoTime();
+        int firstRow = store.size();
+        long end;
+        AtomicBoolean abandoned = new AtomicBoolean();
+        List<Future<MappedCsvLoader>> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            end = channel.size();
+            long[] bounds = splitOnLines(channel, skipHeader(channel), end, pool.getParallelism() * 4);
+            TaskMonitor chunkMonitor = new TaskMonitor() {
+                public void progress(String phase, long done, long total) { }
+                public boolean isCancelled() { return abandoned.get() || monitor.isCancelled(); }
+            };
+            try {
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    long chunkStart = bounds[i];
+                    long chunkEnd = bounds[i + 1];
+                    // Every chunk but the last ends just past a newline
+                    boolean last = i + 2 == bounds.length;
+                    chunks.add(pool.submit(() -> {
+                        MappedCsvLoader partial = new MappedCsvLoader(new PatientStore(), chunkMonitor, errors);
+                        partial.setRecordRowOffsets(rowOffsets != null);
+                        partial.parsedTo = partial.parseRange(channel, chunkStart, chunkEnd, includeUnterminated || !last);
+                        return partial;
+                    }));
+                }
+                for (int i = 0; i < chunks.size(); i++) {
+                    MappedCsvLoader partial = chunks.get(i).get();
+                    store.appendAll(partial.store);
+                    malformedRows += partial.malformedRows;
+                    for (int row = 0; row < partial.rowOffsetCount; row++) {
+                        addRowOffset(partial.rowOffsets[row]);
+                    }
+                    monitor.progress("Parsing", bounds[i + 1], end);
+                    if (i + 1 == chunks.size()) end = partial.parsedTo;
+                }
+            } finally {
+                if (chunks.stream().anyMatch(chunk -> !chunk.isDone())) {
+                    abandoned.set(true);
+                    chunks.forEach(chunk -> chunk.cancel(false));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + filename, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+        return new LoadStats(store.size() - firstRow, end, System.nanoTime() - startTime, malformedRows);
+    }
+
+    private long[] splitOnLines(FileChannel channel, long start, long end, int chunks) throws IOException {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (end - start) / Math.max(1, chunks));
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(start);
+        long position = start;
+        while (end - position > chunkSize) {
+            position = nextLineStart(channel, position + chunkSize, end);
+            if (position >= end) break;
+            bounds.add(position);
+        }
+        bounds.add(end);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private long nextLineStart(FileChannel channel, long offset, long end) throws IOException {
+        long position = offset;
+        while (position < end) {
+            int length = (int) Math.min(ALIGN_WINDOW, end - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n') return position + i + 1;
+            }
+            position += length;
+        }
+        return end;
+    }
+
+    public long skipHeader(FileChannel channel) throws IOException {
+        return nextLineStart(channel, 0, channel.size());
+    }
+
+    // Parses every complete line in [start, end) and returns the offset just past the last line consumed.
+    // An unterminated final line is only taken when includeUnterminated is set, so a file still being
+    // appended to can be resumed from the returned offset.
+    public long parseRange(FileChannel channel, long start, long end, boolean includeUnterminated) throws IOException {
+        long position = start;
+        while (position < end) {
+            int length = (int) Math.min(WINDOW_SIZE, end - position);
+            boolean lastWindow = position + length == end;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            windowPosition = position;
+            int consumed = parseBuffer(buffer, length, lastWindow && includeUnterminated);
+            position += consumed;
+            if (lastWindow) break;
+            if (consumed == 0) {
+                throw new IOException("Line longer than " + WINDOW_SIZE + " bytes at offset " + position);
+            }
+        }
+        return position;
+    }
+
+    private int parseBuffer(MappedByteBuffer buffer, int limit, boolean takeUnterminated) {
+        int lineStart = 0;
+        int lines = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                parseLine(buffer, lineStart, i);
+                lineStart = i + 1;
+                if (++lines % PROGRESS_INTERVAL == 0) {
+                    monitor.checkCancelled();
+                    monitor.progress("Parsing", windowPosition + i, progressTotal);
+                }
+            }
+        }
+        if (takeUnterminated && lineStart < limit) {
+            parseLine(buffer, lineStart, limit);
+            lineStart = limit;
+        }
+        return lineStart;
+    }
+
+    // Lines without exactly seven fields or with a number that does not parse are skipped, counted as
+    // malformed and reported; blank lines are skipped silently.
+    private boolean parseLine(MappedByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') end--;
+        // String.split drops trailing empty fields, so "a,b,c,d,e,f,g," still counts as seven
+        while (end > start && buffer.get(end - 1) == ',') end--;
+        if (end == start) return false;
+
+        int fields = 0;
+        fieldStarts[0] = start;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == ',') {
+                if (fields == FIELD_COUNT - 1) {
+                    return skip(start, "More than " + FIELD_COUNT + " fields");
+                }
+                fieldEnds[fields++] = i;
+                fieldStarts[fields] = i + 1;
+            }
+        }
+        fieldEnds[fields++] = end;
+        if (fields != FIELD_COUNT) {
+            return skip(start, fields + " fields instead of " + FIELD_COUNT);
+        }
+
+        int id, age, bp, chol;
+        try {
+            id = parseInt(buffer, fieldStarts[0], fieldEnds[0]);
+            age = parseInt(buffer, fieldStarts[2], fieldEnds[2]);
+            bp = parseInt(buffer, fieldStarts[3], fieldEnds[3]);
+            chol = parseInt(buffer, fieldStarts[4], fieldEnds[4]);
+        } catch (NumberFormatException e) {
+            return skip(start, e.getMessage());
+        }
+        int bloodGroup = store.getBloodGroups().encode(buffer, fieldStarts[5], fieldEnds[5] - fieldStarts[5]);
+        int diagnosis = store.getDiagnoses().encode(buffer, fieldStarts[6], fieldEnds[6] - fieldStarts[6]);
+        store.add(id, buffer, fieldStarts[1], fieldEnds[1] - fieldStarts[1], age, bp, chol, bloodGroup, diagnosis);
+        if (rowOffsets != null) addRowOffset(windowPosition + start);
+        return true;
+    }
+
+    private void addRowOffset(long offset) {
+        if (rowOffsetCount == rowOffsets.length) {
+            rowOffsets = Arrays.copyOf(rowOffsets, rowOffsetCount * 2);
+        }
+        rowOffsets[rowOffsetCount++] = offset;
+    }
+
+    private boolean skip(int lineStart, String reason) {
+        malformedRows++;
+        errors.rowSkipped(windowPosition + lineStart, reason);
+        return false;
+    }
+
+    private static int parseInt(MappedByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        if (i == end) throw notANumber(buffer, start, end);
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) throw notANumber(buffer, start, end);
+            value = value * 10 + digit;
+            if (value > 1L + Integer.MAX_VALUE) throw notANumber(buffer, start, end);
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) throw notANumber(buffer, start, end);
+        return (int) value;
+    }
+
+    private static NumberFormatException notANumber(MappedByteBuffer buffer, int start, int end) {
+        byte[] text = new byte[Math.min(end - start, 64)];
+        buffer.get(start, text);
+        return new NumberFormatException("Not an integer: \"" + new String(text, StandardCharsets.UTF_8) + "\"");
+    }
+}
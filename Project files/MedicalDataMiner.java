@@ -1,130 +1,451 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
+// Writers (loading, appending and changing rules) are serialized on a private lock and work on their own
+// columns, indexes and aggregates. After every batch they publish an immutable DatasetView through a
+// volatile field, and every read method works on the view it finds there, so any number of readers run
+// alongside a writer without locking and never see a partly applied batch. A full reload is built in a
+// new store and swapped in by the same single publication.
 public class MedicalDataMiner {
-    private ArrayList<Patient> allPatients;
-    private HashMap<String, ArrayList<Patient>> diagnosisMap;
-    private HashMap<String, Integer> bloodGroupCount;
+    private static final int REPORT_PROGRESS_INTERVAL = 1 << 16;
+    public static final int SIMILAR_PATIENTS = 10;
+    public static final int MAX_SIMILAR_PATIENTS = 1000;
+    
+    private final Object writeLock = new Object();
+    private PatientStore store;
+    private LoadStats lastLoadStats;
+    private volatile LoadMode loadMode = LoadMode.SEQUENTIAL;
+    private volatile boolean parallelAnalysis = true;
+    private volatile boolean followDataFile = true;
+    private RiskRules riskRules = RiskRules.defaults();
+    private RiskScores riskScores;
+    private AnalysisAccumulator accumulator;
+    private PatientIndex index;
+    private PatientIdIndex patientIds;
+    private SimilarityIndex similarity;
+    private AssociationMiner.SupportCache supportCache;
+    private volatile DuplicatePolicy duplicatePolicy = DuplicatePolicy.KEEP_ALL;
+    private volatile RowErrorListener rowErrors = RowErrorListener.NONE;
+    private volatile DatasetView view;
+    private String dataFile;
+    private long dataFileOffset;
+    private final MinerMetrics metrics = new MinerMetrics();
     
     public MedicalDataMiner() {
-        allPatients = new ArrayList<>();
-        diagnosisMap = new HashMap<>();
-        bloodGroupCount = new HashMap<>();
+        reset();
     }
     
     public boolean loadDataFromFile(String filename) {
-        allPatients.clear();
-        diagnosisMap.clear();
-        bloodGroupCount.clear();
-        
+        return loadDataFromFile(filename, TaskMonitor.NONE);
+    }
+    
+    public boolean loadDataFromFile(String filename, TaskMonitor monitor) {
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(filename));
-            String line = reader.readLine();
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 7) {
-                    int id = Integer.parseInt(parts[0]);
-                    String name = parts[1];
-                    int age = Integer.parseInt(parts[2]);
-                    int bp = Integer.parseInt(parts[3]);
-                    int chol = Integer.parseInt(parts[4]);
-                    String bloodGroup = parts[5];
-                    String diagnosis = parts[6];
-                    
-                    Patient patient = new Patient(id, name, age, bp, chol, bloodGroup, diagnosis);
-                    allPatients.add(patient);
-                    
-                    if (!diagnosisMap.containsKey(diagnosis)) {
-                        diagnosisMap.put(diagnosis, new ArrayList<>());
-                    }
-                    diagnosisMap.get(diagnosis).add(patient);
-                    
-                    bloodGroupCount.put(bloodGroup, bloodGroupCount.getOrDefault(bloodGroup, 0) + 1);
-                }
-            }
-            reader.close();
+            loadData(filename, monitor);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
     
+    // Same as loadDataFromFile, but tells the caller why a load failed. The miner is left empty then.
+    // Readers keep seeing the previous data until the new data is complete.
+    public void loadData(String filename, TaskMonitor monitor) throws IOException {
+        synchronized (writeLock) {
+            try (OperationTimer.Sample sample = metrics.time(MinerOperation.LOAD)) {
+                reset();
+                try {
+                    load(filename, monitor);
+                } catch (IOException | RuntimeException e) {
+                    reset();
+                    publish();
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    private void load(String filename, TaskMonitor monitor) throws IOException {
+        LoadEvent loadEvent = metrics.beginLoad();
+        if (PatientSnapshotFile.isSnapshot(filename)) {
+            // Snapshots are immutable images, so there is no CSV to tail afterwards
+            lastLoadStats = recordLoad(loadEvent, filename, PatientSnapshotFile.read(filename, store, monitor), null);
+            rowsAppended(monitor);
+            return;
+        }
+        // A file that may still be written to ends in a line that may be incomplete, so that is left for
+        // tailDataFile to take once its newline arrives
+        boolean follow = followDataFile;
+        MappedCsvLoader loader = new MappedCsvLoader(store, monitor, rowErrors);
+        loader.setRecordRowOffsets(duplicatePolicy == DuplicatePolicy.REJECT);
+        LoadStats stats;
+        if (loadMode == LoadMode.PARALLEL) {
+            stats = loader.loadParallel(filename, ForkJoinPool.commonPool(), !follow);
+        } else {
+            stats = loader.load(filename, !follow);
+        }
+        lastLoadStats = recordLoad(loadEvent, filename, stats, loader.getRowOffsets());
+        dataFile = follow ? filename : null;
+        dataFileOffset = stats.getBytes();
+        rowsAppended(monitor);
+    }
+    
+    // Resolves the duplicate IDs among the rows a load just stored, then records the load with them.
+    // The row offsets, when the loader kept them, are where rejected duplicates are reported to be.
+    private LoadStats recordLoad(LoadEvent loadEvent, String source, LoadStats stats, long[] rowOffsets) {
+        DuplicatePolicy policy = duplicatePolicy;
+        long duplicates = resolveDuplicates(policy, rowOffsets);
+        LoadStats resolved = stats.withDuplicates(duplicates, policy == DuplicatePolicy.REJECT ? duplicates : 0);
+        metrics.recordLoad(loadEvent, source, resolved);
+        return resolved;
+    }
+    
+    // Applies the policy to the rows stored since the last batch, before anything is derived from them,
+    // and returns how many of them repeated an ID. Dropped rows that no view has seen yet are removed in
+    // place; when a new row replaces one that views already share, everything starts over on a copy.
+    private long resolveDuplicates(DuplicatePolicy policy, long[] rowOffsets) {
+        int firstRow = index.getRowCount();
+        int[] ids = store.ids();
+        patientIds.ensureCapacity(patientIds.size() + store.size() - firstRow);
+        BitSet removed = new BitSet();
+        long duplicates = 0;
+        for (int row = firstRow; row < store.size(); row++) {
+            int id = ids[row];
+            int previous = policy == DuplicatePolicy.REJECT ? patientIds.putIfAbsent(id, row) : patientIds.put(id, row);
+            if (previous < 0) continue;
+            duplicates++;
+            if (policy == DuplicatePolicy.REJECT) {
+                removed.set(row);
+                long offset = rowOffsets != null && row - firstRow < rowOffsets.length ? rowOffsets[row - firstRow] : -1;
+                rowErrors.rowSkipped(offset, "Duplicate patient ID " + id);
+            } else if (policy == DuplicatePolicy.LAST_WINS) {
+                removed.set(previous);
+            }
+        }
+        if (removed.isEmpty()) return duplicates;
+        if (removed.nextSetBit(0) >= firstRow) {
+            store.removeRows(firstRow, removed);
+            mapIds(firstRow);
+        } else {
+            useStore(store.without(removed));
+            mapIds(0);
+        }
+        return duplicates;
+    }
+    
+    private void mapIds(int firstRow) {
+        int[] ids = store.ids();
+        for (int row = firstRow; row < store.size(); row++) {
+            patientIds.put(ids[row], row);
+        }
+    }
+    
+    // Replaces the data, and the rules it is scored with, in one publication. Unlike loadData, a load
+    // that fails leaves the previous data and rules in place, as a service re-reading its files wants.
+    // Readers hold on to the previous data until the new data is complete either way, so keeping the
+    // writer's side of it as well costs little.
+    public void reloadData(String filename, RiskRules rules, TaskMonitor monitor) throws IOException {
+        synchronized (writeLock) {
+            try (OperationTimer.Sample sample = metrics.time(MinerOperation.LOAD)) {
+                RiskRules previousRules = riskRules;
+                PatientStore previousStore = store;
+                RiskScores previousScores = riskScores;
+                AnalysisAccumulator previousAccumulator = accumulator;
+                PatientIndex previousIndex = index;
+                PatientIdIndex previousIds = patientIds;
+                SimilarityIndex previousSimilarity = similarity;
+                AssociationMiner.SupportCache previousSupports = supportCache;
+                LoadStats previousStats = lastLoadStats;
+                String previousFile = dataFile;
+                long previousOffset = dataFileOffset;
+                DatasetView previousView = view;
+                riskRules = rules;
+                reset();
+                try {
+                    load(filename, monitor);
+                } catch (IOException | RuntimeException e) {
+                    riskRules = previousRules;
+                    store = previousStore;
+                    riskScores = previousScores;
+                    accumulator = previousAccumulator;
+                    index = previousIndex;
+                    patientIds = previousIds;
+                    similarity = previousSimilarity;
+                    supportCache = previousSupports;
+                    lastLoadStats = previousStats;
+                    dataFile = previousFile;
+                    dataFileOffset = previousOffset;
+                    view = previousView;
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    public void saveSnapshot(String filename) throws IOException {
+        PatientSnapshotFile.write(view.getStore(), filename);
+    }
+    
+    // Starts over in new instances rather than clearing, since the published view shares their arrays.
+    private void reset() {
+        useStore(new PatientStore());
+        lastLoadStats = null;
+        dataFile = null;
+        if (view == null) {
+            publish();
+        }
+    }
+    
+    // Everything derived from the rows is started afresh, so the next rowsAppended covers all of them.
+    private void useStore(PatientStore newStore) {
+        store = newStore;
+        riskScores = new RiskScores(store, riskRules);
+        accumulator = new AnalysisAccumulator(store, riskScores);
+        index = new PatientIndex(store, riskScores);
+        patientIds = new PatientIdIndex();
+        similarity = new SimilarityIndex(store);
+        supportCache = new AssociationMiner.SupportCache();
+    }
+    
+    private void publish() {
+        PatientStore storeView = store.view();
+        RiskScores scoresView = riskScores.view(storeView);
+        view = new DatasetView(storeView, scoresView, index.view(storeView, scoresView),
+                patientIds.view(storeView.size()), similarity.view(storeView), accumulator.snapshot(scoresView),
+                lastLoadStats, supportCache);
+    }
+    
+    public void addPatients(Collection<Patient> patients) {
+        synchronized (writeLock) {
+            for (Patient p : patients) {
+                store.add(p.getPatientID(), p.getName(), p.getAge(), p.getBloodPressure(),
+                        p.getCholesterol(), p.getBloodGroup(), p.getDiagnosis());
+            }
+            resolveDuplicates(duplicatePolicy, null);
+            rowsAppended(TaskMonitor.NONE);
+        }
+    }
+    
+    // Returns the number of rows taken from the file, not counting rejected duplicates.
+    public int tailDataFile() throws IOException {
+        synchronized (writeLock) {
+            if (dataFile == null) throw new IllegalStateException("No data file loaded to follow");
+            LoadEvent loadEvent = metrics.beginLoad();
+            MappedCsvLoader loader = new MappedCsvLoader(store, TaskMonitor.NONE, rowErrors);
+            loader.setRecordRowOffsets(duplicatePolicy == DuplicatePolicy.REJECT);
+            LoadStats stats = recordLoad(loadEvent, dataFile, loader.append(dataFile, dataFileOffset), loader.getRowOffsets());
+            dataFileOffset += stats.getBytes();
+            rowsAppended(TaskMonitor.NONE);
+            return (int) stats.getRows();
+        }
+    }
+    
+    // Scoring, indexing and aggregation of the rows stored since the last batch, then publication of
+    // the result; timed as the "ingest" operation.
+    private void rowsAppended(TaskMonitor monitor) {
+        try (OperationTimer.Sample sample = metrics.time(MinerOperation.INGEST)) {
+            int firstRow = index.getRowCount();
+            riskScores.addRows(store.size());
+            index.addRows(firstRow, store.size());
+            similarity.addRows(store.size(), parallelAnalysis ? ForkJoinPool.commonPool() : null);
+            analyzeRows(accumulator, firstRow, monitor);
+            publish();
+        }
+    }
+    
+    private void analyzeRows(AnalysisAccumulator target, int firstRow, TaskMonitor monitor) {
+        if (parallelAnalysis) {
+            target.addRows(firstRow, store.size(), ForkJoinPool.commonPool(), monitor);
+        } else {
+            target.addRows(firstRow, store.size(), monitor);
+        }
+    }
+    
+    public RiskRules getRiskRules() {
+        return view.getRiskRules();
+    }
+    
+    public void setRiskRules(RiskRules rules) {
+        setRiskRules(rules, TaskMonitor.NONE);
+    }
+    
+    // Re-derives the rule-dependent analytics from the loaded columns, so new thresholds take effect
+    // without reloading patient data. The current analytics stay in place if this is cancelled.
+    public void setRiskRules(RiskRules rules, TaskMonitor monitor) {
+        synchronized (writeLock) {
+            try (OperationTimer.Sample sample = metrics.time(MinerOperation.RISK_RULES)) {
+                applyRiskRules(rules, monitor);
+            }
+        }
+    }
+    
+    private void applyRiskRules(RiskRules rules, TaskMonitor monitor) {
+        RiskScores newScores = new RiskScores(store, rules);
+        newScores.addRows(store.size());
+        AnalysisAccumulator newAccumulator = new AnalysisAccumulator(store, newScores);
+        PatientIndex newIndex = new PatientIndex(store, newScores);
+        newIndex.addRows(0, store.size());
+        analyzeRows(newAccumulator, 0, monitor);
+        riskRules = rules;
+        riskScores = newScores;
+        accumulator = newAccumulator;
+        index = newIndex;
+        supportCache = new AssociationMiner.SupportCache();
+        publish();
+    }
+    
+    public void loadRiskRules(String filename, TaskMonitor monitor) throws IOException {
+        setRiskRules(RiskRules.load(filename), monitor);
+    }
+    
+    public LoadStats getLastLoadStats() {
+        return view.getLoadStats();
+    }
+    
+    public DuplicatePolicy getDuplicatePolicy() {
+        return duplicatePolicy;
+    }
+    
+    // Applies from the next load or append on; rows already loaded stay as they are.
+    public void setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+    }
+    
+    public RowErrorListener getRowErrorListener() {
+        return rowErrors;
+    }
+    
+    // Hears about every row that later loads and appends skip; see RowErrorListener.
+    public void setRowErrorListener(RowErrorListener rowErrors) {
+        this.rowErrors = rowErrors;
+    }
+    
+    public LoadMode getLoadMode() {
+        return loadMode;
+    }
+    
+    public void setLoadMode(LoadMode loadMode) {
+        this.loadMode = loadMode;
+    }
+    
+    public boolean isParallelAnalysis() {
+        return parallelAnalysis;
+    }
+    
+    public void setParallelAnalysis(boolean parallelAnalysis) {
+        this.parallelAnalysis = parallelAnalysis;
+    }
+    
+    public boolean isFollowDataFile() {
+        return followDataFile;
+    }
+    
+    // On by default, so that tailDataFile can pick up rows written after a CSV load. Turned off, a load
+    // also takes a final line that has no newline, and the file cannot be tailed.
+    public void setFollowDataFile(boolean followDataFile) {
+        this.followDataFile = followDataFile;
+    }
+    
+    public MinerMetrics getMetrics() {
+        return metrics;
+    }
+    
+    // The data as of the last completed load, append or rule change; see DatasetView.
+    public DatasetView getView() {
+        return view;
+    }
+    
+    public AnalysisSnapshot getAnalysisSnapshot() {
+        return view.getAnalysis();
+    }
+    
+    // The text of one analysis section, as returned by the public analysis methods.
+    static String describe(ReportSection section, DatasetView data) {
+        switch (section) {
+            case STATISTICS: return describeStatistics(data);
+            case RISK: return describeRisk(data);
+            case PATTERNS: return describePatterns(data);
+            default: return describeFrequency(data);
+        }
+    }
+    
     public String calculateBasicStatistics() {
-        if (allPatients.isEmpty()) return "No data loaded";
-        
-        int totalAge = 0, totalBP = 0, totalChol = 0;
-        int minAge = Integer.MAX_VALUE, maxAge = Integer.MIN_VALUE;
-        int minBP = Integer.MAX_VALUE, maxBP = Integer.MIN_VALUE;
-        int minChol = Integer.MAX_VALUE, maxChol = Integer.MIN_VALUE;
-        
-        for (Patient p : allPatients) {
-            totalAge += p.getAge();
-            totalBP += p.getBloodPressure();
-            totalChol += p.getCholesterol();
-            
-            minAge = Math.min(minAge, p.getAge());
-            maxAge = Math.max(maxAge, p.getAge());
-            minBP = Math.min(minBP, p.getBloodPressure());
-            maxBP = Math.max(maxBP, p.getBloodPressure());
-            minChol = Math.min(minChol, p.getCholesterol());
-            maxChol = Math.max(maxChol, p.getCholesterol());
+        try (OperationTimer.Sample sample = metrics.time(MinerOperation.STATISTICS)) {
+            return describeStatistics(view);
         }
-        
-        int count = allPatients.size();
+    }
+    
+    private static String describeStatistics(DatasetView data) {
+        AnalysisSnapshot stats = data.getAnalysis();
+        if (stats.isEmpty()) return "No data loaded";
+        return describeStatistics(stats.getStatistics());
+    }
+    
+    // Also used for statistics merged over several shards, which have no single view.
+    static String describeStatistics(PatientStatistics stats) {
         StringBuilder result = new StringBuilder();
         result.append("=== MEDICAL DATA STATISTICS ===\n");
-        result.append("Total Patients: ").append(count).append("\n\n");
+        result.append("Total Patients: ").append(stats.getPatientCount()).append("\n");
+        result.append("Distinct Patient IDs (estimated): ").append(stats.getDistinctIds()).append("\n");
+        result.append("Distinct Names (estimated): ").append(stats.getDistinctNames()).append("\n\n");
         result.append("Age Statistics:\n");
-        result.append("  Average: ").append(totalAge / count).append(" years\n");
-        result.append("  Range: ").append(minAge).append(" - ").append(maxAge).append("\n\n");
-        result.append("Blood Pressure Statistics:\n");
-        result.append("  Average: ").append(totalBP / count).append(" mmHg\n");
-        result.append("  Range: ").append(minBP).append(" - ").append(maxBP).append("\n\n");
-        result.append("Cholesterol Statistics:\n");
-        result.append("  Average: ").append(totalChol / count).append(" mg/dL\n");
-        result.append("  Range: ").append(minChol).append(" - ").append(maxChol).append("\n");
+        describeColumn(result, stats.getAge(), "years");
+        result.append("\nBlood Pressure Statistics:\n");
+        describeColumn(result, stats.getBloodPressure(), "mmHg");
+        result.append("\nCholesterol Statistics:\n");
+        describeColumn(result, stats.getCholesterol(), "mg/dL");
         
         return result.toString();
     }
     
+    private static void describeColumn(StringBuilder result, ColumnStatistics column, String unit) {
+        result.append(String.format(Locale.ROOT, "  Average: %.1f %s (standard deviation %.1f)\n",
+                column.getMean(), unit, column.getStandardDeviation()));
+        result.append("  Median: ").append(column.getMedian())
+              .append(", 90th percentile: ").append(column.getQuantile(0.9))
+              .append(", 99th percentile: ").append(column.getQuantile(0.99)).append("\n");
+        result.append("  Range: ").append(column.getMin()).append(" - ").append(column.getMax()).append("\n");
+    }
+    
     public String performRiskAnalysis() {
-        if (allPatients.isEmpty()) return "No data loaded";
-        
-        int lowRisk = 0, mediumRisk = 0, highRisk = 0;
-        ArrayList<Patient> highRiskPatients = new ArrayList<>();
-        
-        for (Patient p : allPatients) {
-            int riskScore = calculateRiskScore(p);
-            if (riskScore <= 3) {
-                lowRisk++;
-            } else if (riskScore <= 6) {
-                mediumRisk++;
-            } else {
-                highRisk++;
-                highRiskPatients.add(p);
-            }
+        try (OperationTimer.Sample sample = metrics.time(MinerOperation.RISK_ANALYSIS)) {
+            return describeRisk(view);
         }
+    }
+    
+    private static String describeRisk(DatasetView data) {
+        AnalysisSnapshot stats = data.getAnalysis();
+        if (stats.isEmpty()) return "No data loaded";
+        
+        int highRisk = stats.getTierCount(RiskTier.HIGH);
+        int mediumRisk = stats.getTierCount(RiskTier.MEDIUM);
+        int lowRisk = stats.getTierCount(RiskTier.LOW);
         
         StringBuilder result = new StringBuilder();
         result.append("=== RISK CLASSIFICATION ANALYSIS ===\n");
-        result.append("Total Patients Analyzed: ").append(allPatients.size()).append("\n\n");
+        result.append("Total Patients Analyzed: ").append(stats.getPatientCount()).append("\n\n");
         result.append("Risk Distribution:\n");
         result.append("  HIGH RISK: ").append(highRisk).append(" patients (")
-              .append((highRisk * 100) / allPatients.size()).append("%)\n");
+              .append(stats.percentOf(highRisk)).append("%)\n");
         result.append("  MEDIUM RISK: ").append(mediumRisk).append(" patients (")
-              .append((mediumRisk * 100) / allPatients.size()).append("%)\n");
+              .append(stats.percentOf(mediumRisk)).append("%)\n");
         result.append("  LOW RISK: ").append(lowRisk).append(" patients (")
-              .append((lowRisk * 100) / allPatients.size()).append("%)\n\n");
+              .append(stats.percentOf(lowRisk)).append("%)\n\n");
         
-        if (!highRiskPatients.isEmpty()) {
+        if (stats.getHighRiskCount() > 0) {
+            PatientStore store = data.getStore();
             result.append("High Risk Patients (Need Immediate Attention):\n");
-            for (int i = 0; i < Math.min(5, highRiskPatients.size()); i++) {
-                Patient p = highRiskPatients.get(i);
-                result.append("  - ").append(p.getName())
-                      .append(" (Age: ").append(p.getAge())
-                      .append(", BP: ").append(p.getBloodPressure())
-                      .append(", Cholesterol: ").append(p.getCholesterol())
+            for (int i = 0; i < Math.min(5, stats.getHighRiskCount()); i++) {
+                int row = stats.getHighRiskRow(i);
+                result.append("  - ").append(store.getName(row))
+                      .append(" (Age: ").append(store.getAge(row))
+                      .append(", BP: ").append(store.getBloodPressure(row))
+                      .append(", Cholesterol: ").append(store.getCholesterol(row))
                       .append(")\n");
             }
         }
@@ -132,102 +453,91 @@ public class MedicalDataMiner {
         return result.toString();
     }
     
-    private int calculateRiskScore(Patient p) {
-        int score = 0;
-        if (p.getAge() > 60) score += 2;
-        else if (p.getAge() > 45) score += 1;
-        
-        if (p.getBloodPressure() > 140) score += 3;
-        else if (p.getBloodPressure() > 130) score += 2;
-        
-        if (p.getCholesterol() > 200) score += 3;
-        else if (p.getCholesterol() > 180) score += 1;
-        
-        if (!p.getDiagnosis().equals("Healthy")) score += 2;
-        
-        return score;
+    public String findPatterns() {
+        try (OperationTimer.Sample sample = metrics.time(MinerOperation.PATTERNS)) {
+            return describePatterns(view);
+        }
     }
     
-    public String findPatterns() {
-        if (allPatients.isEmpty()) return "No data loaded";
+    private static String describePatterns(DatasetView data) {
+        AnalysisSnapshot stats = data.getAnalysis();
+        if (stats.isEmpty()) return "No data loaded";
         
         StringBuilder result = new StringBuilder();
         result.append("=== PATTERN ANALYSIS ===\n\n");
         
-        int highBPHighChol = 0;
-        int highBPWithHeart = 0;
-        int diabetesOver50 = 0;
-        int healthyUnder30 = 0;
-        
-        for (Patient p : allPatients) {
-            if (p.getBloodPressure() > 140 && p.getCholesterol() > 200) {
-                highBPHighChol++;
-                if (p.getDiagnosis().contains("Heart")) {
-                    highBPWithHeart++;
-                }
-            }
-            if (p.getAge() > 50 && p.getDiagnosis().equals("Diabetes")) {
-                diabetesOver50++;
-            }
-            if (p.getAge() < 30 && p.getDiagnosis().equals("Healthy")) {
-                healthyUnder30++;
-            }
-        }
+        int highBPHighChol = stats.getHighBPHighChol();
+        int highBPWithHeart = stats.getHighBPWithHeart();
         
         result.append("Discovered Patterns:\n");
-        result.append("1. Patients with High BP (>140) AND High Cholesterol (>200): ")
+        RiskRules rules = stats.getRules();
+        result.append("1. Patients with High BP (>").append(rules.getHighBloodPressure())
+              .append(") AND High Cholesterol (>").append(rules.getHighCholesterol()).append("): ")
               .append(highBPHighChol).append("\n");
         if (highBPHighChol > 0) {
             result.append("   - Of these, ").append(highBPWithHeart)
                   .append(" have heart-related issues (")
-                  .append((highBPWithHeart * 100) / highBPHighChol).append("%)\n");
+                  .append((highBPWithHeart * 100L) / highBPHighChol).append("%)\n");
         }
-        result.append("\n2. Diabetes Cases in Age > 50: ").append(diabetesOver50).append("\n");
-        result.append("3. Healthy Individuals Under 30: ").append(healthyUnder30).append("\n\n");
+        result.append("\n2. Diabetes Cases in Age > ").append(rules.getDiabetesAge()).append(": ")
+              .append(stats.getDiabetesOver50()).append("\n");
+        result.append("3. Healthy Individuals Under ").append(rules.getYoungAge()).append(": ")
+              .append(stats.getHealthyUnder30()).append("\n\n");
         
         result.append("Age Group Analysis:\n");
-        int[] ageGroups = new int[4];
-        for (Patient p : allPatients) {
-            if (p.getAge() < 30) ageGroups[0]++;
-            else if (p.getAge() < 45) ageGroups[1]++;
-            else if (p.getAge() < 60) ageGroups[2]++;
-            else ageGroups[3]++;
-        }
-        result.append("  Under 30: ").append(ageGroups[0]).append(" patients\n");
-        result.append("  30-44: ").append(ageGroups[1]).append(" patients\n");
-        result.append("  45-59: ").append(ageGroups[2]).append(" patients\n");
-        result.append("  60 and above: ").append(ageGroups[3]).append(" patients\n");
+        for (int group = 0; group < stats.getAgeGroupCount(); group++) {
+            result.append("  ").append(stats.getAgeGroupLabel(group)).append(": ")
+                  .append(stats.getAgeGroup(group)).append(" patients\n");
+        }
+        
+        result.append(String.format(Locale.ROOT, "\nAssociation Rules (support >= %.1f%%, confidence >= %.1f%%):\n",
+                rules.getMinSupport(), rules.getMinConfidence()));
+        List<AssociationRule> associationRules = data.getAssociationRules();
+        if (associationRules.isEmpty()) {
+            result.append("  No rules found at these thresholds\n");
+        }
+        for (int i = 0; i < associationRules.size(); i++) {
+            AssociationRule rule = associationRules.get(i);
+            result.append("  ").append(i + 1).append(". ").append(rule).append("\n");
+            result.append("     ").append(rule.describeMeasures()).append("\n");
+        }
         
         return result.toString();
     }
     
     public String analyzeFrequency() {
-        if (allPatients.isEmpty()) return "No data loaded";
+        try (OperationTimer.Sample sample = metrics.time(MinerOperation.FREQUENCY)) {
+            return describeFrequency(view);
+        }
+    }
+    
+    private static String describeFrequency(DatasetView data) {
+        AnalysisSnapshot stats = data.getAnalysis();
+        if (stats.isEmpty()) return "No data loaded";
         
         StringBuilder result = new StringBuilder();
         result.append("=== FREQUENCY ANALYSIS ===\n\n");
         
         result.append("Diagnosis Distribution:\n");
-        for (Map.Entry<String, ArrayList<Patient>> entry : diagnosisMap.entrySet()) {
-            int count = entry.getValue().size();
-            int percentage = (count * 100) / allPatients.size();
-            result.append("  ").append(entry.getKey()).append(": ")
-                  .append(count).append(" cases (").append(percentage).append("%)\n");
+        for (int code = 0; code < stats.getDiagnosisCount(); code++) {
+            int count = stats.getDiagnosisFrequency(code);
+            result.append("  ").append(stats.getDiagnosis(code)).append(": ")
+                  .append(count).append(" cases (").append(stats.percentOf(count)).append("%)\n");
         }
         
         result.append("\nBlood Group Distribution:\n");
-        for (Map.Entry<String, Integer> entry : bloodGroupCount.entrySet()) {
-            int percentage = (entry.getValue() * 100) / allPatients.size();
-            result.append("  ").append(entry.getKey()).append(": ")
-                  .append(entry.getValue()).append(" patients (").append(percentage).append("%)\n");
+        for (int code = 0; code < stats.getBloodGroupCount(); code++) {
+            int count = stats.getBloodGroupFrequency(code);
+            result.append("  ").append(stats.getBloodGroup(code)).append(": ")
+                  .append(count).append(" patients (").append(stats.percentOf(count)).append("%)\n");
         }
         
         String mostCommon = "";
         int maxCount = 0;
-        for (Map.Entry<String, ArrayList<Patient>> entry : diagnosisMap.entrySet()) {
-            if (entry.getValue().size() > maxCount) {
-                maxCount = entry.getValue().size();
-                mostCommon = entry.getKey();
+        for (int code = 0; code < stats.getDiagnosisCount(); code++) {
+            if (stats.getDiagnosisFrequency(code) > maxCount) {
+                maxCount = stats.getDiagnosisFrequency(code);
+                mostCommon = stats.getDiagnosis(code);
             }
         }
         
@@ -238,70 +548,160 @@ public class MedicalDataMiner {
     }
     
     public String predictDisease(int age, int bp, int cholesterol) {
+        return predictDisease(age, bp, cholesterol, SIMILAR_PATIENTS);
+    }
+    
+    // The rule-based prediction, followed by the most similar loaded patients (at most
+    // MAX_SIMILAR_PATIENTS) and the diagnosis most of them share.
+    public String predictDisease(int age, int bp, int cholesterol, int similarPatients) {
+        try (OperationTimer.Sample sample = metrics.time(MinerOperation.PREDICTION)) {
+            DatasetView data = view;
+            SimilarPatients similar = data.findSimilar(age, bp, cholesterol,
+                    Math.min(similarPatients, MAX_SIMILAR_PATIENTS));
+            return describePrediction(data, age, bp, cholesterol, similar);
+        }
+    }
+    
+    // The prediction text for neighbours already found in the same view, for callers that also show them.
+    public static String describePrediction(DatasetView data, int age, int bp, int cholesterol,
+                                            SimilarPatients similar) {
         StringBuilder prediction = new StringBuilder();
         prediction.append("=== DISEASE PREDICTION ===\n");
         prediction.append("Input: Age=").append(age)
                   .append(", BP=").append(bp)
                   .append(", Cholesterol=").append(cholesterol).append("\n\n");
         
-        String risk = "";
-        String recommendation = "";
+        DiseaseRisk risk = data.getRiskRules().predict(age, bp, cholesterol);
         
-        if (bp > 160 || (bp > 140 && age > 55)) {
-            risk = "High Risk of Hypertension";
-            recommendation = "Immediate medical consultation recommended";
-        } else if (cholesterol > 240 && age > 45) {
-            risk = "High Risk of Heart Disease";
-            recommendation = "Cardiac evaluation suggested";
-        } else if (bp > 130 || cholesterol > 200) {
-            risk = "Moderate Risk - Pre-condition Stage";
-            recommendation = "Lifestyle changes and regular monitoring needed";
-        } else if (age < 30 && bp < 120 && cholesterol < 180) {
-            risk = "Low Risk - Healthy Range";
-            recommendation = "Maintain current lifestyle, annual check-ups";
-        } else {
-            risk = "Needs Monitoring";
-            recommendation = "Regular health check-ups every 6 months";
-        }
+        prediction.append("Prediction: ").append(risk.getLabel()).append("\n");
+        prediction.append("Recommendation: ").append(risk.getRecommendation()).append("\n");
+        if (similar.isEmpty()) return prediction.toString();
         
-        prediction.append("Prediction: ").append(risk).append("\n");
-        prediction.append("Recommendation: ").append(recommendation).append("\n");
+        PatientStore store = data.getStore();
+        prediction.append("\nMost Similar Patients:\n");
+        int[] votes = new int[store.getDiagnoses().size()];
+        for (int i = 0; i < similar.size(); i++) {
+            int row = similar.getRow(i);
+            prediction.append(String.format(Locale.ROOT, "  %d %s: Age=%d, BP=%d, Cholesterol=%d, %s (distance %.2f)%n",
+                    store.getPatientID(row), store.getName(row), store.getAge(row), store.getBloodPressure(row),
+                    store.getCholesterol(row), store.getDiagnosis(row), similar.getDistance(i)));
+            votes[store.getDiagnosisCode(row)]++;
+        }
+        // Ties go to the diagnosis of the nearer patient
+        int nearestDiagnosis = store.getDiagnosisCode(similar.getRow(0));
+        for (int i = 1; i < similar.size(); i++) {
+            int code = store.getDiagnosisCode(similar.getRow(i));
+            if (votes[code] > votes[nearestDiagnosis]) nearestDiagnosis = code;
+        }
+        prediction.append("Nearest-Neighbour Prediction: ").append(store.getDiagnoses().valueOf(nearestDiagnosis))
+                  .append(" (").append(votes[nearestDiagnosis]).append(" of ").append(similar.size())
+                  .append(" similar patients)\n");
         
         return prediction.toString();
     }
     
-    public void generateReport(String filename) {
-        try {
-            PrintWriter writer = new PrintWriter(new FileWriter(filename));
-            writer.println("MEDICAL DATA MINING REPORT");
-            writer.println("Generated on: " + new Date());
-            writer.println("=" .repeat(50));
-            writer.println();
-            writer.println(calculateBasicStatistics());
-            writer.println(performRiskAnalysis());
-            writer.println(findPatterns());
-            writer.println(analyzeFrequency());
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-    
-    public ArrayList<Patient> getAllPatients() {
-        return allPatients;
-    }
-    
-    public ArrayList<Patient> getHighRiskPatients() {
-        ArrayList<Patient> highRisk = new ArrayList<>();
-        for (Patient p : allPatients) {
-            if (calculateRiskScore(p) > 6) {
-                highRisk.add(p);
+    // The k loaded patients closest to these values, in standard deviations of each column, nearest first.
+    public List<Patient> getSimilarPatients(int age, int bp, int cholesterol, int k) {
+        DatasetView data = view;
+        return data.getStore().rows(data.findSimilar(age, bp, cholesterol, k).getRows());
+    }
+    
+    // Every loaded patient within the given distance of these values, nearest first.
+    public List<Patient> getPatientsWithin(int age, int bp, int cholesterol, double distance) {
+        DatasetView data = view;
+        return data.getStore().rows(data.findWithin(age, bp, cholesterol, distance).getRows());
+    }
+    
+    public DiseaseRisk predictRisk(int age, int bp, int cholesterol) {
+        return getRiskRules().predict(age, bp, cholesterol);
+    }
+    
+    // One DiseaseRisk code per loaded patient, in row order.
+    public byte[] predictDiseases() {
+        try (OperationTimer.Sample sample = metrics.time(MinerOperation.BATCH_PREDICTION)) {
+            DatasetView data = view;
+            return DiseasePredictor.predict(data.getRiskRules(), data.getStore());
+        }
+    }
+    
+    public void generateReport(String filename) throws IOException {
+        generateReport(filename, TaskMonitor.NONE);
+    }
+    
+    public void generateReport(String filename, TaskMonitor monitor) throws IOException {
+        generateReport(filename, ReportFormat.forFile(filename), false, monitor);
+    }
+    
+    // Writes the summary sections and, optionally, one risk line per patient. Patient lines are
+    // streamed through a buffered writer, so the report never has to fit in memory. A failed or
+    // cancelled report leaves no partial file behind.
+    public void generateReport(String filename, ReportFormat format, boolean includePatients,
+                               TaskMonitor monitor) throws IOException {
+        try (OperationTimer.Sample sample = metrics.time(MinerOperation.REPORT)) {
+            writeReport(filename, format, includePatients, monitor);
+        }
+    }
+    
+    private void writeReport(String filename, ReportFormat format, boolean includePatients,
+                             TaskMonitor monitor) throws IOException {
+        DatasetView data = view;
+        PatientStore store = data.getStore();
+        Path path = Paths.get(filename);
+        boolean complete = false;
+        try (ReportWriter writer = ReportWriter.create(format, Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            monitor.progress("Writing report", 0, store.size());
+            writer.summary(data, new Date());
+            if (includePatients) {
+                RiskScores scores = data.getRiskScores();
+                writer.beginPatients();
+                for (int row = 0; row < store.size(); row++) {
+                    writer.patient(store, row, scores.getScore(row), scores.getTier(row));
+                    if ((row + 1) % REPORT_PROGRESS_INTERVAL == 0) {
+                        monitor.checkCancelled();
+                        monitor.progress("Writing patient details", row + 1, store.size());
+                    }
+                }
+                writer.endPatients();
+            }
+            complete = true;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(path);
             }
         }
-        return highRisk;
     }
     
-    public ArrayList<Patient> getPatientsByDiagnosis(String diagnosis) {
-        return diagnosisMap.getOrDefault(diagnosis, new ArrayList<>());
+    public List<Patient> getAllPatients() {
+        return view.getStore().asList();
+    }
+    
+    public PatientStore getPatientStore() {
+        return view.getStore();
+    }
+    
+    public List<Patient> getHighRiskPatients() {
+        return getPatientsByRiskTier(RiskTier.HIGH);
+    }
+    
+    public List<Patient> getPatientsByRiskTier(RiskTier tier) {
+        return view.getPatientsByRiskTier(tier);
+    }
+    
+    public RiskScores getRiskScores() {
+        return view.getRiskScores();
+    }
+    
+    public PatientQuery query() {
+        return view.query();
+    }
+    
+    // The patient with this ID, or null; with duplicates kept, the one loaded last.
+    public Patient getPatientById(int patientId) {
+        return view.getPatientById(patientId);
+    }
+    
+    public List<Patient> getPatientsByDiagnosis(String diagnosis) {
+        DatasetView data = view;
+        return data.getStore().rows(data.query().diagnosis(diagnosis).rows());
     }
 }
@@ -1,21 +1,47 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
 
 public class MedicalGUI extends JFrame {
+    private static final int MAX_SKIPPED_ROWS_SHOWN = 20;
+    
     private MedicalDataMiner dataMiner;
     private JTable dataTable;
-    private DefaultTableModel tableModel;
+    private PatientTableModel tableModel;
+    private PatientColumn sortColumn;
+    private boolean sortAscending;
     private JTextArea resultsArea;
-    private JButton loadButton, analyzeButton, reportButton;
+    private JButton loadButton, analyzeButton, reportButton, cancelButton;
+    private JProgressBar progressBar;
+    private JLabel statusLabel;
+    private BackgroundTaskRunner taskRunner;
     private JMenuBar menuBar;
+    private MetricsPanel metricsPanel;
+    private JDialog pivotDialog;
+    private PivotPanel pivotPanel;
+    private File rulesFile = new File("risk-rules.properties");
+    private final java.util.List<String> skippedRows = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
     
     public MedicalGUI() {
         dataMiner = new MedicalDataMiner();
+        dataMiner.setRowErrorListener((offset, reason) -> {
+            if (skippedRows.size() < MAX_SKIPPED_ROWS_SHOWN) {
+                skippedRows.add(offset < 0 ? reason : "byte " + offset + ": " + reason);
+            }
+        });
         initializeGUI();
+        // The metrics panel works without JMX, so a failure is only worth a note in the status bar
+        try {
+            dataMiner.getMetrics().registerMBeans();
+        } catch (javax.management.JMException e) {
+            statusLabel.setText("Metrics are not available over JMX: " + e.getMessage());
+        }
+        if (rulesFile.isFile()) {
+            applyRiskRules(rulesFile);
+        }
     }
     
     private void initializeGUI() {
@@ -38,15 +64,36 @@ public class MedicalGUI extends JFrame {
         
         JMenu fileMenu = new JMenu("File");
         JMenuItem loadItem = new JMenuItem("Load Data");
+        JMenuItem appendItem = new JMenuItem("Append New Rows");
         JMenuItem saveReportItem = new JMenuItem("Save Report");
+        JMenuItem saveSnapshotItem = new JMenuItem("Save Snapshot");
+        JCheckBoxMenuItem parallelLoadItem = new JCheckBoxMenuItem("Parallel Loading");
+        JMenu duplicatesMenu = new JMenu("Duplicate Patient IDs");
         JMenuItem exitItem = new JMenuItem("Exit");
         
         loadItem.addActionListener(e -> loadDataFile());
+        appendItem.addActionListener(e -> appendNewRows());
         saveReportItem.addActionListener(e -> saveReport());
+        saveSnapshotItem.addActionListener(e -> saveSnapshot());
+        parallelLoadItem.addActionListener(e -> dataMiner.setLoadMode(
+                parallelLoadItem.isSelected() ? LoadMode.PARALLEL : LoadMode.SEQUENTIAL));
         exitItem.addActionListener(e -> System.exit(0));
         
+        ButtonGroup duplicatesGroup = new ButtonGroup();
+        for (DuplicatePolicy policy : DuplicatePolicy.values()) {
+            JRadioButtonMenuItem policyItem = new JRadioButtonMenuItem(policy.getLabel(),
+                    policy == dataMiner.getDuplicatePolicy());
+            policyItem.addActionListener(e -> dataMiner.setDuplicatePolicy(policy));
+            duplicatesGroup.add(policyItem);
+            duplicatesMenu.add(policyItem);
+        }
+        
         fileMenu.add(loadItem);
+        fileMenu.add(appendItem);
         fileMenu.add(saveReportItem);
+        fileMenu.add(saveSnapshotItem);
+        fileMenu.add(parallelLoadItem);
+        fileMenu.add(duplicatesMenu);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
         
@@ -56,12 +103,16 @@ public class MedicalGUI extends JFrame {
         JMenuItem patternItem = new JMenuItem("Find Patterns");
         JMenuItem frequencyItem = new JMenuItem("Frequency Analysis");
         JMenuItem predictItem = new JMenuItem("Predict Disease");
+        JMenuItem loadRulesItem = new JMenuItem("Load Risk Rules...");
+        JMenuItem reloadRulesItem = new JMenuItem("Reload Risk Rules");
         
         statsItem.addActionListener(e -> showStatistics());
         riskItem.addActionListener(e -> showRiskAnalysis());
         patternItem.addActionListener(e -> showPatterns());
         frequencyItem.addActionListener(e -> showFrequency());
         predictItem.addActionListener(e -> showPrediction());
+        loadRulesItem.addActionListener(e -> loadRiskRules());
+        reloadRulesItem.addActionListener(e -> applyRiskRules(rulesFile));
         
         analysisMenu.add(statsItem);
         analysisMenu.add(riskItem);
@@ -69,19 +120,34 @@ public class MedicalGUI extends JFrame {
         analysisMenu.add(frequencyItem);
         analysisMenu.addSeparator();
         analysisMenu.add(predictItem);
+        analysisMenu.addSeparator();
+        analysisMenu.add(loadRulesItem);
+        analysisMenu.add(reloadRulesItem);
         
         JMenu viewMenu = new JMenu("View");
         JMenuItem allPatientsItem = new JMenuItem("Show All Patients");
         JMenuItem highRiskItem = new JMenuItem("Show High Risk Only");
+        JMenuItem filterItem = new JMenuItem("Filter Patients...");
+        JMenuItem findItem = new JMenuItem("Find Patient by ID...");
+        JMenuItem pivotItem = new JMenuItem("Pivot Table...");
+        JCheckBoxMenuItem metricsItem = new JCheckBoxMenuItem("Metrics Panel");
         JMenuItem clearResultsItem = new JMenuItem("Clear Results");
         
         allPatientsItem.addActionListener(e -> showAllPatients());
         highRiskItem.addActionListener(e -> showHighRiskPatients());
+        filterItem.addActionListener(e -> showFilterDialog());
+        findItem.addActionListener(e -> findPatient());
+        pivotItem.addActionListener(e -> showPivotTable());
+        metricsItem.addActionListener(e -> showMetricsPanel(metricsItem.isSelected()));
         clearResultsItem.addActionListener(e -> resultsArea.setText(""));
         
         viewMenu.add(allPatientsItem);
         viewMenu.add(highRiskItem);
+        viewMenu.add(filterItem);
+        viewMenu.add(findItem);
+        viewMenu.add(pivotItem);
         viewMenu.addSeparator();
+        viewMenu.add(metricsItem);
         viewMenu.add(clearResultsItem);
         
         menuBar.add(fileMenu);
@@ -106,25 +172,37 @@ public class MedicalGUI extends JFrame {
         analyzeButton.setEnabled(false);
         reportButton.setEnabled(false);
         
+        cancelButton = new JButton("Cancel");
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        statusLabel = new JLabel(" ");
+        taskRunner = new BackgroundTaskRunner(progressBar, statusLabel, cancelButton, this::showError);
+        
         controlPanel.add(loadButton);
         controlPanel.add(analyzeButton);
         controlPanel.add(reportButton);
+        controlPanel.add(cancelButton);
+        controlPanel.add(progressBar);
+        controlPanel.add(statusLabel);
         
         add(controlPanel, BorderLayout.NORTH);
     }
     
     private void createDataTable() {
-        String[] columnNames = {"ID", "Name", "Age", "BP", "Cholesterol", "Blood Group", "Diagnosis"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new PatientTableModel(dataMiner);
         
         dataTable = new JTable(tableModel);
         dataTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         dataTable.getTableHeader().setReorderingAllowed(false);
+        dataTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = dataTable.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    sortTable(PatientColumn.values()[dataTable.convertColumnIndexToModel(column)]);
+                }
+            }
+        });
         
         JScrollPane tableScrollPane = new JScrollPane(dataTable);
         tableScrollPane.setBorder(BorderFactory.createTitledBorder("Patient Data"));
@@ -150,76 +228,195 @@ public class MedicalGUI extends JFrame {
         fileChooser.setCurrentDirectory(new File("."));
         fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
             public boolean accept(File f) {
-                return f.isDirectory() || f.getName().toLowerCase().endsWith(".csv");
+                String name = f.getName().toLowerCase();
+                return f.isDirectory() || name.endsWith(".csv") || name.endsWith(".hdms");
             }
             public String getDescription() {
-                return "CSV Files (*.csv)";
+                return "Patient Data (*.csv, *.hdms)";
             }
         });
         
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
-            if (dataMiner.loadDataFromFile(selectedFile.getPath())) {
-                updateTable(dataMiner.getAllPatients());
+            taskRunner.cancelAll();
+            analyzeButton.setEnabled(false);
+            reportButton.setEnabled(false);
+            skippedRows.clear();
+            taskRunner.submit("Loading " + selectedFile.getName(), monitor -> {
+                try {
+                    dataMiner.loadData(selectedFile.getPath(), monitor);
+                } catch (IOException | RuntimeException e) {
+                    if (e instanceof CancellationException) throw e;
+                    // Wrapped so that showError names the file rather than asking for one to be loaded
+                    throw new IOException("Could not load " + selectedFile.getName() + ": " + e.getMessage(), e);
+                }
+                return null;
+            }, loaded -> {
+                showAllRows();
                 analyzeButton.setEnabled(true);
                 reportButton.setEnabled(true);
                 resultsArea.setText("Data loaded successfully from: " + selectedFile.getName() + "\n");
                 resultsArea.append("Total patients loaded: " + dataMiner.getAllPatients().size() + "\n");
-            } else {
-                JOptionPane.showMessageDialog(this, "Error loading file!", "Error", JOptionPane.ERROR_MESSAGE);
+                resultsArea.append("Load throughput: " + dataMiner.getLastLoadStats() + "\n");
+                appendSkippedRows();
+            });
+        }
+    }
+    
+    private void appendNewRows() {
+        skippedRows.clear();
+        taskRunner.submit("Appending new rows", monitor -> dataMiner.tailDataFile(), added -> {
+            showAllRows();
+            resultsArea.setText("Appended " + added + " new patients\n");
+            resultsArea.append("Total patients loaded: " + dataMiner.getAllPatients().size() + "\n");
+            appendSkippedRows();
+        });
+    }
+    
+    private void appendSkippedRows() {
+        synchronized (skippedRows) {
+            if (skippedRows.isEmpty()) return;
+            resultsArea.append("\nSkipped rows" + (skippedRows.size() == MAX_SKIPPED_ROWS_SHOWN
+                    ? " (first " + MAX_SKIPPED_ROWS_SHOWN + ")" : "") + ":\n");
+            for (String row : skippedRows) {
+                resultsArea.append("  " + row + "\n");
             }
         }
     }
     
-    private void updateTable(ArrayList<Patient> patients) {
-        tableModel.setRowCount(0);
-        for (Patient p : patients) {
-            Object[] row = {
-                p.getPatientID(),
-                p.getName(),
-                p.getAge(),
-                p.getBloodPressure(),
-                p.getCholesterol(),
-                p.getBloodGroup(),
-                p.getDiagnosis()
-            };
-            tableModel.addRow(row);
+    private void showError(Exception e) {
+        showAllRows();
+        // Dictionary overflows and snapshot or tail failures are IllegalStateExceptions too
+        boolean noData = e instanceof IllegalStateException && dataMiner.getView().getStore().isEmpty();
+        String message = noData ? "Load a data file first!" : "Error: " + e.getMessage();
+        JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+    
+    private void showAllRows() {
+        tableModel.showAllRows();
+        setSortColumn(null);
+    }
+    
+    private void showRows(PatientStore store, int[] rows) {
+        tableModel.showRows(store, rows);
+        setSortColumn(null);
+    }
+    
+    private void showRows(ViewRows found) {
+        showRows(found.store, found.rows);
+    }
+    
+    // Sorts what the table shows, in the store view it shows it from
+    private void sortTable(PatientColumn column) {
+        boolean ascending = column != sortColumn || !sortAscending;
+        PatientStore store = tableModel.getStore();
+        int[] rows = tableModel.getRows();
+        taskRunner.submit("Sorting by " + column.getLabel(),
+                monitor -> PatientSorter.sort(store, rows, column, ascending),
+                sorted -> {
+            tableModel.showRows(store, sorted);
+            sortAscending = ascending;
+            setSortColumn(column);
+        });
+    }
+    
+    private void setSortColumn(PatientColumn column) {
+        sortColumn = column;
+        for (PatientColumn c : PatientColumn.values()) {
+            String label = c.getLabel();
+            if (c == column) {
+                label += sortAscending ? " \u25B2" : " \u25BC";
+            }
+            dataTable.getColumnModel().getColumn(c.ordinal()).setHeaderValue(label);
         }
+        dataTable.getTableHeader().repaint();
     }
     
     private void performQuickAnalysis() {
-        resultsArea.setText("");
-        resultsArea.append(dataMiner.calculateBasicStatistics() + "\n");
-        resultsArea.append(dataMiner.performRiskAnalysis() + "\n");
-        resultsArea.setCaretPosition(0);
+        runAnalysis("Quick Analysis",
+                () -> dataMiner.calculateBasicStatistics() + "\n" + dataMiner.performRiskAnalysis() + "\n");
     }
     
     private void showStatistics() {
-        resultsArea.setText(dataMiner.calculateBasicStatistics());
-        resultsArea.setCaretPosition(0);
+        runAnalysis("Basic Statistics", dataMiner::calculateBasicStatistics);
     }
     
     private void showRiskAnalysis() {
-        resultsArea.setText(dataMiner.performRiskAnalysis());
-        resultsArea.setCaretPosition(0);
+        runAnalysis("Risk Analysis", dataMiner::performRiskAnalysis);
     }
     
     private void showPatterns() {
-        resultsArea.setText(dataMiner.findPatterns());
-        resultsArea.setCaretPosition(0);
+        runAnalysis("Find Patterns", dataMiner::findPatterns);
     }
     
     private void showFrequency() {
-        resultsArea.setText(dataMiner.analyzeFrequency());
-        resultsArea.setCaretPosition(0);
+        runAnalysis("Frequency Analysis", dataMiner::analyzeFrequency);
+    }
+    
+    private void runAnalysis(String name, java.util.function.Supplier<String> analysis) {
+        taskRunner.submit(name, monitor -> analysis.get(), text -> {
+            try (OperationTimer.Sample sample = dataMiner.getMetrics().time(MinerOperation.RENDER)) {
+                resultsArea.setText(text);
+                resultsArea.setCaretPosition(0);
+            }
+        });
+    }
+    
+    private void showMetricsPanel(boolean show) {
+        if (show) {
+            if (metricsPanel == null) {
+                metricsPanel = new MetricsPanel(dataMiner.getMetrics());
+            }
+            add(metricsPanel, BorderLayout.EAST);
+        } else if (metricsPanel != null) {
+            remove(metricsPanel);
+        }
+        revalidate();
+        repaint();
+    }
+    
+    // Non-modal, so it can stay open beside the table; reopening it picks up newly loaded data.
+    private void showPivotTable() {
+        if (pivotDialog == null) {
+            pivotPanel = new PivotPanel(dataMiner);
+            pivotDialog = new JDialog(this, "Pivot Table", false);
+            pivotDialog.add(pivotPanel);
+            pivotDialog.setSize(800, 450);
+            pivotDialog.setLocationRelativeTo(this);
+        } else {
+            pivotPanel.refresh();
+        }
+        pivotDialog.setVisible(true);
+    }
+    
+    private void loadRiskRules() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setCurrentDirectory(new File("."));
+        fileChooser.setSelectedFile(rulesFile);
+        
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            applyRiskRules(fileChooser.getSelectedFile());
+        }
+    }
+    
+    // Recomputes the risk analytics for the loaded patients under the rules in the given file.
+    private void applyRiskRules(File file) {
+        taskRunner.submit("Loading risk rules", monitor -> {
+            dataMiner.loadRiskRules(file.getPath(), monitor);
+            return file;
+        }, loaded -> {
+            rulesFile = loaded;
+            resultsArea.setText("Risk rules loaded from: " + loaded.getName() + "\n");
+        });
     }
     
     private void showPrediction() {
-        JPanel inputPanel = new JPanel(new GridLayout(3, 2));
+        JPanel inputPanel = new JPanel(new GridLayout(4, 2));
         JTextField ageField = new JTextField();
         JTextField bpField = new JTextField();
         JTextField cholField = new JTextField();
+        JTextField similarField = new JTextField(String.valueOf(MedicalDataMiner.SIMILAR_PATIENTS));
         
         inputPanel.add(new JLabel("Age:"));
         inputPanel.add(ageField);
@@ -227,6 +424,8 @@ public class MedicalGUI extends JFrame {
         inputPanel.add(bpField);
         inputPanel.add(new JLabel("Cholesterol:"));
         inputPanel.add(cholField);
+        inputPanel.add(new JLabel("Similar Patients to Show:"));
+        inputPanel.add(similarField);
         
         int result = JOptionPane.showConfirmDialog(this, inputPanel, 
                 "Enter Patient Values for Prediction", JOptionPane.OK_CANCEL_OPTION);
@@ -236,9 +435,21 @@ public class MedicalGUI extends JFrame {
                 int age = Integer.parseInt(ageField.getText());
                 int bp = Integer.parseInt(bpField.getText());
                 int chol = Integer.parseInt(cholField.getText());
+                int similar = Math.max(0, Math.min(parseOr(similarField, 0), MedicalDataMiner.MAX_SIMILAR_PATIENTS));
                 
-                resultsArea.setText(dataMiner.predictDisease(age, bp, chol));
-                resultsArea.setCaretPosition(0);
+                // One search serves both the text and the table, from the same view
+                taskRunner.submit("Predicting disease", monitor -> {
+                    DatasetView data = dataMiner.getView();
+                    SimilarPatients neighbours = data.findSimilar(age, bp, chol, similar);
+                    return new Prediction(MedicalDataMiner.describePrediction(data, age, bp, chol, neighbours),
+                            new ViewRows(data.getStore(), neighbours.getRows()));
+                }, prediction -> {
+                    resultsArea.setText(prediction.text);
+                    resultsArea.setCaretPosition(0);
+                    if (prediction.neighbours.rows.length > 0) {
+                        showRows(prediction.neighbours);
+                    }
+                });
             } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(this, "Please enter valid numbers!", 
                         "Input Error", JOptionPane.ERROR_MESSAGE);
@@ -247,27 +458,176 @@ public class MedicalGUI extends JFrame {
     }
     
     private void showAllPatients() {
-        updateTable(dataMiner.getAllPatients());
+        showAllRows();
         resultsArea.setText("Showing all patients (" + dataMiner.getAllPatients().size() + " records)\n");
     }
     
     private void showHighRiskPatients() {
-        ArrayList<Patient> highRisk = dataMiner.getHighRiskPatients();
-        updateTable(highRisk);
-        resultsArea.setText("Showing high risk patients only (" + highRisk.size() + " records)\n");
+        taskRunner.submit("High Risk Patients", monitor -> {
+            DatasetView data = dataMiner.getView();
+            return new ViewRows(data.getStore(), data.getAnalysis().getHighRiskRows());
+        }, highRisk -> {
+            showRows(highRisk);
+            resultsArea.setText("Showing high risk patients only (" + highRisk.rows.length + " records)\n");
+        });
+    }
+    
+    private void findPatient() {
+        String text = JOptionPane.showInputDialog(this, "Patient ID:", "Find Patient", JOptionPane.QUESTION_MESSAGE);
+        if (text == null || text.isBlank()) return;
+        try {
+            int patientId = Integer.parseInt(text.trim());
+            DatasetView data = dataMiner.getView();
+            int row = data.rowOf(patientId);
+            if (row < 0) {
+                resultsArea.setText("No patient with ID " + patientId + "\n");
+                return;
+            }
+            showRows(data.getStore(), new int[] {row});
+            resultsArea.setText("Showing patient " + patientId + "\n");
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Please enter a valid number!",
+                    "Input Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void showFilterDialog() {
+        if (taskRunner.isBusy()) {
+            JOptionPane.showMessageDialog(this, "Please wait for the running task to finish!",
+                    "Busy", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        JPanel filterPanel = new JPanel(new GridLayout(7, 2));
+        JTextField minAgeField = new JTextField();
+        JTextField maxAgeField = new JTextField();
+        JTextField bpField = new JTextField();
+        JTextField cholField = new JTextField();
+        JComboBox<String> bloodGroupBox = new JComboBox<>(withAny(dataMiner.getPatientStore().getBloodGroups()));
+        JComboBox<String> diagnosisBox = new JComboBox<>(withAny(dataMiner.getPatientStore().getDiagnoses()));
+        JComboBox<Object> tierBox = new JComboBox<>(new Object[] {"Any", RiskTier.LOW, RiskTier.MEDIUM, RiskTier.HIGH});
+        
+        filterPanel.add(new JLabel("Minimum Age:"));
+        filterPanel.add(minAgeField);
+        filterPanel.add(new JLabel("Maximum Age:"));
+        filterPanel.add(maxAgeField);
+        filterPanel.add(new JLabel("Blood Pressure above:"));
+        filterPanel.add(bpField);
+        filterPanel.add(new JLabel("Cholesterol above:"));
+        filterPanel.add(cholField);
+        filterPanel.add(new JLabel("Blood Group:"));
+        filterPanel.add(bloodGroupBox);
+        filterPanel.add(new JLabel("Diagnosis:"));
+        filterPanel.add(diagnosisBox);
+        filterPanel.add(new JLabel("Risk Tier:"));
+        filterPanel.add(tierBox);
+        
+        int result = JOptionPane.showConfirmDialog(this, filterPanel,
+                "Filter Patients (leave blank for any)", JOptionPane.OK_CANCEL_OPTION);
+        
+        if (result == JOptionPane.OK_OPTION) {
+            try {
+                boolean ageFilter = !minAgeField.getText().isBlank() || !maxAgeField.getText().isBlank();
+                int minAge = parseOr(minAgeField, Integer.MIN_VALUE);
+                int maxAge = parseOr(maxAgeField, Integer.MAX_VALUE);
+                Integer bpAbove = bpField.getText().isBlank() ? null : parseOr(bpField, 0);
+                Integer cholAbove = cholField.getText().isBlank() ? null : parseOr(cholField, 0);
+                String bloodGroup = bloodGroupBox.getSelectedIndex() > 0 ? (String) bloodGroupBox.getSelectedItem() : null;
+                String diagnosis = diagnosisBox.getSelectedIndex() > 0 ? (String) diagnosisBox.getSelectedItem() : null;
+                RiskTier tier = tierBox.getSelectedIndex() > 0 ? (RiskTier) tierBox.getSelectedItem() : null;
+                
+                taskRunner.submit("Filtering patients", monitor -> {
+                    DatasetView data = dataMiner.getView();
+                    PatientQuery query = data.query();
+                    if (ageFilter) query.ageBetween(minAge, maxAge);
+                    if (bpAbove != null) query.bpAbove(bpAbove);
+                    if (cholAbove != null) query.cholesterolAbove(cholAbove);
+                    if (bloodGroup != null) query.bloodGroup(bloodGroup);
+                    if (diagnosis != null) query.diagnosis(diagnosis);
+                    if (tier != null) query.riskTier(tier);
+                    return new ViewRows(data.getStore(), query.rows());
+                }, filtered -> {
+                    showRows(filtered);
+                    resultsArea.setText("Showing filtered patients (" + filtered.rows.length + " records)\n");
+                });
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(this, "Please enter valid numbers!", 
+                        "Input Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+    
+    private static String[] withAny(ValueDictionary dictionary) {
+        String[] values = new String[dictionary.size() + 1];
+        values[0] = "Any";
+        for (int code = 0; code < dictionary.size(); code++) {
+            values[code + 1] = dictionary.valueOf(code);
+        }
+        return values;
+    }
+    
+    private static int parseOr(JTextField field, int defaultValue) {
+        String text = field.getText().trim();
+        return text.isEmpty() ? defaultValue : Integer.parseInt(text);
     }
     
     private void saveReport() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setCurrentDirectory(new File("."));
         fileChooser.setSelectedFile(new File("medical_report.txt"));
+        JCheckBox patientDetails = new JCheckBox("Include per-patient risk lines");
+        fileChooser.setAccessory(patientDetails);
+        
+        int result = fileChooser.showSaveDialog(this);
+        if (result == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            ReportFormat format = ReportFormat.forFile(file.getName());
+            boolean includePatients = patientDetails.isSelected();
+            taskRunner.submit("Generating report", monitor -> {
+                dataMiner.generateReport(file.getPath(), format, includePatients, monitor);
+                return file;
+            }, saved -> JOptionPane.showMessageDialog(this, "Report saved successfully!", 
+                    "Success", JOptionPane.INFORMATION_MESSAGE));
+        }
+    }
+    
+    private void saveSnapshot() {
+        if (dataMiner.getAllPatients().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Load a data file first!", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setCurrentDirectory(new File("."));
+        fileChooser.setSelectedFile(new File("patients.hdms"));
         
         int result = fileChooser.showSaveDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
-            dataMiner.generateReport(file.getPath());
-            JOptionPane.showMessageDialog(this, "Report saved successfully!", 
-                    "Success", JOptionPane.INFORMATION_MESSAGE);
+            taskRunner.submit("Saving snapshot", monitor -> {
+                dataMiner.saveSnapshot(file.getPath());
+                return file;
+            }, saved -> JOptionPane.showMessageDialog(this, "Snapshot saved to " + saved.getName(), 
+                    "Success", JOptionPane.INFORMATION_MESSAGE));
+        }
+    }
+    
+    // Rows found by a background job, with the store view they were found in
+    private static final class ViewRows {
+        final PatientStore store;
+        final int[] rows;
+        
+        ViewRows(PatientStore store, int[] rows) {
+            this.store = store;
+            this.rows = rows;
+        }
+    }
+    
+    private static final class Prediction {
+        final String text;
+        final ViewRows neighbours;
+        
+        Prediction(String text, ViewRows neighbours) {
+            this.text = text;
+            this.neighbours = neighbours;
         }
     }
     
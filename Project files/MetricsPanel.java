@@ -0,0 +1,82 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+
+// A compact live view of MinerMetrics: last-load throughput on top and one row per timed operation.
+// It polls once a second while showing, so it costs nothing when hidden.
+public class MetricsPanel extends JPanel {
+    private static final String[] COLUMNS = {"Operation", "Calls", "Mean ms", "p50 ms", "p99 ms", "Max ms", "KB/call"};
+    private static final MinerOperation[] OPERATIONS = MinerOperation.values();
+
+    private final MinerMetrics metrics;
+    private final JLabel loadLabel = new JLabel(" ");
+    private final OperationTableModel tableModel = new OperationTableModel();
+    private final Timer refreshTimer = new Timer(1000, e -> refresh());
+
+    public MetricsPanel(MinerMetrics metrics) {
+        super(new BorderLayout());
+        this.metrics = metrics;
+        setBorder(BorderFactory.createTitledBorder("Metrics"));
+        setPreferredSize(new Dimension(420, 300));
+
+        JTable table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        add(loadLabel, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refresh();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+
+    private void refresh() {
+        LoadStats load = metrics.getLastLoad();
+        loadLabel.setText(String.format("<html>Last load: %,d rows, %,d malformed, %,d duplicate IDs<br>"
+                + "%,.0f rows/s, %.1f MB/s (%,d rows in %,d loads)</html>", load.getRows(), load.getMalformedRows(),
+                load.getDuplicateRows(), load.getRowsPerSecond(), load.getBytesPerSecond() / (1 << 20),
+                metrics.getRowsLoaded(), metrics.getLoads()));
+        tableModel.fireTableRowsUpdated(0, OPERATIONS.length - 1);
+    }
+
+    private class OperationTableModel extends AbstractTableModel {
+        @Override
+        public int getRowCount() {
+            return OPERATIONS.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            OperationTimer timer = metrics.getTimer(OPERATIONS[row]);
+            switch (column) {
+                case 0: return timer.getOperation().getMetricName();
+                case 1: return timer.getCount();
+                case 2: return String.format("%.2f", timer.getMeanMillis());
+                case 3: return String.format("%.2f", timer.getP50Millis());
+                case 4: return String.format("%.2f", timer.getP99Millis());
+                case 5: return String.format("%.2f", timer.getMaxMillis());
+                default:
+                    long bytes = timer.getMeanAllocatedBytes();
+                    return bytes < 0 ? "n/a" : String.format("%,d", bytes / 1024);
+            }
+        }
+    }
+}
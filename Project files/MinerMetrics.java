@@ -0,0 +1,114 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ingestion counters and per-operation timers for one MedicalDataMiner. Everything here is safe
+// to read from other threads, so the GUI panel and JMX clients can poll while a job is running.
+public class MinerMetrics implements MinerMetricsMBean {
+    public static final String JMX_DOMAIN = "HealthcareDataMiner";
+
+    private final OperationTimer[] timers = new OperationTimer[MinerOperation.values().length];
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder rowsLoaded = new LongAdder();
+    private final LongAdder malformedRows = new LongAdder();
+    private final LongAdder duplicateRows = new LongAdder();
+    private volatile String lastLoadSource = "";
+    private volatile LoadStats lastLoad = new LoadStats(0, 0, 0);
+
+    public MinerMetrics() {
+        for (MinerOperation operation : MinerOperation.values()) {
+            timers[operation.ordinal()] = new OperationTimer(operation);
+        }
+    }
+
+    public OperationTimer getTimer(MinerOperation operation) {
+        return timers[operation.ordinal()];
+    }
+
+    public OperationTimer.Sample time(MinerOperation operation) {
+        return getTimer(operation).start();
+    }
+
+    public LoadEvent beginLoad() {
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        return event;
+    }
+
+    public void recordLoad(LoadEvent event, String source, LoadStats stats) {
+        loads.increment();
+        rowsLoaded.add(stats.getRows());
+        malformedRows.add(stats.getMalformedRows());
+        duplicateRows.add(stats.getDuplicateRows());
+        lastLoadSource = source;
+        lastLoad = stats;
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.rows = stats.getRows();
+            event.malformedRows = stats.getMalformedRows();
+            event.duplicateRows = stats.getDuplicateRows();
+            event.bytes = stats.getBytes();
+            event.commit();
+        }
+    }
+
+    public LoadStats getLastLoad() { return lastLoad; }
+
+    @Override
+    public long getLoads() { return loads.sum(); }
+
+    @Override
+    public long getRowsLoaded() { return rowsLoaded.sum(); }
+
+    @Override
+    public long getMalformedRows() { return malformedRows.sum(); }
+
+    @Override
+    public long getDuplicateRows() { return duplicateRows.sum(); }
+
+    @Override
+    public String getLastLoadSource() { return lastLoadSource; }
+
+    @Override
+    public long getLastLoadRows() { return lastLoad.getRows(); }
+
+    @Override
+    public long getLastLoadMalformedRows() { return lastLoad.getMalformedRows(); }
+
+    @Override
+    public long getLastLoadDuplicateRows() { return lastLoad.getDuplicateRows(); }
+
+    @Override
+    public long getLastLoadBytes() { return lastLoad.getBytes(); }
+
+    @Override
+    public double getLastLoadMillis() { return lastLoad.getElapsedNanos() / 1_000_000.0; }
+
+    @Override
+    public double getLastLoadRowsPerSecond() { return lastLoad.getRowsPerSecond(); }
+
+    @Override
+    public double getLastLoadBytesPerSecond() { return lastLoad.getBytesPerSecond(); }
+
+    // Publishes HealthcareDataMiner:type=Ingestion and one HealthcareDataMiner:type=Operation,name=...
+    // bean per operation. A later registration replaces the beans of an earlier miner.
+    public void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        register(server, new ObjectName(JMX_DOMAIN + ":type=Ingestion"), this);
+        for (OperationTimer timer : timers) {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Operation,name="
+                    + timer.getOperation().getMetricName());
+            register(server, name, timer);
+        }
+    }
+
+    private static void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(bean, name);
+    }
+}
@@ -0,0 +1,25 @@
+public interface MinerMetricsMBean {
+    long getLoads();
+
+    long getRowsLoaded();
+
+    long getMalformedRows();
+
+    long getDuplicateRows();
+
+    String getLastLoadSource();
+
+    long getLastLoadRows();
+
+    long getLastLoadMalformedRows();
+
+    long getLastLoadDuplicateRows();
+
+    long getLastLoadBytes();
+
+    double getLastLoadMillis();
+
+    double getLastLoadRowsPerSecond();
+
+    double getLastLoadBytesPerSecond();
+}
@@ -0,0 +1,23 @@
+// The miner operations that are timed individually. The names double as JMX object names and as
+// the rows of the GUI metrics panel.
+public enum MinerOperation {
+    LOAD("load"),
+    INGEST("ingest"),
+    STATISTICS("statistics"),
+    RISK_ANALYSIS("riskAnalysis"),
+    PATTERNS("patterns"),
+    FREQUENCY("frequency"),
+    PREDICTION("prediction"),
+    BATCH_PREDICTION("batchPrediction"),
+    REPORT("report"),
+    RISK_RULES("riskRules"),
+    RENDER("render");
+
+    private final String metricName;
+
+    MinerOperation(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() { return metricName; }
+}
@@ -0,0 +1,138 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histogram and allocation totals for one operation. Latencies fall into power-of-two
+// nanosecond buckets, so recording is a handful of atomic adds and percentiles are reported as the
+// upper bound of the bucket they land in. Allocation is measured on the calling thread only; work
+// handed to a pool shows up in latency but not in allocated bytes.
+public class OperationTimer implements OperationTimerMBean {
+    private static final int BUCKETS = 64;
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationTracker();
+
+    private final MinerOperation operation;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public OperationTimer(MinerOperation operation) {
+        this.operation = operation;
+    }
+
+    public MinerOperation getOperation() { return operation; }
+
+    public Sample start() {
+        return new Sample();
+    }
+
+    public void record(long nanos, long bytes) {
+        buckets.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        allocatedBytes.add(bytes);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static int bucketOf(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    @Override
+    public long getCount() { return count.sum(); }
+
+    @Override
+    public double getTotalMillis() { return totalNanos.sum() / 1_000_000.0; }
+
+    @Override
+    public double getMeanMillis() {
+        long n = getCount();
+        return n == 0 ? 0 : getTotalMillis() / n;
+    }
+
+    @Override
+    public double getMaxMillis() { return maxNanos.get() / 1_000_000.0; }
+
+    @Override
+    public double getP50Millis() { return percentileMillis(0.50); }
+
+    @Override
+    public double getP99Millis() { return percentileMillis(0.99); }
+
+    @Override
+    public long getAllocatedBytes() { return ALLOCATION == null ? -1 : allocatedBytes.sum(); }
+
+    @Override
+    public long getMeanAllocatedBytes() {
+        long n = getCount();
+        return ALLOCATION == null ? -1 : n == 0 ? 0 : allocatedBytes.sum() / n;
+    }
+
+    // Count of samples per bucket; bucket b holds latencies in [2^(b-1), 2^b) nanoseconds.
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = buckets.get(b);
+        }
+        return counts;
+    }
+
+    public double percentileMillis(double quantile) {
+        long[] counts = getLatencyHistogram();
+        long total = 0;
+        for (long c : counts) total += c;
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return Math.min(1L << b, maxNanos.get()) / 1_000_000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    static long currentThreadAllocatedBytes() {
+        return ALLOCATION == null ? 0 : ALLOCATION.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationTracker() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean tracker = (com.sun.management.ThreadMXBean) threads;
+            if (tracker.isThreadAllocatedMemorySupported() && tracker.isThreadAllocatedMemoryEnabled()) {
+                return tracker;
+            }
+        }
+        return null;
+    }
+
+    // One timed call, meant for try-with-resources. Also emits an AnalysisEvent when JFR is recording.
+    public final class Sample implements AutoCloseable {
+        private final long startNanos = System.nanoTime();
+        private final long startBytes = currentThreadAllocatedBytes();
+        private final AnalysisEvent event = new AnalysisEvent();
+
+        private Sample() {
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = currentThreadAllocatedBytes() - startBytes;
+            record(nanos, bytes);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation.getMetricName();
+                event.allocatedBytes = bytes;
+                event.commit();
+            }
+        }
+    }
+}
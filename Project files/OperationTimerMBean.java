@@ -0,0 +1,19 @@
+public interface OperationTimerMBean {
+    long getCount();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    long getAllocatedBytes();
+
+    long getMeanAllocatedBytes();
+
+    long[] getLatencyHistogram();
+}
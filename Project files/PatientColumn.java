@@ -0,0 +1,19 @@
+public enum PatientColumn {
+    ID("ID"),
+    NAME("Name"),
+    AGE("Age"),
+    BLOOD_PRESSURE("BP"),
+    CHOLESTEROL("Cholesterol"),
+    BLOOD_GROUP("Blood Group"),
+    DIAGNOSIS("Diagnosis");
+
+    private final String label;
+
+    PatientColumn(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,127 @@
+// Maps patient IDs to rows with open addressing over two int arrays, so lookups neither box the key
+// nor chase pointers. A row of 0 marks an empty slot, which is why rows are stored plus one.
+public class PatientIdIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] keys;
+    private int[] rows;
+    private int size;
+    private final int rowCount;
+    private boolean shared;
+
+    public PatientIdIndex() {
+        keys = new int[INITIAL_CAPACITY];
+        rows = new int[INITIAL_CAPACITY];
+        rowCount = Integer.MAX_VALUE;
+    }
+
+    private PatientIdIndex(PatientIdIndex source, int rowCount) {
+        keys = source.keys;
+        rows = source.rows;
+        size = source.size;
+        this.rowCount = rowCount;
+    }
+
+    // An index of the IDs mapped to the first rowCount rows, sharing the tables. New IDs only fill
+    // slots that were empty, and a view ignores rows past its own, so only pointing an ID at another
+    // row or growing has to copy the tables first. The view must not be written to.
+    public PatientIdIndex view(int rowCount) {
+        shared = true;
+        return new PatientIdIndex(this, rowCount);
+    }
+
+    // Maps id to row and returns the row it mapped to before, or -1.
+    public int put(int id, int row) {
+        return put(id, row, true);
+    }
+
+    // Maps id to row unless it is already mapped; returns the existing row, or -1.
+    public int putIfAbsent(int id, int row) {
+        return put(id, row, false);
+    }
+
+    private int put(int id, int row, boolean replace) {
+        if (rowCount != Integer.MAX_VALUE) throw new UnsupportedOperationException("Read-only view of an ID index");
+        int mask = keys.length - 1;
+        int slot = slotOf(id, mask);
+        for (; rows[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                int previous = rows[slot] - 1;
+                if (replace && previous != row) {
+                    if (shared) unshare(keys.length);
+                    rows[slot] = row + 1;
+                }
+                return previous;
+            }
+        }
+        if ((size + 1) * 2 > keys.length) {
+            unshare(keys.length * 2);
+            return put(id, row, replace);
+        }
+        keys[slot] = id;
+        rows[slot] = row + 1;
+        size++;
+        return -1;
+    }
+
+    // Grows the tables once to take this many IDs, rather than doubling repeatedly while they arrive.
+    public void ensureCapacity(int ids) {
+        int capacity = keys.length;
+        while ((long) ids * 2 > capacity) {
+            capacity *= 2;
+        }
+        if (capacity != keys.length) unshare(capacity);
+    }
+
+    // Moves to fresh tables of the given capacity, leaving the old ones to any views.
+    private void unshare(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldRows = rows;
+        if (capacity == oldKeys.length) {
+            keys = oldKeys.clone();
+            rows = oldRows.clone();
+        } else {
+            keys = new int[capacity];
+            rows = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldRows[i] == 0) continue;
+                int slot = slotOf(oldKeys[i], mask);
+                while (rows[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                rows[slot] = oldRows[i];
+            }
+        }
+        shared = false;
+    }
+
+    // The row holding id, or -1.
+    public int get(int id) {
+        int[] keys = this.keys;
+        int[] rows = this.rows;
+        int mask = keys.length - 1;
+        for (int slot = slotOf(id, mask); ; slot = (slot + 1) & mask) {
+            int row = rows[slot] - 1;
+            if (row < 0 || row >= rowCount) return -1;
+            if (keys[slot] == id) return row;
+        }
+    }
+
+    public boolean contains(int id) {
+        return get(id) >= 0;
+    }
+
+    // Distinct IDs mapped.
+    public int size() {
+        return size;
+    }
+
+    // Fibonacci hashing: the top bits of the product depend on every bit of the ID, so sequential IDs
+    // spread out instead of filling one run of slots. The table size is a power of two, so shifting
+    // by the mask's leading zeros keeps exactly as many top bits as there are slot bits.
+    private static int slotOf(int id, int mask) {
+        return id * 0x9E3779B9 >>> Integer.numberOfLeadingZeros(mask);
+    }
+}
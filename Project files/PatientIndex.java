@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class PatientIndex {
+    private static final int MIN_UNSORTED_TAIL = 4096;
+
+    private final PatientStore store;
+    private final RiskScores riskScores;
+    private final SortedColumnIndex ageIndex;
+    private final SortedColumnIndex bpIndex;
+    private final SortedColumnIndex cholesterolIndex;
+    private final List<RowBitmap> bloodGroupBitmaps = new ArrayList<>();
+    private final List<RowBitmap> diagnosisBitmaps = new ArrayList<>();
+    private final RowBitmap[] tierBitmaps = new RowBitmap[RiskTier.values().length];
+    private int rowCount;
+
+    public PatientIndex(PatientStore store, RiskScores riskScores) {
+        this.store = store;
+        this.riskScores = riskScores;
+        ageIndex = new SortedColumnIndex();
+        bpIndex = new SortedColumnIndex();
+        cholesterolIndex = new SortedColumnIndex();
+        for (int tier = 0; tier < tierBitmaps.length; tier++) {
+            tierBitmaps[tier] = new RowBitmap();
+        }
+    }
+
+    private PatientIndex(PatientIndex source, PatientStore store, RiskScores riskScores) {
+        this.store = store;
+        this.riskScores = riskScores;
+        ageIndex = new SortedColumnIndex(source.ageIndex);
+        bpIndex = new SortedColumnIndex(source.bpIndex);
+        cholesterolIndex = new SortedColumnIndex(source.cholesterolIndex);
+        for (RowBitmap bitmap : source.bloodGroupBitmaps) {
+            bloodGroupBitmaps.add(bitmap.view());
+        }
+        for (RowBitmap bitmap : source.diagnosisBitmaps) {
+            diagnosisBitmaps.add(bitmap.view());
+        }
+        for (int tier = 0; tier < tierBitmaps.length; tier++) {
+            tierBitmaps[tier] = source.tierBitmaps[tier].view();
+        }
+        rowCount = source.rowCount;
+    }
+
+    // An index over the rows added so far, for the matching store and score views. Nothing is copied:
+    // rebuilding replaces the sorted columns, and addRows only sets bitmap rows past the view's count.
+    public PatientIndex view(PatientStore storeView, RiskScores scoresView) {
+        return new PatientIndex(this, storeView, scoresView);
+    }
+
+    public void addRows(int from, int to) {
+        for (int row = from; row < to; row++) {
+            bitmapFor(bloodGroupBitmaps, store.getBloodGroupCode(row)).set(row);
+            int diagnosisCode = store.getDiagnosisCode(row);
+            bitmapFor(diagnosisBitmaps, diagnosisCode).set(row);
+            tierBitmaps[riskScores.getTier(row).ordinal()].set(row);
+        }
+        rowCount = to;
+        refresh(ageIndex, store.ages(), from == 0);
+        refresh(bpIndex, store.bloodPressures(), from == 0);
+        refresh(cholesterolIndex, store.cholesterols(), from == 0);
+    }
+
+    // Rows appended since the last rebuild are scanned directly until the unsorted tail gets large
+    // enough to be worth re-sorting. Rebuilding here rather than on query keeps lookups read-only,
+    // so a loaded index can serve many threads at once.
+    private void refresh(SortedColumnIndex index, int[] column, boolean force) {
+        int unsorted = rowCount - index.getIndexedRows();
+        if (force || unsorted > Math.max(MIN_UNSORTED_TAIL, index.getIndexedRows() / 8)) {
+            index.rebuild(column, rowCount);
+        }
+    }
+
+    private static RowBitmap bitmapFor(List<RowBitmap> bitmaps, int code) {
+        while (bitmaps.size() <= code) {
+            bitmaps.add(new RowBitmap());
+        }
+        return bitmaps.get(code);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public BitSet ageBetween(int low, int high) {
+        return range(ageIndex, store.ages(), low, high);
+    }
+
+    public BitSet bloodPressureBetween(int low, int high) {
+        return range(bpIndex, store.bloodPressures(), low, high);
+    }
+
+    public BitSet cholesterolBetween(int low, int high) {
+        return range(cholesterolIndex, store.cholesterols(), low, high);
+    }
+
+    private BitSet range(SortedColumnIndex index, int[] column, int low, int high) {
+        BitSet result = new BitSet(rowCount);
+        index.collect(low, high, result);
+        for (int row = index.getIndexedRows(); row < rowCount; row++) {
+            if (column[row] >= low && column[row] <= high) {
+                result.set(row);
+            }
+        }
+        return result;
+    }
+
+    public BitSet bloodGroup(String bloodGroup) {
+        return bitmap(bloodGroupBitmaps, store.getBloodGroups().codeOf(bloodGroup));
+    }
+
+    public BitSet diagnosis(String diagnosis) {
+        return bitmap(diagnosisBitmaps, store.getDiagnoses().codeOf(diagnosis));
+    }
+
+    public BitSet riskTier(RiskTier tier) {
+        return tierBitmaps[tier.ordinal()].toBitSet(rowCount);
+    }
+
+    private BitSet bitmap(List<RowBitmap> bitmaps, int code) {
+        if (code < 0 || code >= bitmaps.size()) return new BitSet();
+        return bitmaps.get(code).toBitSet(rowCount);
+    }
+
+    public BitSet allRows() {
+        BitSet result = new BitSet(rowCount);
+        result.set(0, rowCount);
+        return result;
+    }
+}
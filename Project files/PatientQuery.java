@@ -0,0 +1,89 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+public class PatientQuery {
+    private final PatientIndex index;
+    private final PatientStore store;
+    private BitSet matches;
+
+    public PatientQuery(PatientIndex index, PatientStore store) {
+        this.index = index;
+        this.store = store;
+    }
+
+    public PatientQuery ageBetween(int low, int high) { return and(index.ageBetween(low, high)); }
+    public PatientQuery ageAbove(int age) {
+        return age == Integer.MAX_VALUE ? none() : and(index.ageBetween(age + 1, Integer.MAX_VALUE));
+    }
+    public PatientQuery ageBelow(int age) {
+        return age == Integer.MIN_VALUE ? none() : and(index.ageBetween(Integer.MIN_VALUE, age - 1));
+    }
+    public PatientQuery bpBetween(int low, int high) { return and(index.bloodPressureBetween(low, high)); }
+    public PatientQuery bpAbove(int bp) {
+        return bp == Integer.MAX_VALUE ? none() : and(index.bloodPressureBetween(bp + 1, Integer.MAX_VALUE));
+    }
+    public PatientQuery cholesterolBetween(int low, int high) { return and(index.cholesterolBetween(low, high)); }
+    public PatientQuery cholesterolAbove(int cholesterol) {
+        return cholesterol == Integer.MAX_VALUE ? none()
+                : and(index.cholesterolBetween(cholesterol + 1, Integer.MAX_VALUE));
+    }
+    public PatientQuery bloodGroup(String bloodGroup) { return and(index.bloodGroup(bloodGroup)); }
+    public PatientQuery diagnosis(String diagnosis) { return and(index.diagnosis(diagnosis)); }
+    public PatientQuery riskTier(RiskTier tier) { return and(index.riskTier(tier)); }
+
+    // A strict bound at the int limit no value can pass; the bound is never wrapped round.
+    private PatientQuery none() {
+        return and(new BitSet());
+    }
+
+    private PatientQuery and(BitSet condition) {
+        if (matches == null) {
+            matches = condition;
+        } else {
+            matches.and(condition);
+        }
+        return this;
+    }
+
+    private BitSet matches() {
+        if (matches == null) {
+            matches = index.allRows();
+        }
+        return matches;
+    }
+
+    public int count() {
+        return matches().cardinality();
+    }
+
+    public int[] rows() {
+        BitSet bits = matches();
+        int[] rows = new int[bits.cardinality()];
+        int i = 0;
+        for (int row = bits.nextSetBit(0); row >= 0; row = bits.nextSetBit(row + 1)) {
+            rows[i++] = row;
+        }
+        return rows;
+    }
+
+    // One page of matching rows in row order; rows past the page are never visited.
+    public int[] rows(int offset, int limit) {
+        BitSet bits = matches();
+        int[] rows = new int[limit];
+        int count = 0;
+        int skipped = 0;
+        for (int row = bits.nextSetBit(0); row >= 0 && count < limit; row = bits.nextSetBit(row + 1)) {
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                rows[count++] = row;
+            }
+        }
+        return count == limit ? rows : Arrays.copyOf(rows, count);
+    }
+
+    public List<Patient> patients() {
+        return store.rows(rows());
+    }
+}
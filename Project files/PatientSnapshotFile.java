@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Binary image of a PatientStore. All values are little-endian and laid out as:
+//
+//   header       magic "HDMSNAP1", row count, blood group count, diagnosis count,
+//                dictionary bytes, name heap bytes and two reserved ints
+//   dictionaries blood groups then diagnoses, each value as an int length followed by UTF-8 bytes
+//   names        int[rows + 1] offsets into the heap, then the UTF-8 heap itself
+//   columns      int[rows] ids, ages, blood pressures, cholesterols,
+//                byte[rows] blood group codes, short[rows] diagnosis codes
+//
+// Reading maps each section and bulk-copies it into the store's arrays, so a load costs little
+// more than paging the file in.
+public class PatientSnapshotFile {
+    private static final byte[] MAGIC = "HDMSNAP1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = MAGIC.length + 7 * Integer.BYTES;
+    private static final int WINDOW_SIZE = 1 << 28;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    public static boolean isSnapshot(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() < MAGIC.length) return false;
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) { }
+            return Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    public static void write(PatientStore store, String filename) throws IOException {
+        int rows = store.size();
+        StringPool names = store.names();
+        int[] offsets = names.offsets();
+        byte[] bloodGroups = encodeDictionary(store.getBloodGroups());
+        byte[] diagnoses = encodeDictionary(store.getDiagnoses());
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.bytes(MAGIC, MAGIC.length);
+            out.ints(new int[] {rows, store.getBloodGroups().size(), store.getDiagnoses().size(),
+                    bloodGroups.length + diagnoses.length, offsets[rows], 0, 0}, 7);
+            out.bytes(bloodGroups, bloodGroups.length);
+            out.bytes(diagnoses, diagnoses.length);
+            out.ints(offsets, rows + 1);
+            out.bytes(names.heap(), offsets[rows]);
+            out.ints(store.ids(), rows);
+            out.ints(store.ages(), rows);
+            out.ints(store.bloodPressures(), rows);
+            out.ints(store.cholesterols(), rows);
+            out.bytes(store.bloodGroupCodes(), rows);
+            out.shorts(store.diagnosisCodes(), rows);
+            out.flush();
+        }
+    }
+
+    private static byte[] encodeDictionary(ValueDictionary dictionary) {
+        byte[][] values = new byte[dictionary.size()][];
+        int length = 0;
+        for (int code = 0; code < values.length; code++) {
+            values[code] = dictionary.valueOf(code).getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + values[code].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        for (byte[] value : values) {
+            buffer.putInt(value.length).put(value);
+        }
+        return buffer.array();
+    }
+
+    public static LoadStats read(String filename, PatientStore store) throws IOException {
+        return read(filename, store, TaskMonitor.NONE);
+    }
+
+    public static LoadStats read(String filename, PatientStore store, TaskMonitor monitor) throws IOException {
+        if (!store.isEmpty()) throw new IllegalStateException("Store is not empty");
+        long startTime = System.nanoTime();
+        Path path = Paths.get(filename);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) throw new IOException(filename + " is not a patient snapshot");
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException(filename + " is not a patient snapshot");
+            int rows = header.getInt();
+            int bloodGroupCount = header.getInt();
+            int diagnosisCount = header.getInt();
+            int dictionaryBytes = header.getInt();
+            int heapBytes = header.getInt();
+            if (rows < 0 || bloodGroupCount < 0 || diagnosisCount < 0 || dictionaryBytes < 0 || heapBytes < 0) {
+                throw new IOException(filename + " has a corrupt header");
+            }
+            long expectedSize = HEADER_SIZE + (long) dictionaryBytes + (rows + 1L) * Integer.BYTES
+                    + heapBytes + rows * (4L * Integer.BYTES + Byte.BYTES + Short.BYTES);
+            if (fileSize != expectedSize) {
+                throw new IOException(filename + " is " + fileSize + " bytes, expected " + expectedSize);
+            }
+
+            long position = HEADER_SIZE;
+            ByteBuffer dictionaries = map(channel, position, dictionaryBytes);
+            readDictionary(dictionaries, bloodGroupCount, store.getBloodGroups());
+            readDictionary(dictionaries, diagnosisCount, store.getDiagnoses());
+            position += dictionaryBytes;
+
+            int[] offsets = readInts(channel, position, rows + 1);
+            position += (rows + 1L) * Integer.BYTES;
+            if (offsets[0] != 0 || offsets[rows] != heapBytes) {
+                throw new IOException(filename + " has a corrupt name table");
+            }
+            byte[] heap = readBytes(channel, position, heapBytes);
+            position += heapBytes;
+            monitor.checkCancelled();
+            monitor.progress("Reading snapshot", position, fileSize);
+
+            int[][] columns = new int[4][];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = readInts(channel, position, rows);
+                position += (long) rows * Integer.BYTES;
+                monitor.checkCancelled();
+                monitor.progress("Reading snapshot", position, fileSize);
+            }
+            byte[] bloodGroupCodes = readBytes(channel, position, rows);
+            position += rows;
+            short[] diagnosisCodes = readShorts(channel, position, rows);
+            for (int row = 0; row < rows; row++) {
+                if ((bloodGroupCodes[row] & 0xFF) >= bloodGroupCount || (diagnosisCodes[row] & 0xFFFF) >= diagnosisCount) {
+                    throw new IOException(filename + " has an invalid code at row " + row);
+                }
+            }
+
+            store.names().restore(heap, offsets, rows);
+            store.restore(rows, columns[0], columns[1], columns[2], columns[3], bloodGroupCodes, diagnosisCodes);
+            return new LoadStats(rows, fileSize, System.nanoTime() - startTime);
+        } catch (IOException | RuntimeException e) {
+            store.clear();
+            throw e;
+        }
+    }
+
+    private static void readDictionary(ByteBuffer source, int count, ValueDictionary dictionary) throws IOException {
+        for (int code = 0; code < count; code++) {
+            byte[] value = new byte[source.getInt()];
+            source.get(value);
+            if (dictionary.encode(new String(value, StandardCharsets.UTF_8)) != code) {
+                throw new IOException("Duplicate dictionary value in snapshot");
+            }
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int[] readInts(FileChannel channel, long position, int count) throws IOException {
+        int[] values = new int[Math.max(1, count)];
+        int perWindow = WINDOW_SIZE / Integer.BYTES;
+        for (int done = 0; done < count; done += perWindow) {
+            int length = Math.min(perWindow, count - done);
+            map(channel, position + (long) done * Integer.BYTES, (long) length * Integer.BYTES)
+                    .asIntBuffer().get(values, done, length);
+        }
+        return values;
+    }
+
+    private static short[] readShorts(FileChannel channel, long position, int count) throws IOException {
+        short[] values = new short[Math.max(1, count)];
+        int perWindow = WINDOW_SIZE / Short.BYTES;
+        for (int done = 0; done < count; done += perWindow) {
+            int length = Math.min(perWindow, count - done);
+            map(channel, position + (long) done * Short.BYTES, (long) length * Short.BYTES)
+                    .asShortBuffer().get(values, done, length);
+        }
+        return values;
+    }
+
+    private static byte[] readBytes(FileChannel channel, long position, int count) throws IOException {
+        byte[] values = new byte[Math.max(1, count)];
+        for (int done = 0; done < count; done += WINDOW_SIZE) {
+            int length = Math.min(WINDOW_SIZE, count - done);
+            map(channel, position + done, length).get(values, done, length);
+        }
+        return values;
+    }
+
+    private static class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void ints(int[] values, int count) throws IOException {
+            for (int done = 0; done < count; ) {
+                int length = Math.min(count - done, buffer.remaining() / Integer.BYTES);
+                if (length == 0) {
+                    flush();
+                    continue;
+                }
+                buffer.asIntBuffer().put(values, done, length);
+                buffer.position(buffer.position() + length * Integer.BYTES);
+                done += length;
+            }
+        }
+
+        void shorts(short[] values, int count) throws IOException {
+            for (int done = 0; done < count; ) {
+                int length = Math.min(count - done, buffer.remaining() / Short.BYTES);
+                if (length == 0) {
+                    flush();
+                    continue;
+                }
+                buffer.asShortBuffer().put(values, done, length);
+                buffer.position(buffer.position() + length * Short.BYTES);
+                done += length;
+            }
+        }
+
+        void bytes(byte[] values, int count) throws IOException {
+            for (int done = 0; done < count; ) {
+                int length = Math.min(count - done, buffer.remaining());
+                if (length == 0) {
+                    flush();
+                    continue;
+                }
+                buffer.put(values, done, length);
+                done += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
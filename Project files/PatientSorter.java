@@ -0,0 +1,82 @@
+import java.util.Arrays;
+
+public class PatientSorter {
+    private PatientSorter() {
+    }
+
+    // Returns the given rows (or every row when rows is null) ordered by column. The sort is stable,
+    // so sorting by one column and then another keeps ties in the earlier order.
+    public static int[] sort(PatientStore store, int[] rows, PatientColumn column, boolean ascending) {
+        if (rows == null) {
+            rows = new int[store.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = i;
+            }
+        }
+        if (column == PatientColumn.NAME) {
+            return sortByName(store, rows, ascending);
+        }
+
+        int[] ranks = null;
+        if (column == PatientColumn.BLOOD_GROUP) ranks = ranks(store.getBloodGroups());
+        if (column == PatientColumn.DIAGNOSIS) ranks = ranks(store.getDiagnoses());
+
+        long[] packed = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int key = key(store, rows[i], column, ranks);
+            packed[i] = ((long) (ascending ? key : ~key) << 32) | i;
+        }
+        Arrays.parallelSort(packed);
+        int[] sorted = new int[rows.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = rows[(int) packed[i]];
+        }
+        return sorted;
+    }
+
+    private static int key(PatientStore store, int row, PatientColumn column, int[] ranks) {
+        switch (column) {
+            case ID: return store.getPatientID(row);
+            case AGE: return store.getAge(row);
+            case BLOOD_PRESSURE: return store.getBloodPressure(row);
+            case CHOLESTEROL: return store.getCholesterol(row);
+            case BLOOD_GROUP: return ranks[store.getBloodGroupCode(row)];
+            case DIAGNOSIS: return ranks[store.getDiagnosisCode(row)];
+            default: throw new IllegalArgumentException("No integer key for " + column);
+        }
+    }
+
+    private static int[] ranks(ValueDictionary dictionary) {
+        Integer[] codes = new Integer[dictionary.size()];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = code;
+        }
+        Arrays.sort(codes, (a, b) -> dictionary.valueOf(a).compareTo(dictionary.valueOf(b)));
+        int[] ranks = new int[codes.length];
+        for (int rank = 0; rank < codes.length; rank++) {
+            ranks[codes[rank]] = rank;
+        }
+        return ranks;
+    }
+
+    private static int[] sortByName(PatientStore store, int[] rows, boolean ascending) {
+        int[] sorted = rows.clone();
+        mergeSort(store, sorted, rows.clone(), 0, rows.length, ascending ? 1 : -1);
+        return sorted;
+    }
+
+    private static void mergeSort(PatientStore store, int[] target, int[] source, int from, int to, int direction) {
+        if (to - from < 2) return;
+        int middle = (from + to) >>> 1;
+        mergeSort(store, source, target, from, middle, direction);
+        mergeSort(store, source, target, middle, to, direction);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right >= to || (left < middle
+                    && direction * store.compareNames(source[left], source[right]) <= 0)) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+}
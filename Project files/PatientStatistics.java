@@ -0,0 +1,62 @@
+// The summary statistics of a set of patients: per-column statistics for age, blood pressure and
+// cholesterol, and estimated counts of distinct IDs and names. Nothing in it refers to row numbers or
+// dictionary codes, so statistics of separate stores - CSV shards, say - merge as well as those of
+// ranges of one store.
+public class PatientStatistics {
+    private final ColumnStatistics age;
+    private final ColumnStatistics bloodPressure;
+    private final ColumnStatistics cholesterol;
+    private final HyperLogLog ids;
+    private final HyperLogLog names;
+
+    public PatientStatistics() {
+        age = new ColumnStatistics();
+        bloodPressure = new ColumnStatistics();
+        cholesterol = new ColumnStatistics();
+        ids = new HyperLogLog();
+        names = new HyperLogLog();
+    }
+
+    private PatientStatistics(PatientStatistics source) {
+        age = source.age.copy();
+        bloodPressure = source.bloodPressure.copy();
+        cholesterol = source.cholesterol.copy();
+        ids = source.ids.copy();
+        names = source.names.copy();
+    }
+
+    public PatientStatistics copy() {
+        return new PatientStatistics(this);
+    }
+
+    // Column by column over the store's arrays, which is much faster than a row at a time.
+    public void addRows(PatientStore store, int from, int to) {
+        age.addAll(store.ages(), from, to);
+        bloodPressure.addAll(store.bloodPressures(), from, to);
+        cholesterol.addAll(store.cholesterols(), from, to);
+        int[] patientIds = store.ids();
+        StringPool patientNames = store.names();
+        for (int row = from; row < to; row++) {
+            ids.addInt(patientIds[row]);
+            names.addHash(patientNames.hash(row));
+        }
+    }
+
+    public void merge(PatientStatistics other) {
+        age.merge(other.age);
+        bloodPressure.merge(other.bloodPressure);
+        cholesterol.merge(other.cholesterol);
+        ids.merge(other.ids);
+        names.merge(other.names);
+    }
+
+    public long getPatientCount() { return age.getCount(); }
+    public boolean isEmpty() { return age.getCount() == 0; }
+
+    // Callers must not change the column statistics; copy() the whole object to merge into it.
+    public ColumnStatistics getAge() { return age; }
+    public ColumnStatistics getBloodPressure() { return bloodPressure; }
+    public ColumnStatistics getCholesterol() { return cholesterol; }
+    public long getDistinctIds() { return ids.estimate(); }
+    public long getDistinctNames() { return names.estimate(); }
+}
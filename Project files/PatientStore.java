@@ -0,0 +1,242 @@
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+public class PatientStore {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] ids;
+    private int[] ages;
+    private int[] bloodPressures;
+    private int[] cholesterols;
+    private byte[] bloodGroupCodes;
+    private short[] diagnosisCodes;
+    private final StringPool names;
+    private final ValueDictionary bloodGroups;
+    private final ValueDictionary diagnoses;
+    private final boolean readOnly;
+
+    public PatientStore() {
+        ids = new int[INITIAL_CAPACITY];
+        ages = new int[INITIAL_CAPACITY];
+        bloodPressures = new int[INITIAL_CAPACITY];
+        cholesterols = new int[INITIAL_CAPACITY];
+        bloodGroupCodes = new byte[INITIAL_CAPACITY];
+        diagnosisCodes = new short[INITIAL_CAPACITY];
+        names = new StringPool();
+        bloodGroups = new ValueDictionary(256);
+        diagnoses = new ValueDictionary(65536);
+        readOnly = false;
+    }
+
+    private PatientStore(PatientStore source) {
+        size = source.size;
+        ids = source.ids;
+        ages = source.ages;
+        bloodPressures = source.bloodPressures;
+        cholesterols = source.cholesterols;
+        bloodGroupCodes = source.bloodGroupCodes;
+        diagnosisCodes = source.diagnosisCodes;
+        names = source.names.view();
+        bloodGroups = source.bloodGroups.copy();
+        diagnoses = source.diagnoses.copy();
+        readOnly = true;
+    }
+
+    // A read-only store over the current rows. It shares the columns instead of copying them: appends
+    // only write past size() or into grown copies, so the view is unaffected by them. Clearing would
+    // overwrite rows that views still read, so a writer replacing the data starts a new store instead.
+    public PatientStore view() {
+        return new PatientStore(this);
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new UnsupportedOperationException("Read-only view of a patient store");
+    }
+
+    public int add(int id, String name, int age, int bp, int cholesterol,
+                   String bloodGroup, String diagnosis) {
+        checkWritable();
+        names.add(name);
+        return addRow(id, age, bp, cholesterol, bloodGroups.encode(bloodGroup), diagnoses.encode(diagnosis));
+    }
+
+    public int add(int id, ByteBuffer source, int nameStart, int nameLength, int age, int bp,
+                   int cholesterol, int bloodGroupCode, int diagnosisCode) {
+        checkWritable();
+        names.add(source, nameStart, nameLength);
+        return addRow(id, age, bp, cholesterol, bloodGroupCode, diagnosisCode);
+    }
+
+    private int addRow(int id, int age, int bp, int cholesterol, int bloodGroupCode, int diagnosisCode) {
+        if (size == ids.length) {
+            ensureCapacity(size + 1);
+        }
+        int row = size++;
+        ids[row] = id;
+        ages[row] = age;
+        bloodPressures[row] = bp;
+        cholesterols[row] = cholesterol;
+        bloodGroupCodes[row] = (byte) bloodGroupCode;
+        diagnosisCodes[row] = (short) diagnosisCode;
+        return row;
+    }
+
+    public void appendAll(PatientStore other) {
+        checkWritable();
+        int[] bloodGroupMapping = remap(other.bloodGroups, bloodGroups);
+        int[] diagnosisMapping = remap(other.diagnoses, diagnoses);
+        int count = other.size;
+        ensureCapacity(size + count);
+        System.arraycopy(other.ids, 0, ids, size, count);
+        System.arraycopy(other.ages, 0, ages, size, count);
+        System.arraycopy(other.bloodPressures, 0, bloodPressures, size, count);
+        System.arraycopy(other.cholesterols, 0, cholesterols, size, count);
+        for (int i = 0; i < count; i++) {
+            bloodGroupCodes[size + i] = (byte) bloodGroupMapping[other.bloodGroupCodes[i] & 0xFF];
+            diagnosisCodes[size + i] = (short) diagnosisMapping[other.diagnosisCodes[i] & 0xFFFF];
+        }
+        names.addAll(other.names);
+        size += count;
+    }
+
+    // Drops the rows in removed from row from onwards, moving the later ones down. Rows a view can see
+    // must not move, so from must be at least the size of the last view taken.
+    void removeRows(int from, BitSet removed) {
+        checkWritable();
+        int target = from;
+        for (int row = from; row < size; row++) {
+            if (removed.get(row)) continue;
+            ids[target] = ids[row];
+            ages[target] = ages[row];
+            bloodPressures[target] = bloodPressures[row];
+            cholesterols[target] = cholesterols[row];
+            bloodGroupCodes[target] = bloodGroupCodes[row];
+            diagnosisCodes[target] = diagnosisCodes[row];
+            target++;
+        }
+        names.removeEntries(from, removed);
+        size = target;
+    }
+
+    // A new store holding every row except those in removed, in order and with the same value codes,
+    // for when rows that views already share have to go.
+    PatientStore without(BitSet removed) {
+        PatientStore copy = new PatientStore();
+        for (int code = 0; code < bloodGroups.size(); code++) {
+            copy.bloodGroups.encode(bloodGroups.valueOf(code));
+        }
+        for (int code = 0; code < diagnoses.size(); code++) {
+            copy.diagnoses.encode(diagnoses.valueOf(code));
+        }
+        copy.ensureCapacity(size);
+        for (int row = removed.nextClearBit(0); row < size; row = removed.nextClearBit(row + 1)) {
+            copy.names.add(names, row);
+            copy.addRow(ids[row], ages[row], bloodPressures[row], cholesterols[row],
+                    getBloodGroupCode(row), getDiagnosisCode(row));
+        }
+        return copy;
+    }
+
+    private static int[] remap(ValueDictionary from, ValueDictionary to) {
+        int[] mapping = new int[from.size()];
+        for (int code = 0; code < mapping.length; code++) {
+            mapping[code] = to.encode(from.valueOf(code));
+        }
+        return mapping;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) return;
+        int capacity = Math.max(ids.length * 2, required);
+        ids = Arrays.copyOf(ids, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        bloodPressures = Arrays.copyOf(bloodPressures, capacity);
+        cholesterols = Arrays.copyOf(cholesterols, capacity);
+        bloodGroupCodes = Arrays.copyOf(bloodGroupCodes, capacity);
+        diagnosisCodes = Arrays.copyOf(diagnosisCodes, capacity);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public int getPatientID(int row) { return ids[row]; }
+    public String getName(int row) { return names.get(row); }
+    public int getAge(int row) { return ages[row]; }
+    public int getBloodPressure(int row) { return bloodPressures[row]; }
+    public int getCholesterol(int row) { return cholesterols[row]; }
+    public int getBloodGroupCode(int row) { return bloodGroupCodes[row] & 0xFF; }
+    public int getDiagnosisCode(int row) { return diagnosisCodes[row] & 0xFFFF; }
+    public String getBloodGroup(int row) { return bloodGroups.valueOf(getBloodGroupCode(row)); }
+    public String getDiagnosis(int row) { return diagnoses.valueOf(getDiagnosisCode(row)); }
+    public int compareNames(int firstRow, int secondRow) { return names.compare(firstRow, secondRow); }
+
+    // Backing arrays for bulk scans; only the first size() entries are valid.
+    int[] ages() { return ages; }
+    int[] bloodPressures() { return bloodPressures; }
+    int[] cholesterols() { return cholesterols; }
+    int[] ids() { return ids; }
+    byte[] bloodGroupCodes() { return bloodGroupCodes; }
+    short[] diagnosisCodes() { return diagnosisCodes; }
+    StringPool names() { return names; }
+
+    // Adopts fully built columns, e.g. from a binary snapshot; the store must be empty.
+    void restore(int rows, int[] ids, int[] ages, int[] bloodPressures, int[] cholesterols,
+                 byte[] bloodGroupCodes, short[] diagnosisCodes) {
+        checkWritable();
+        if (size != 0) throw new IllegalStateException("Store is not empty");
+        this.ids = ids;
+        this.ages = ages;
+        this.bloodPressures = bloodPressures;
+        this.cholesterols = cholesterols;
+        this.bloodGroupCodes = bloodGroupCodes;
+        this.diagnosisCodes = diagnosisCodes;
+        size = rows;
+    }
+
+    public ValueDictionary getBloodGroups() { return bloodGroups; }
+    public ValueDictionary getDiagnoses() { return diagnoses; }
+
+    public Patient getPatient(int row) {
+        Objects.checkIndex(row, size);
+        return new Patient(ids[row], names.get(row), ages[row], bloodPressures[row],
+                cholesterols[row], getBloodGroup(row), getDiagnosis(row));
+    }
+
+    public List<Patient> asList() {
+        return new AbstractList<Patient>() {
+            public Patient get(int index) { return getPatient(index); }
+            public int size() { return size; }
+        };
+    }
+
+    public List<Patient> rows(IntList rows) {
+        return new AbstractList<Patient>() {
+            public Patient get(int index) { return getPatient(rows.get(index)); }
+            public int size() { return rows.size(); }
+        };
+    }
+
+    public List<Patient> rows(int[] rows) {
+        return rows(rows, rows.length);
+    }
+
+    public List<Patient> rows(int[] rows, int count) {
+        return new AbstractList<Patient>() {
+            public Patient get(int index) { return getPatient(rows[Objects.checkIndex(index, count)]); }
+            public int size() { return count; }
+        };
+    }
+
+    public void clear() {
+        checkWritable();
+        size = 0;
+        names.clear();
+        bloodGroups.clear();
+        diagnoses.clear();
+    }
+}
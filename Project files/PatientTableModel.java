@@ -0,0 +1,82 @@
+import javax.swing.table.AbstractTableModel;
+
+public class PatientTableModel extends AbstractTableModel {
+    private static final PatientColumn[] COLUMNS = PatientColumn.values();
+
+    private final MedicalDataMiner dataMiner;
+    private PatientStore store;
+    private int[] rows;
+
+    public PatientTableModel(MedicalDataMiner dataMiner) {
+        this.dataMiner = dataMiner;
+        store = dataMiner.getPatientStore();
+    }
+
+    // The table keeps the store view it was last given, so loads running in the background never
+    // change the rows under it; it moves to the current data only when told what to show next.
+    public void showAllRows() {
+        store = dataMiner.getPatientStore();
+        rows = null;
+        fireTableDataChanged();
+    }
+
+    // Row numbers only mean something in the store view they were found in, which must come with them.
+    public void showRows(PatientStore store, int[] rows) {
+        this.store = store;
+        this.rows = rows;
+        fireTableDataChanged();
+    }
+
+    public PatientStore getStore() {
+        return store;
+    }
+
+    public int[] getRows() {
+        return rows;
+    }
+
+    public int getStoreRow(int tableRow) {
+        return rows == null ? tableRow : rows[tableRow];
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows == null ? store.size() : rows.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column].getLabel();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (COLUMNS[column]) {
+            case NAME:
+            case BLOOD_GROUP:
+            case DIAGNOSIS:
+                return String.class;
+            default:
+                return Integer.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int tableRow, int column) {
+        int row = getStoreRow(tableRow);
+        switch (COLUMNS[column]) {
+            case ID: return store.getPatientID(row);
+            case NAME: return store.getName(row);
+            case AGE: return store.getAge(row);
+            case BLOOD_PRESSURE: return store.getBloodPressure(row);
+            case CHOLESTEROL: return store.getCholesterol(row);
+            case BLOOD_GROUP: return store.getBloodGroup(row);
+            default: return store.getDiagnosis(row);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Drill-down over the aggregation cube of the current view: one dimension down the side, another
+// across, a chosen value in each cell with totals, and optional filters on any dimension. Every change
+// is answered from the cube alone, so it is instant however many patients are loaded.
+public class PivotPanel extends JPanel {
+    private enum Value {
+        COUNT("Patients"),
+        AVERAGE_AGE("Average Age"),
+        AVERAGE_BP("Average BP"),
+        AVERAGE_CHOLESTEROL("Average Cholesterol");
+
+        private final String label;
+
+        Value(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final String ALL = "All";
+
+    private final MedicalDataMiner dataMiner;
+    private final JComboBox<CubeDimension> rowBox = new JComboBox<>(CubeDimension.values());
+    private final JComboBox<CubeDimension> columnBox = new JComboBox<>(CubeDimension.values());
+    private final JComboBox<Value> valueBox = new JComboBox<>(Value.values());
+    private final Map<CubeDimension, JComboBox<String>> filterBoxes = new EnumMap<>(CubeDimension.class);
+    private final PivotTableModel tableModel = new PivotTableModel();
+    private final JLabel summaryLabel = new JLabel(" ");
+    private AggregationCube cube;
+    private boolean updatingFilters;
+
+    public PivotPanel(MedicalDataMiner dataMiner) {
+        super(new BorderLayout());
+        this.dataMiner = dataMiner;
+        rowBox.setSelectedItem(CubeDimension.DIAGNOSIS);
+        columnBox.setSelectedItem(CubeDimension.AGE_GROUP);
+
+        JPanel layoutPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        layoutPanel.add(new JLabel("Rows:"));
+        layoutPanel.add(rowBox);
+        layoutPanel.add(new JLabel("Columns:"));
+        layoutPanel.add(columnBox);
+        layoutPanel.add(new JLabel("Value:"));
+        layoutPanel.add(valueBox);
+        JButton refreshButton = new JButton("Refresh");
+        layoutPanel.add(refreshButton);
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.setBorder(BorderFactory.createTitledBorder("Filters"));
+        for (CubeDimension dimension : CubeDimension.values()) {
+            JComboBox<String> box = new JComboBox<>(new String[] {ALL});
+            box.addActionListener(e -> {
+                if (!updatingFilters) recompute();
+            });
+            filterBoxes.put(dimension, box);
+            filterPanel.add(new JLabel(dimension.getLabel() + ":"));
+            filterPanel.add(box);
+        }
+
+        JPanel controls = new JPanel(new GridLayout(2, 1));
+        controls.add(layoutPanel);
+        controls.add(filterPanel);
+
+        rowBox.addActionListener(e -> recompute());
+        columnBox.addActionListener(e -> recompute());
+        valueBox.addActionListener(e -> recompute());
+        refreshButton.addActionListener(e -> refresh());
+
+        JTable table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        add(controls, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(summaryLabel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refresh();
+    }
+
+    // Picks up the latest published view, keeping the filters that still name a member.
+    public void refresh() {
+        cube = dataMiner.getView().getCube();
+        updatingFilters = true;
+        for (Map.Entry<CubeDimension, JComboBox<String>> entry : filterBoxes.entrySet()) {
+            JComboBox<String> box = entry.getValue();
+            Object selected = box.getSelectedItem();
+            box.removeAllItems();
+            box.addItem(ALL);
+            for (int member = 0; member < cube.getMemberCount(entry.getKey()); member++) {
+                box.addItem(cube.getMemberLabel(entry.getKey(), member));
+            }
+            box.setSelectedItem(selected);
+            if (box.getSelectedIndex() < 0) box.setSelectedIndex(0);
+        }
+        updatingFilters = false;
+        recompute();
+    }
+
+    private void recompute() {
+        if (cube == null) return;
+        long start = System.nanoTime();
+        int[] slice = AggregationCube.allMembers();
+        for (Map.Entry<CubeDimension, JComboBox<String>> entry : filterBoxes.entrySet()) {
+            slice[entry.getKey().ordinal()] = entry.getValue().getSelectedIndex() - 1;
+        }
+        CubeDimension rows = (CubeDimension) rowBox.getSelectedItem();
+        CubeDimension columns = (CubeDimension) columnBox.getSelectedItem();
+        tableModel.update(rows, rows == columns ? null : columns, slice, (Value) valueBox.getSelectedItem());
+        summaryLabel.setText(String.format("%,d patients in the filtered cube, computed in %.3f ms",
+                tableModel.total.getCount(), (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    private class PivotTableModel extends AbstractTableModel {
+        private CubeDimension rows, columns;
+        private CubeAggregate[][] cells = new CubeAggregate[0][];
+        private CubeAggregate[] rowTotals = new CubeAggregate[0];
+        private CubeAggregate[] columnTotals = new CubeAggregate[0];
+        private CubeAggregate total;
+        private Value value = Value.COUNT;
+
+        // With the same dimension both ways there are no columns besides the totals.
+        void update(CubeDimension rows, CubeDimension columns, int[] slice, Value value) {
+            this.rows = rows;
+            this.columns = columns;
+            this.value = value;
+            rowTotals = cube.rollUp(rows, slice);
+            columnTotals = columns == null ? new CubeAggregate[0] : cube.rollUp(columns, slice);
+            cells = columns == null ? new CubeAggregate[rowTotals.length][0] : cube.pivot(rows, columns, slice);
+            total = cube.aggregate(slice);
+            fireTableStructureChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return total == null ? 0 : rowTotals.length + 1;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columnTotals.length + 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            if (column == 0) return rows == null ? "" : rows.getLabel();
+            if (column == columnTotals.length + 1) return "Total";
+            return cube.getMemberLabel(columns, column - 1);
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            boolean totalRow = row == rowTotals.length;
+            boolean totalColumn = column == columnTotals.length + 1;
+            if (column == 0) return totalRow ? "Total" : cube.getMemberLabel(rows, row);
+            CubeAggregate aggregate;
+            if (totalRow) {
+                aggregate = totalColumn ? total : columnTotals[column - 1];
+            } else {
+                aggregate = totalColumn ? rowTotals[row] : cells[row][column - 1];
+            }
+            return format(aggregate);
+        }
+
+        private Object format(CubeAggregate aggregate) {
+            switch (value) {
+                case COUNT: return aggregate.getCount();
+                case AVERAGE_AGE: return average(aggregate, AggregationCube.AGE);
+                case AVERAGE_BP: return average(aggregate, AggregationCube.BLOOD_PRESSURE);
+                default: return average(aggregate, AggregationCube.CHOLESTEROL);
+            }
+        }
+
+        private String average(CubeAggregate aggregate, int measure) {
+            return aggregate.isEmpty() ? "" : String.format("%.1f", aggregate.getAverage(measure));
+        }
+    }
+}
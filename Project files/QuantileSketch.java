@@ -0,0 +1,285 @@
+import java.util.Arrays;
+
+// Quantiles of a stream of int values in bounded memory. While the values span at most MAX_SPAN
+// integers - ages, blood pressures and cholesterol levels all do - they are counted in a histogram and
+// quantiles are exact. Beyond that the counts spill into a KLL sketch: values are kept in levels, an item
+// on level h standing for 2^h of the values added, and when the sketch is full the lowest level over its
+// capacity is sorted and every other item promoted to the next level. That keeps about 4k items however
+// many values are added, with a rank error around 1.7/k of the count (under 1% with the default k).
+// Sketches of the same k merge, histogram or not, so shards and parallel ranges can be combined.
+// Promotion alternates between odd and even positions instead of choosing at random, which keeps the
+// results reproducible.
+public class QuantileSketch {
+    public static final int DEFAULT_K = 256;
+    static final int MAX_SPAN = 4096;
+    private static final int MIN_CAPACITY = 8;
+
+    private final int k;
+    private long count;
+
+    // Exact counts of base, base + 1, ...; null once the values have spilled into the levels
+    private int[] histogram = new int[0];
+    private int base;
+
+    private int[][] levels;
+    private int[] sizes;
+    private boolean[] promoteOdd;
+    private int[] capacities;
+    private int totalCapacity;
+    private int levelCount;
+    private int retained;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        if (k < 8) throw new IllegalArgumentException("k must be at least 8");
+        this.k = k;
+    }
+
+    private QuantileSketch(QuantileSketch source) {
+        k = source.k;
+        count = source.count;
+        base = source.base;
+        if (source.histogram != null) {
+            histogram = source.histogram.clone();
+            return;
+        }
+        histogram = null;
+        levelCount = source.levelCount;
+        levels = new int[source.levels.length][];
+        for (int h = 0; h < levelCount; h++) {
+            levels[h] = Arrays.copyOf(source.levels[h], source.levels[h].length);
+        }
+        sizes = source.sizes.clone();
+        promoteOdd = source.promoteOdd.clone();
+        capacities = source.capacities;
+        totalCapacity = source.totalCapacity;
+        retained = source.retained;
+    }
+
+    public QuantileSketch copy() {
+        return new QuantileSketch(this);
+    }
+
+    public void add(int value) {
+        count++;
+        if (histogram != null && fitHistogram(value, value)) {
+            histogram[value - base]++;
+            return;
+        }
+        append(0, value);
+        if (retained >= totalCapacity) {
+            compress();
+        }
+    }
+
+    public void addAll(int[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int offset = values[i] - base;
+            if (histogram != null && offset >= 0 && offset < histogram.length) {
+                histogram[offset]++;
+                count++;
+            } else {
+                add(values[i]);
+            }
+        }
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.k != k) throw new IllegalArgumentException("Cannot merge sketches of different k");
+        if (other.count == 0) return;
+        if (histogram != null && other.histogram != null) {
+            // Only the other histogram's counted values have to fit, not the room it left around them
+            int first = firstCounted(other.histogram), last = lastCounted(other.histogram);
+            if (fitHistogram(other.base + first, other.base + last)) {
+                for (int offset = first; offset <= last; offset++) {
+                    histogram[other.base + offset - base] += other.histogram[offset];
+                }
+                count += other.count;
+                return;
+            }
+        }
+        spill();
+        if (other.histogram != null) {
+            for (int offset = 0; offset < other.histogram.length; offset++) {
+                addWeighted(other.base + offset, other.histogram[offset]);
+            }
+        } else {
+            while (levelCount < other.levelCount) {
+                addLevel();
+            }
+            for (int h = 0; h < other.levelCount; h++) {
+                for (int i = 0; i < other.sizes[h]; i++) {
+                    append(h, other.levels[h][i]);
+                }
+            }
+        }
+        count += other.count;
+        compress();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isExact() {
+        return histogram != null;
+    }
+
+    // The smallest added value whose rank is at least fraction * count; fraction 0.5 is the median.
+    public int getQuantile(double fraction) {
+        if (count == 0) throw new IllegalStateException("Empty sketch");
+        double target = Math.max(1, Math.ceil(fraction * count));
+        long cumulative = 0;
+        if (histogram != null) {
+            for (int offset = 0; offset < histogram.length; offset++) {
+                cumulative += histogram[offset];
+                if (cumulative >= target) return base + offset;
+            }
+            return base + histogram.length - 1;
+        }
+        // Pack each value with its level so one sort orders everything; weights are 2^level
+        long[] weighted = new long[retained];
+        int n = 0;
+        for (int h = 0; h < levelCount; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                weighted[n++] = ((long) levels[h][i] << 8) | h;
+            }
+        }
+        Arrays.sort(weighted);
+        for (long item : weighted) {
+            cumulative += 1L << (item & 0xFF);
+            if (cumulative >= target) return (int) (item >> 8);
+        }
+        return (int) (weighted[n - 1] >> 8);
+    }
+
+    // Widens the histogram to cover low..high if the span allows, spilling it otherwise. The span is
+    // measured from the values counted so far, not from the room left around them.
+    private boolean fitHistogram(int low, int high) {
+        int length = histogram.length;
+        if (length > 0 && low >= base && (long) high - base < length) return true;
+        int first = firstCounted(histogram), last = lastCounted(histogram);
+        boolean empty = first > last;
+        long newLow = empty ? low : Math.min(low, (long) base + first);
+        long newHigh = empty ? high : Math.max(high, (long) base + last);
+        if (newHigh - newLow >= MAX_SPAN) {
+            spill();
+            return false;
+        }
+        // Leave room on both sides so a slowly widening range is not copied for every new value
+        long span = newHigh - newLow + 1;
+        int newLength = (int) Math.min(MAX_SPAN, Math.max(2 * span, 64));
+        long newBase = Math.max(Integer.MIN_VALUE, newLow - (newLength - span) / 2);
+        newBase = Math.min(newBase, (long) Integer.MAX_VALUE - newLength + 1);
+        int[] widened = new int[newLength];
+        if (!empty) {
+            System.arraycopy(histogram, first, widened, (int) (base + first - newBase), last - first + 1);
+        }
+        histogram = widened;
+        base = (int) newBase;
+        return true;
+    }
+
+    private static int firstCounted(int[] histogram) {
+        int offset = 0;
+        while (offset < histogram.length && histogram[offset] == 0) {
+            offset++;
+        }
+        return offset;
+    }
+
+    private static int lastCounted(int[] histogram) {
+        int offset = histogram.length - 1;
+        while (offset >= 0 && histogram[offset] == 0) {
+            offset--;
+        }
+        return offset;
+    }
+
+    private void spill() {
+        if (histogram == null) return;
+        int[] counts = histogram;
+        histogram = null;
+        levels = new int[][] {new int[k]};
+        sizes = new int[1];
+        promoteOdd = new boolean[1];
+        levelCount = 1;
+        setCapacities();
+        for (int offset = 0; offset < counts.length; offset++) {
+            addWeighted(base + offset, counts[offset]);
+        }
+        compress();
+    }
+
+    // A value seen n times becomes one item on each level h where bit h of n is set.
+    private void addWeighted(int value, long weight) {
+        for (int h = 0; weight != 0; h++, weight >>>= 1) {
+            if ((weight & 1) == 0) continue;
+            while (levelCount <= h) {
+                addLevel();
+            }
+            append(h, value);
+        }
+    }
+
+    // Lower levels get geometrically smaller capacities, which is what bounds the total size. Level 0
+    // is the exception: its items carry the least weight, so a full-size buffer there costs no accuracy
+    // and means it is compacted once every k or so values rather than every few.
+    private void setCapacities() {
+        capacities = new int[levelCount];
+        totalCapacity = 0;
+        for (int level = 0; level < levelCount; level++) {
+            int depth = levelCount - 1 - level;
+            capacities[level] = level == 0 ? k : Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+            totalCapacity += capacities[level];
+        }
+    }
+
+    private void append(int level, int value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(4, levels[level].length * 2));
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+
+    private void addLevel() {
+        if (levelCount == levels.length) {
+            levels = Arrays.copyOf(levels, levelCount * 2);
+            sizes = Arrays.copyOf(sizes, levelCount * 2);
+            promoteOdd = Arrays.copyOf(promoteOdd, levelCount * 2);
+        }
+        levels[levelCount] = new int[Math.max(4, capacities[levelCount - 1])];
+        levelCount++;
+        setCapacities();
+    }
+
+    // While the sketch is full some level must be over its capacity; compacting the lowest such level
+    // first keeps the most precise items longest.
+    private void compress() {
+        while (retained >= totalCapacity) {
+            int h = 0;
+            while (sizes[h] < capacities[h]) {
+                h++;
+            }
+            if (h + 1 == levelCount) {
+                addLevel();
+            }
+            int[] items = levels[h];
+            int size = sizes[h];
+            Arrays.sort(items, 0, size);
+            // An odd item out stays behind, so the promoted pairs keep the total weight exact
+            int kept = size & 1;
+            int start = kept + (promoteOdd[h] ? 1 : 0);
+            promoteOdd[h] = !promoteOdd[h];
+            for (int i = start; i < size; i += 2) {
+                append(h + 1, items[i]);
+            }
+            sizes[h] = kept;
+            retained -= size - kept;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+public enum ReportFormat {
+    TEXT(".txt"),
+    CSV(".csv"),
+    JSON(".json");
+
+    private final String extension;
+
+    ReportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // Picks the format from the file extension; anything unrecognised gets the plain text report.
+    public static ReportFormat forFile(String filename) {
+        String name = filename.toLowerCase();
+        for (ReportFormat format : values()) {
+            if (name.endsWith(format.extension)) return format;
+        }
+        return TEXT;
+    }
+}
@@ -0,0 +1,8 @@
+// The parts of the analysis summary, one per MedicalDataMiner text analysis. Reports write all of
+// them in this order; the HTTP service serves them one at a time.
+public enum ReportSection {
+    STATISTICS,
+    RISK,
+    PATTERNS,
+    FREQUENCY
+}
@@ -0,0 +1,426 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// Streams a report section by section, so per-patient detail lines go straight to the underlying
+// writer and memory use does not grow with the number of patients.
+public abstract class ReportWriter implements Closeable {
+    public static final String TITLE = "MEDICAL DATA MINING REPORT";
+
+    protected final Writer out;
+
+    protected ReportWriter(Writer out) {
+        this.out = out;
+    }
+
+    public static ReportWriter create(ReportFormat format, Writer out) {
+        switch (format) {
+            case CSV: return new CsvReportWriter(out);
+            case JSON: return new JsonReportWriter(out);
+            default: return new TextReportWriter(out);
+        }
+    }
+
+    public abstract void summary(DatasetView data, Date generated) throws IOException;
+
+    public abstract void section(ReportSection section, DatasetView data) throws IOException;
+
+    // A section of named figures supplied by the caller rather than taken from the analysis.
+    public abstract void counts(String section, String[] names, long[] values) throws IOException;
+
+    public abstract void beginPatients() throws IOException;
+
+    public abstract void patient(PatientStore store, int row, int riskScore, RiskTier tier) throws IOException;
+
+    public abstract void endPatients() throws IOException;
+
+    protected void finish() throws IOException { }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static class TextReportWriter extends ReportWriter {
+        TextReportWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void summary(DatasetView data, Date generated) throws IOException {
+            out.write(TITLE + "\n");
+            out.write("Generated on: " + generated + "\n");
+            out.write("=".repeat(50) + "\n\n");
+            for (ReportSection section : ReportSection.values()) {
+                section(section, data);
+            }
+        }
+
+        @Override
+        public void section(ReportSection section, DatasetView data) throws IOException {
+            out.write(MedicalDataMiner.describe(section, data) + "\n");
+        }
+
+        @Override
+        public void counts(String section, String[] names, long[] values) throws IOException {
+            out.write(section + ":\n");
+            for (int i = 0; i < names.length; i++) {
+                out.write("  " + names[i] + ": " + values[i] + "\n");
+            }
+        }
+
+        @Override
+        public void beginPatients() throws IOException {
+            out.write("=== PATIENT RISK DETAILS ===\n");
+        }
+
+        @Override
+        public void patient(PatientStore store, int row, int riskScore, RiskTier tier) throws IOException {
+            out.write("  ");
+            out.write(Integer.toString(store.getPatientID(row)));
+            out.write(" ");
+            out.write(store.getName(row));
+            out.write(" (Age: ");
+            out.write(Integer.toString(store.getAge(row)));
+            out.write(", BP: ");
+            out.write(Integer.toString(store.getBloodPressure(row)));
+            out.write(", Cholesterol: ");
+            out.write(Integer.toString(store.getCholesterol(row)));
+            out.write(", ");
+            out.write(store.getBloodGroup(row));
+            out.write(", ");
+            out.write(store.getDiagnosis(row));
+            out.write(") Risk: ");
+            out.write(tier.name());
+            out.write(" (score ");
+            out.write(Integer.toString(riskScore));
+            out.write(")\n");
+        }
+
+        @Override
+        public void endPatients() throws IOException {
+            out.write("\n");
+        }
+    }
+
+    // CSV and JSON share the summary layout: named sections of metric/value pairs.
+    private abstract static class StructuredReportWriter extends ReportWriter {
+        StructuredReportWriter(Writer out) {
+            super(out);
+        }
+
+        protected abstract void beginSection(String section) throws IOException;
+
+        protected abstract void metric(String name, String value, boolean quoted) throws IOException;
+
+        protected abstract void endSection() throws IOException;
+
+        private void metric(String name, long value) throws IOException {
+            metric(name, Long.toString(value), false);
+        }
+
+        private void metric(String name, double value) throws IOException {
+            metric(name, String.format(Locale.ROOT, "%.2f", value), false);
+        }
+
+        @Override
+        public void summary(DatasetView data, Date generated) throws IOException {
+            beginSection("report");
+            metric("title", TITLE, true);
+            metric("generated", generated.toInstant().toString(), true);
+            endSection();
+            for (ReportSection section : ReportSection.values()) {
+                section(section, data);
+            }
+        }
+
+        // Sections are left out entirely when no data is loaded.
+        @Override
+        public void section(ReportSection section, DatasetView data) throws IOException {
+            AnalysisSnapshot stats = data.getAnalysis();
+            if (stats.isEmpty()) return;
+            switch (section) {
+                case STATISTICS: statistics(stats); break;
+                case RISK: risk(stats); break;
+                case PATTERNS: patterns(stats, data.getAssociationRules()); break;
+                default: frequency(stats); break;
+            }
+        }
+
+        @Override
+        public void counts(String section, String[] names, long[] values) throws IOException {
+            beginSection(section);
+            for (int i = 0; i < names.length; i++) {
+                metric(names[i], values[i]);
+            }
+            endSection();
+        }
+
+        private void statistics(AnalysisSnapshot stats) throws IOException {
+            beginSection("statistics");
+            metric("patients", stats.getPatientCount());
+            metric("distinctIds", stats.getStatistics().getDistinctIds());
+            metric("distinctNames", stats.getStatistics().getDistinctNames());
+            column("Age", stats.getAge());
+            column("BloodPressure", stats.getBloodPressure());
+            column("Cholesterol", stats.getCholesterol());
+            endSection();
+        }
+
+        private void column(String name, ColumnStatistics column) throws IOException {
+            metric("average" + name, column.getMean());
+            metric("standardDeviation" + name, column.getStandardDeviation());
+            metric("median" + name, column.getMedian());
+            metric("p90" + name, column.getQuantile(0.9));
+            metric("p99" + name, column.getQuantile(0.99));
+            metric("min" + name, column.getMin());
+            metric("max" + name, column.getMax());
+        }
+
+        private void risk(AnalysisSnapshot stats) throws IOException {
+            beginSection("risk");
+            for (RiskTier tier : RiskTier.values()) {
+                metric(tier.name(), stats.getTierCount(tier));
+            }
+            endSection();
+        }
+
+        private void patterns(AnalysisSnapshot stats, List<AssociationRule> rules) throws IOException {
+            beginSection("patterns");
+            metric("highBloodPressureThreshold", stats.getRules().getHighBloodPressure());
+            metric("highCholesterolThreshold", stats.getRules().getHighCholesterol());
+            metric("highBPHighCholesterol", stats.getHighBPHighChol());
+            metric("highBPHighCholesterolWithHeartIssues", stats.getHighBPWithHeart());
+            metric("diabetesAgeThreshold", stats.getRules().getDiabetesAge());
+            metric("diabetesAboveAge", stats.getDiabetesOver50());
+            metric("youngAgeThreshold", stats.getRules().getYoungAge());
+            metric("healthyBelowAge", stats.getHealthyUnder30());
+            endSection();
+
+            beginSection("ageGroups");
+            for (int group = 0; group < stats.getAgeGroupCount(); group++) {
+                metric(stats.getAgeGroupLabel(group), stats.getAgeGroup(group));
+            }
+            endSection();
+
+            beginSection("associationRules");
+            for (AssociationRule rule : rules) {
+                metric(rule.toString(), rule.describeMeasures(), true);
+            }
+            endSection();
+        }
+
+        private void frequency(AnalysisSnapshot stats) throws IOException {
+            beginSection("diagnoses");
+            for (int code = 0; code < stats.getDiagnosisCount(); code++) {
+                metric(stats.getDiagnosis(code), stats.getDiagnosisFrequency(code));
+            }
+            endSection();
+
+            beginSection("bloodGroups");
+            for (int code = 0; code < stats.getBloodGroupCount(); code++) {
+                metric(stats.getBloodGroup(code), stats.getBloodGroupFrequency(code));
+            }
+            endSection();
+        }
+    }
+
+    private static class CsvReportWriter extends StructuredReportWriter {
+        private String section;
+
+        CsvReportWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void summary(DatasetView data, Date generated) throws IOException {
+            out.write("Section,Metric,Value\n");
+            super.summary(data, generated);
+        }
+
+        @Override
+        protected void beginSection(String section) {
+            this.section = section;
+        }
+
+        @Override
+        protected void metric(String name, String value, boolean quoted) throws IOException {
+            out.write(section);
+            out.write(',');
+            writeField(name);
+            out.write(',');
+            writeField(value);
+            out.write('\n');
+        }
+
+        @Override
+        protected void endSection() { }
+
+        @Override
+        public void beginPatients() throws IOException {
+            out.write("\nID,Name,Age,BP,Cholesterol,BloodGroup,Diagnosis,RiskScore,RiskTier\n");
+        }
+
+        @Override
+        public void patient(PatientStore store, int row, int riskScore, RiskTier tier) throws IOException {
+            out.write(Integer.toString(store.getPatientID(row)));
+            out.write(',');
+            writeField(store.getName(row));
+            out.write(',');
+            out.write(Integer.toString(store.getAge(row)));
+            out.write(',');
+            out.write(Integer.toString(store.getBloodPressure(row)));
+            out.write(',');
+            out.write(Integer.toString(store.getCholesterol(row)));
+            out.write(',');
+            writeField(store.getBloodGroup(row));
+            out.write(',');
+            writeField(store.getDiagnosis(row));
+            out.write(',');
+            out.write(Integer.toString(riskScore));
+            out.write(',');
+            out.write(tier.name());
+            out.write('\n');
+        }
+
+        @Override
+        public void endPatients() { }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    // Every section and the patient list become members of one top-level object, which is opened
+    // by whatever is written first.
+    private static class JsonReportWriter extends StructuredReportWriter {
+        private boolean opened;
+        private boolean firstMember = true;
+        private boolean firstEntry;
+
+        JsonReportWriter(Writer out) {
+            super(out);
+        }
+
+        private void member(String name) throws IOException {
+            if (!opened) out.write('{');
+            opened = true;
+            if (!firstMember) out.write(',');
+            firstMember = false;
+            out.write("\n  ");
+            writeString(name);
+            out.write(": ");
+        }
+
+        @Override
+        protected void beginSection(String section) throws IOException {
+            member(section);
+            out.write('{');
+            firstEntry = true;
+        }
+
+        @Override
+        protected void metric(String name, String value, boolean quoted) throws IOException {
+            if (!firstEntry) out.write(',');
+            firstEntry = false;
+            out.write("\n    ");
+            writeString(name);
+            out.write(": ");
+            if (quoted) {
+                writeString(value);
+            } else {
+                out.write(value);
+            }
+        }
+
+        @Override
+        protected void endSection() throws IOException {
+            out.write("\n  }");
+        }
+
+        @Override
+        public void beginPatients() throws IOException {
+            member("patients");
+            out.write('[');
+            firstEntry = true;
+        }
+
+        @Override
+        public void patient(PatientStore store, int row, int riskScore, RiskTier tier) throws IOException {
+            if (!firstEntry) out.write(',');
+            firstEntry = false;
+            out.write("\n    {\"id\": ");
+            out.write(Integer.toString(store.getPatientID(row)));
+            out.write(", \"name\": ");
+            writeString(store.getName(row));
+            out.write(", \"age\": ");
+            out.write(Integer.toString(store.getAge(row)));
+            out.write(", \"bloodPressure\": ");
+            out.write(Integer.toString(store.getBloodPressure(row)));
+            out.write(", \"cholesterol\": ");
+            out.write(Integer.toString(store.getCholesterol(row)));
+            out.write(", \"bloodGroup\": ");
+            writeString(store.getBloodGroup(row));
+            out.write(", \"diagnosis\": ");
+            writeString(store.getDiagnosis(row));
+            out.write(", \"riskScore\": ");
+            out.write(Integer.toString(riskScore));
+            out.write(", \"riskTier\": \"");
+            out.write(tier.name());
+            out.write("\"}");
+        }
+
+        @Override
+        public void endPatients() throws IOException {
+            out.write("\n  ]");
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            out.write(opened ? "\n}\n" : "{}\n");
+        }
+
+        private void writeString(String value) throws IOException {
+            writeJsonString(out, value);
+        }
+    }
+
+    static void writeJsonString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
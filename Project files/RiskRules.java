@@ -0,0 +1,409 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.TreeSet;
+
+// Site-tunable thresholds for risk scoring, pattern detection and disease prediction, read from a
+// properties file (see risk-rules.properties). Every rule compares age, blood pressure or cholesterol
+// against a threshold, so each column splits into a handful of bins within which no rule changes its
+// outcome. The rules are compiled into value-to-bin tables plus score, tier and prediction tables over
+// every bin combination, making evaluation a few array loads no matter how the rules are configured.
+public class RiskRules {
+    private static final int MAX_THRESHOLD = 1_000_000;
+    private static final int MAX_TABLE_SPAN = 1 << 20;
+    // Scores are stored one unsigned byte per patient (see RiskScores).
+    public static final int MAX_SCORE = 255;
+    private static final Properties DEFAULTS = new Properties();
+    private static final RiskRules DEFAULT_RULES;
+
+    static {
+        DEFAULTS.setProperty("score.age", "45:1, 60:2");
+        DEFAULTS.setProperty("score.bloodPressure", "130:2, 140:3");
+        DEFAULTS.setProperty("score.cholesterol", "180:1, 200:3");
+        DEFAULTS.setProperty("score.notHealthy", "2");
+        DEFAULTS.setProperty("tier.medium", "4");
+        DEFAULTS.setProperty("tier.high", "7");
+        DEFAULTS.setProperty("diagnosis.healthy", "Healthy");
+        DEFAULTS.setProperty("diagnosis.diabetes", "Diabetes");
+        DEFAULTS.setProperty("diagnosis.heartKeyword", "Heart");
+        DEFAULTS.setProperty("pattern.highBloodPressure", "140");
+        DEFAULTS.setProperty("pattern.highCholesterol", "200");
+        DEFAULTS.setProperty("pattern.diabetesAge", "50");
+        DEFAULTS.setProperty("pattern.youngAge", "30");
+        DEFAULTS.setProperty("pattern.ageGroups", "30, 45, 60");
+        DEFAULTS.setProperty("mining.bloodPressureBands", "120, 130, 140, 160");
+        DEFAULTS.setProperty("mining.cholesterolBands", "180, 200, 240");
+        DEFAULTS.setProperty("mining.minSupport", "2");
+        DEFAULTS.setProperty("mining.minConfidence", "60");
+        DEFAULTS.setProperty("mining.maxItems", "3");
+        DEFAULTS.setProperty("mining.maxRules", "10");
+        DEFAULTS.setProperty("predict.hypertension.bloodPressure", "160");
+        DEFAULTS.setProperty("predict.hypertension.olderBloodPressure", "140");
+        DEFAULTS.setProperty("predict.hypertension.olderAge", "55");
+        DEFAULTS.setProperty("predict.heartDisease.cholesterol", "240");
+        DEFAULTS.setProperty("predict.heartDisease.age", "45");
+        DEFAULTS.setProperty("predict.preCondition.bloodPressure", "130");
+        DEFAULTS.setProperty("predict.preCondition.cholesterol", "200");
+        DEFAULTS.setProperty("predict.healthy.age", "30");
+        DEFAULTS.setProperty("predict.healthy.bloodPressure", "120");
+        DEFAULTS.setProperty("predict.healthy.cholesterol", "180");
+        DEFAULT_RULES = new RiskRules(new Properties(DEFAULTS), "built-in defaults");
+    }
+
+    private final String source;
+
+    private final int[] ageScoreThresholds, ageScorePoints;
+    private final int[] bpScoreThresholds, bpScorePoints;
+    private final int[] cholScoreThresholds, cholScorePoints;
+    private final int notHealthyPoints;
+    private final int mediumTierScore, highTierScore;
+    private final String healthyDiagnosis, diabetesDiagnosis, heartKeyword;
+    private final int highBloodPressure, highCholesterol, diabetesAge, youngAge;
+    private final int[] ageGroupBounds;
+    private final int[] bloodPressureBands, cholesterolBands;
+    private final double minSupport, minConfidence;
+    private final int maxItems, maxRules;
+    private final int hypertensionBP, hypertensionOlderBP, hypertensionOlderAge;
+    private final int heartDiseaseCholesterol, heartDiseaseAge;
+    private final int preConditionBP, preConditionCholesterol;
+    private final int healthyAge, healthyBP, healthyCholesterol;
+
+    private final Bins ageBins, bpBins, cholBins, ageGroupBins;
+    private final int[] scores;
+    private final byte[] predictions;
+
+    private RiskRules(Properties properties, String source) {
+        this.source = source;
+        for (String key : properties.stringPropertyNames()) {
+            if (DEFAULTS.getProperty(key) == null) throw new IllegalArgumentException("Unknown rule " + key);
+        }
+
+        int[][] age = scoreSteps(properties, "score.age");
+        ageScoreThresholds = age[0];
+        ageScorePoints = age[1];
+        int[][] bp = scoreSteps(properties, "score.bloodPressure");
+        bpScoreThresholds = bp[0];
+        bpScorePoints = bp[1];
+        int[][] chol = scoreSteps(properties, "score.cholesterol");
+        cholScoreThresholds = chol[0];
+        cholScorePoints = chol[1];
+        notHealthyPoints = intValue(properties, "score.notHealthy");
+        mediumTierScore = intValue(properties, "tier.medium");
+        highTierScore = intValue(properties, "tier.high");
+        if (highTierScore < mediumTierScore) {
+            throw new IllegalArgumentException("tier.high must not be below tier.medium");
+        }
+
+        healthyDiagnosis = properties.getProperty("diagnosis.healthy").trim();
+        diabetesDiagnosis = properties.getProperty("diagnosis.diabetes").trim();
+        heartKeyword = properties.getProperty("diagnosis.heartKeyword").trim();
+        highBloodPressure = intValue(properties, "pattern.highBloodPressure");
+        highCholesterol = intValue(properties, "pattern.highCholesterol");
+        diabetesAge = intValue(properties, "pattern.diabetesAge");
+        youngAge = intValue(properties, "pattern.youngAge");
+        ageGroupBounds = ascending("pattern.ageGroups", intList(properties, "pattern.ageGroups"));
+        bloodPressureBands = ascending("mining.bloodPressureBands", intList(properties, "mining.bloodPressureBands"));
+        cholesterolBands = ascending("mining.cholesterolBands", intList(properties, "mining.cholesterolBands"));
+        minSupport = percentValue(properties, "mining.minSupport");
+        minConfidence = percentValue(properties, "mining.minConfidence");
+        maxItems = intValue(properties, "mining.maxItems");
+        maxRules = intValue(properties, "mining.maxRules");
+        if (maxItems < 2 || maxRules < 0) {
+            throw new IllegalArgumentException("mining.maxItems must be at least 2 and mining.maxRules not negative");
+        }
+
+        hypertensionBP = intValue(properties, "predict.hypertension.bloodPressure");
+        hypertensionOlderBP = intValue(properties, "predict.hypertension.olderBloodPressure");
+        hypertensionOlderAge = intValue(properties, "predict.hypertension.olderAge");
+        heartDiseaseCholesterol = intValue(properties, "predict.heartDisease.cholesterol");
+        heartDiseaseAge = intValue(properties, "predict.heartDisease.age");
+        preConditionBP = intValue(properties, "predict.preCondition.bloodPressure");
+        preConditionCholesterol = intValue(properties, "predict.preCondition.cholesterol");
+        healthyAge = intValue(properties, "predict.healthy.age");
+        healthyBP = intValue(properties, "predict.healthy.bloodPressure");
+        healthyCholesterol = intValue(properties, "predict.healthy.cholesterol");
+
+        // A "value > t" rule flips at t + 1 and a "value < t" rule flips at t.
+        TreeSet<Integer> ageBreaks = new TreeSet<>();
+        addExceeded(ageBreaks, ageScoreThresholds);
+        ageBreaks.add(hypertensionOlderAge + 1);
+        ageBreaks.add(heartDiseaseAge + 1);
+        ageBreaks.add(healthyAge);
+        TreeSet<Integer> bpBreaks = new TreeSet<>();
+        addExceeded(bpBreaks, bpScoreThresholds);
+        bpBreaks.add(hypertensionBP + 1);
+        bpBreaks.add(hypertensionOlderBP + 1);
+        bpBreaks.add(preConditionBP + 1);
+        bpBreaks.add(healthyBP);
+        TreeSet<Integer> cholBreaks = new TreeSet<>();
+        addExceeded(cholBreaks, cholScoreThresholds);
+        cholBreaks.add(heartDiseaseCholesterol + 1);
+        cholBreaks.add(preConditionCholesterol + 1);
+        cholBreaks.add(healthyCholesterol);
+        ageBins = new Bins(ageBreaks);
+        bpBins = new Bins(bpBreaks);
+        cholBins = new Bins(cholBreaks);
+        TreeSet<Integer> groupBreaks = new TreeSet<>();
+        for (int bound : ageGroupBounds) groupBreaks.add(bound);
+        ageGroupBins = new Bins(groupBreaks);
+
+        int cells = ageBins.count() * bpBins.count() * cholBins.count();
+        scores = new int[cells * 2];
+        predictions = new byte[cells];
+        for (int a = 0; a < ageBins.count(); a++) {
+            for (int b = 0; b < bpBins.count(); b++) {
+                for (int c = 0; c < cholBins.count(); c++) {
+                    int cell = (a * bpBins.count() + b) * cholBins.count() + c;
+                    int ageValue = ageBins.representative(a);
+                    int bpValue = bpBins.representative(b);
+                    int cholValue = cholBins.representative(c);
+                    for (int healthy = 0; healthy < 2; healthy++) {
+                        int score = evaluateScore(ageValue, bpValue, cholValue, healthy == 1);
+                        if (score < 0 || score > MAX_SCORE) {
+                            throw new IllegalArgumentException("Risk scores must stay between 0 and " + MAX_SCORE);
+                        }
+                        scores[cell * 2 + healthy] = score;
+                    }
+                    predictions[cell] = evaluatePrediction(ageValue, bpValue, cholValue).code();
+                }
+            }
+        }
+    }
+
+    public static RiskRules defaults() {
+        return DEFAULT_RULES;
+    }
+
+    public static RiskRules load(String filename) throws IOException {
+        Properties properties = new Properties(DEFAULTS);
+        try (Reader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return new RiskRules(properties, filename);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(filename + ": " + e.getMessage(), e);
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // Reference semantics for the compiled tables: points come from the highest threshold exceeded.
+    private int evaluateScore(int age, int bp, int cholesterol, boolean healthy) {
+        return points(ageScoreThresholds, ageScorePoints, age)
+                + points(bpScoreThresholds, bpScorePoints, bp)
+                + points(cholScoreThresholds, cholScorePoints, cholesterol)
+                + (healthy ? 0 : notHealthyPoints);
+    }
+
+    private static int points(int[] thresholds, int[] points, int value) {
+        for (int i = thresholds.length - 1; i >= 0; i--) {
+            if (value > thresholds[i]) return points[i];
+        }
+        return 0;
+    }
+
+    private DiseaseRisk evaluatePrediction(int age, int bp, int cholesterol) {
+        if (bp > hypertensionBP || (bp > hypertensionOlderBP && age > hypertensionOlderAge)) {
+            return DiseaseRisk.HYPERTENSION;
+        }
+        if (cholesterol > heartDiseaseCholesterol && age > heartDiseaseAge) return DiseaseRisk.HEART_DISEASE;
+        if (bp > preConditionBP || cholesterol > preConditionCholesterol) return DiseaseRisk.PRE_CONDITION;
+        if (age < healthyAge && bp < healthyBP && cholesterol < healthyCholesterol) return DiseaseRisk.HEALTHY;
+        return DiseaseRisk.NEEDS_MONITORING;
+    }
+
+    private int cell(int age, int bp, int cholesterol) {
+        return (ageBins.bin(age) * bpBins.count() + bpBins.bin(bp)) * cholBins.count() + cholBins.bin(cholesterol);
+    }
+
+    public int riskScore(int age, int bp, int cholesterol, boolean healthy) {
+        return scores[cell(age, bp, cholesterol) * 2 + (healthy ? 1 : 0)];
+    }
+
+    public RiskTier tierOf(int score) {
+        if (score >= highTierScore) return RiskTier.HIGH;
+        if (score >= mediumTierScore) return RiskTier.MEDIUM;
+        return RiskTier.LOW;
+    }
+
+    public DiseaseRisk predict(int age, int bp, int cholesterol) {
+        return DiseaseRisk.of(predictions[cell(age, bp, cholesterol)]);
+    }
+
+    // Writes DiseaseRisk codes for rows [from, to) to codes[offset...].
+    public void predict(int[] ages, int[] bloodPressures, int[] cholesterols, int from, int to,
+                        byte[] codes, int offset) {
+        for (int i = from; i < to; i++) {
+            codes[offset + i - from] = predictions[cell(ages[i], bloodPressures[i], cholesterols[i])];
+        }
+    }
+
+    public boolean isHighBloodPressure(int bp) { return bp > highBloodPressure; }
+    public boolean isHighCholesterol(int cholesterol) { return cholesterol > highCholesterol; }
+    public boolean isDiabetesAge(int age) { return age > diabetesAge; }
+    public boolean isYoung(int age) { return age < youngAge; }
+
+    public int getHighBloodPressure() { return highBloodPressure; }
+    public int getHighCholesterol() { return highCholesterol; }
+    public int getDiabetesAge() { return diabetesAge; }
+    public int getYoungAge() { return youngAge; }
+    public String getHealthyDiagnosis() { return healthyDiagnosis; }
+    public String getDiabetesDiagnosis() { return diabetesDiagnosis; }
+
+    public boolean isHeartRelated(String diagnosis) {
+        return diagnosis.contains(heartKeyword);
+    }
+
+    public int getAgeGroupCount() {
+        return ageGroupBounds.length + 1;
+    }
+
+    public int ageGroup(int age) {
+        return ageGroupBins.bin(age);
+    }
+
+    public String getAgeGroupLabel(int group) {
+        if (ageGroupBounds.length == 0) return "All ages";
+        return bandLabel(ageGroupBounds, group);
+    }
+
+    // Lower bounds of the age groups after the first, as in pattern.ageGroups.
+    public int[] getAgeGroupBounds() { return ageGroupBounds.clone(); }
+    public int[] getBloodPressureBands() { return bloodPressureBands.clone(); }
+    public int[] getCholesterolBands() { return cholesterolBands.clone(); }
+    public double getMinSupport() { return minSupport; }
+    public double getMinConfidence() { return minConfidence; }
+    public int getMaxItems() { return maxItems; }
+    public int getMaxRules() { return maxRules; }
+
+    // "Under 30", "30-44" or "60 and above" for band 0, 1 or 3 of the lower bounds 30, 45, 60.
+    public static String bandLabel(int[] bounds, int band) {
+        if (bounds.length == 0) return "any";
+        if (band == 0) return "Under " + bounds[0];
+        if (band == bounds.length) return bounds[band - 1] + " and above";
+        return bounds[band - 1] + "-" + (bounds[band] - 1);
+    }
+
+    private static void addExceeded(TreeSet<Integer> breaks, int[] thresholds) {
+        for (int threshold : thresholds) breaks.add(threshold + 1);
+    }
+
+    private static int intValue(Properties properties, String key) {
+        String value = properties.getProperty(key).trim();
+        try {
+            return checkRange(key, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + key + ": " + value);
+        }
+    }
+
+    private static double percentValue(Properties properties, String key) {
+        String value = properties.getProperty(key).trim();
+        double percent;
+        try {
+            percent = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + key + ": " + value);
+        }
+        if (!(percent > 0 && percent <= 100)) throw new IllegalArgumentException(key + " must be a percentage above 0");
+        return percent;
+    }
+
+    private static int checkRange(String key, int value) {
+        if (Math.abs(value) > MAX_THRESHOLD) throw new IllegalArgumentException(key + " is out of range: " + value);
+        return value;
+    }
+
+    private static int[] intList(Properties properties, String key) {
+        ArrayList<Integer> values = new ArrayList<>();
+        for (String item : properties.getProperty(key).split(",")) {
+            if (item.isBlank()) continue;
+            try {
+                values.add(checkRange(key, Integer.parseInt(item.trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + key + ": " + item.trim());
+            }
+        }
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Parses "threshold:points, threshold:points, ..." with strictly ascending thresholds.
+    private static int[][] scoreSteps(Properties properties, String key) {
+        ArrayList<int[]> steps = new ArrayList<>();
+        for (String item : properties.getProperty(key).split(",")) {
+            if (item.isBlank()) continue;
+            String[] parts = item.split(":");
+            if (parts.length != 2) throw new IllegalArgumentException("Expected threshold:points in " + key + ": " + item.trim());
+            try {
+                steps.add(new int[] {checkRange(key, Integer.parseInt(parts[0].trim())),
+                        checkRange(key, Integer.parseInt(parts[1].trim()))});
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in " + key + ": " + item.trim());
+            }
+        }
+        int[] thresholds = new int[steps.size()];
+        int[] points = new int[steps.size()];
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholds[i] = steps.get(i)[0];
+            points[i] = steps.get(i)[1];
+        }
+        return new int[][] {ascending(key, thresholds), points};
+    }
+
+    private static int[] ascending(String key, int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] <= values[i - 1]) throw new IllegalArgumentException(key + " must be strictly ascending");
+        }
+        return values;
+    }
+
+    // Maps a column value to the index of the interval between consecutive breakpoints it falls in.
+    // Values outside the breakpoints are clamped, since every value below the first (or from the
+    // last onwards) lands in the same bin.
+    private static final class Bins {
+        private final int low, high;
+        private final byte[] binOf;
+        private final int[] representatives;
+
+        Bins(TreeSet<Integer> breakpoints) {
+            if (breakpoints.size() > 127) throw new IllegalArgumentException("Too many distinct thresholds");
+            representatives = new int[breakpoints.size() + 1];
+            if (breakpoints.isEmpty()) {
+                low = high = 0;
+                binOf = new byte[1];
+                return;
+            }
+            low = breakpoints.first() - 1;
+            high = breakpoints.last();
+            if ((long) high - low + 1 > MAX_TABLE_SPAN) throw new IllegalArgumentException("Thresholds span too wide a range");
+            binOf = new byte[high - low + 1];
+            representatives[0] = low;
+            int bin = 0;
+            for (int value = low; value <= high; value++) {
+                if (breakpoints.contains(value)) {
+                    representatives[++bin] = value;
+                }
+                binOf[value - low] = (byte) bin;
+            }
+        }
+
+        int count() {
+            return representatives.length;
+        }
+
+        int representative(int bin) {
+            return representatives[bin];
+        }
+
+        int bin(int value) {
+            return binOf[Math.max(low, Math.min(high, value)) - low];
+        }
+    }
+}
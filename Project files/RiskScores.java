@@ -0,0 +1,73 @@
+import java.util.Arrays;
+
+// Each patient's risk score under one set of RiskRules, computed once when the row is ingested, plus
+// the rows of every tier in row order. Rows are only ever appended, so the tier lists stay valid until
+// the data is reloaded or the rules change, at which point the owner builds a new instance.
+public class RiskScores {
+    private final PatientStore store;
+    private final RiskRules rules;
+    private final IntList[] tierRows = new IntList[RiskTier.values().length];
+    private final boolean readOnly;
+    private byte[] scores = new byte[1024];
+    private int size;
+
+    public RiskScores(PatientStore store, RiskRules rules) {
+        this.store = store;
+        this.rules = rules;
+        for (int tier = 0; tier < tierRows.length; tier++) {
+            tierRows[tier] = new IntList();
+        }
+        readOnly = false;
+    }
+
+    private RiskScores(RiskScores source, PatientStore store) {
+        this.store = store;
+        rules = source.rules;
+        for (int tier = 0; tier < tierRows.length; tier++) {
+            tierRows[tier] = source.tierRows[tier].view();
+        }
+        scores = source.scores;
+        size = source.size;
+        readOnly = true;
+    }
+
+    // Read-only scores of the rows scored so far, sharing this instance's arrays like PatientStore.view().
+    public RiskScores view(PatientStore storeView) {
+        return new RiskScores(this, storeView);
+    }
+
+    // Scores the store's rows [size(), to); rows already scored are never revisited.
+    public void addRows(int to) {
+        if (readOnly) throw new UnsupportedOperationException("Read-only view of risk scores");
+        if (to > scores.length) {
+            scores = Arrays.copyOf(scores, Math.max(scores.length * 2, to));
+        }
+        int healthyCode = store.getDiagnoses().codeOf(rules.getHealthyDiagnosis());
+        for (int row = size; row < to; row++) {
+            int score = rules.riskScore(store.getAge(row), store.getBloodPressure(row),
+                    store.getCholesterol(row), store.getDiagnosisCode(row) == healthyCode);
+            scores[row] = (byte) score;
+            tierRows[rules.tierOf(score).ordinal()].add(row);
+        }
+        size = Math.max(size, to);
+    }
+
+    public int size() { return size; }
+    public RiskRules getRules() { return rules; }
+
+    public int getScore(int row) {
+        return scores[row] & 0xFF;
+    }
+
+    public RiskTier getTier(int row) {
+        return rules.tierOf(getScore(row));
+    }
+
+    public int getTierCount(RiskTier tier) {
+        return tierRows[tier.ordinal()].size();
+    }
+
+    IntList tierRows(RiskTier tier) {
+        return tierRows[tier.ordinal()];
+    }
+}
@@ -0,0 +1,5 @@
+public enum RiskTier {
+    LOW,
+    MEDIUM,
+    HIGH
+}
@@ -0,0 +1,41 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Append-only set of row numbers. Rows are only ever set past the row count of every view taken, so a
+// view shares the words instead of copying them and reads them up to its own row count: bits set later
+// in the word it shares with the writer are masked off, and growing replaces the array rather than
+// changing it.
+public class RowBitmap {
+    private long[] words;
+
+    public RowBitmap() {
+        words = new long[16];
+    }
+
+    private RowBitmap(long[] words) {
+        this.words = words;
+    }
+
+    // The rows set so far; only valid while the owner keeps setting rows past the view's row count.
+    RowBitmap view() {
+        return new RowBitmap(words);
+    }
+
+    public void set(int row) {
+        int word = row >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, word + 1));
+        }
+        words[word] |= 1L << row;
+    }
+
+    // A copy of the rows below rowCount, for a query to combine with others.
+    public BitSet toBitSet(int rowCount) {
+        int length = Math.min(words.length, (rowCount + 63) >>> 6);
+        long[] prefix = Arrays.copyOf(words, length);
+        if (length > 0 && (rowCount & 63) != 0 && length == (rowCount + 63) >>> 6) {
+            prefix[length - 1] &= -1L >>> -rowCount;
+        }
+        return BitSet.valueOf(prefix);
+    }
+}
@@ -0,0 +1,8 @@
+// Told about each input row a load skips instead of storing: the byte offset of its line in the source
+// file, rejected duplicates included, or -1 for rows that did not come from a CSV file, and why. During
+// a parallel load it is called from the worker threads, so implementations must be thread-safe.
+public interface RowErrorListener {
+    RowErrorListener NONE = (offset, reason) -> { };
+
+    void rowSkipped(long offset, String reason);
+}
@@ -0,0 +1,20 @@
+// Rows of one DatasetView found by a SimilarityIndex search, nearest first, with their distances
+// from the query in standard deviations.
+public class SimilarPatients {
+    private final int[] rows;
+    private final double[] distances;
+
+    SimilarPatients(int[] rows, double[] distances) {
+        this.rows = rows;
+        this.distances = distances;
+    }
+
+    public int size() { return rows.length; }
+    public boolean isEmpty() { return rows.length == 0; }
+    public int getRow(int index) { return rows[index]; }
+    public double getDistance(int index) { return distances[index]; }
+
+    public int[] getRows() {
+        return rows.clone();
+    }
+}
@@ -0,0 +1,436 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Nearest-neighbour and radius search over age, blood pressure and cholesterol, each divided by its
+// standard deviation so that one unit of distance means as much in every column. The rows are kept in
+// an implicit k-d tree: the median of each range along one column sits in the middle of the range,
+// smaller values before it and larger ones after, cycling through the columns level by level, so the
+// tree needs no nodes or pointers beyond the permuted coordinates themselves.
+public class SimilarityIndex {
+    private static final int DIMENSIONS = 3;
+    private static final int LEAF_SIZE = 16;
+    private static final int PARALLEL_SUBTREE = 1 << 16;
+    private static final int MIN_UNSORTED_TAIL = 4096;
+    private static final int COUNTING_SELECT_DOMAIN = 1 << 16;
+
+    private final PatientStore store;
+    // Age, blood pressure and cholesterol of each indexed row, in tree order, and the row they belong to
+    private int[] points = new int[0];
+    private int[] pointRows = new int[0];
+    private double[] weights = {1, 1, 1};
+    private int indexedRows;
+    private int rowCount;
+    // Running sums behind the weights, so that they cover every row and not only the indexed ones
+    private final double[] sums = new double[DIMENSIONS];
+    private final double[] squares = new double[DIMENSIONS];
+    private int summedRows;
+
+    public SimilarityIndex(PatientStore store) {
+        this.store = store;
+    }
+
+    private SimilarityIndex(SimilarityIndex source, PatientStore store) {
+        this.store = store;
+        points = source.points;
+        pointRows = source.pointRows;
+        weights = source.weights;
+        indexedRows = source.indexedRows;
+        rowCount = store.size();
+    }
+
+    // An index over the rows of a store view. Rebuilding replaces the tree arrays rather than changing
+    // them, so the view shares them.
+    public SimilarityIndex view(PatientStore storeView) {
+        return new SimilarityIndex(this, storeView);
+    }
+
+    // Rows appended since the last rebuild are scanned directly until there are enough of them to be
+    // worth rebuilding for, as in PatientIndex. The pool, if any, builds large subtrees in parallel.
+    public void addRows(int rowCount, ForkJoinPool pool) {
+        this.rowCount = rowCount;
+        updateWeights();
+        if (rowCount - indexedRows > Math.max(MIN_UNSORTED_TAIL, indexedRows / 8)) {
+            rebuild(pool);
+        }
+    }
+
+    // Scaling a column changes no comparison along it, so the tree stays valid as the weights move and
+    // the points are kept unscaled.
+    private void updateWeights() {
+        int[][] columns = {store.ages(), store.bloodPressures(), store.cholesterols()};
+        double[] newWeights = new double[DIMENSIONS];
+        for (int dimension = 0; dimension < DIMENSIONS; dimension++) {
+            int[] column = columns[dimension];
+            double sum = sums[dimension], squareSum = squares[dimension];
+            for (int row = summedRows; row < rowCount; row++) {
+                sum += column[row];
+                squareSum += (double) column[row] * column[row];
+            }
+            sums[dimension] = sum;
+            squares[dimension] = squareSum;
+            double mean = sum / rowCount;
+            double deviation = Math.sqrt(Math.max(0, squareSum / rowCount - mean * mean));
+            newWeights[dimension] = deviation > 0 ? 1 / deviation : 1;
+        }
+        summedRows = rowCount;
+        weights = newWeights;
+    }
+
+    private void rebuild(ForkJoinPool pool) {
+        int count = rowCount;
+        int[][] columns = {store.ages(), store.bloodPressures(), store.cholesterols()};
+        int[] mins = new int[DIMENSIONS];
+        int[] domains = new int[DIMENSIONS];
+        int[] newPoints = new int[count * DIMENSIONS];
+        int[] newRows = new int[count];
+        for (int dimension = 0; dimension < DIMENSIONS; dimension++) {
+            int[] column = columns[dimension];
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for (int row = 0; row < count; row++) {
+                min = Math.min(min, column[row]);
+                max = Math.max(max, column[row]);
+                newPoints[row * DIMENSIONS + dimension] = column[row];
+            }
+            mins[dimension] = min;
+            domains[dimension] = (long) max - min < COUNTING_SELECT_DOMAIN ? max - min + 1 : 0;
+        }
+        for (int row = 0; row < count; row++) {
+            newRows[row] = row;
+        }
+        TreeBuilder builder = new TreeBuilder(newPoints, newRows, mins, domains, 0, count, 0);
+        if (pool == null) {
+            builder.compute();
+        } else {
+            pool.invoke(builder);
+        }
+        points = newPoints;
+        pointRows = newRows;
+        indexedRows = count;
+    }
+
+    private static class TreeBuilder extends RecursiveAction {
+        private final int[] points;
+        private final int[] rows;
+        private final int[] mins, domains;
+        private final int from, to, depth;
+
+        TreeBuilder(int[] points, int[] rows, int[] mins, int[] domains, int from, int to, int depth) {
+            this.points = points;
+            this.rows = rows;
+            this.mins = mins;
+            this.domains = domains;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            int from = this.from, to = this.to, depth = this.depth;
+            // Recursing into the left half and looping on the right keeps the stack shallow
+            while (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                int dimension = depth % DIMENSIONS;
+                // Clinical values span a few hundred at most, so large ranges are cheaper to count than to sort
+                if (domains[dimension] > 0 && to - from >= 4 * domains[dimension]) {
+                    countingSelect(points, rows, from, to, middle, dimension, mins[dimension], domains[dimension]);
+                } else {
+                    select(points, rows, from, to, middle, dimension);
+                }
+                if (to - from > PARALLEL_SUBTREE && getPool() != null) {
+                    invokeAll(new TreeBuilder(points, rows, mins, domains, from, middle, depth + 1),
+                            new TreeBuilder(points, rows, mins, domains, middle + 1, to, depth + 1));
+                    return;
+                }
+                new TreeBuilder(points, rows, mins, domains, from, middle, depth + 1).compute();
+                from = middle + 1;
+                depth++;
+            }
+        }
+    }
+
+    // Rearranges [from, to) so that position k holds the value that sorting on the dimension would put
+    // there, with nothing larger before it and nothing smaller after it.
+    private static void select(int[] points, int[] rows, int from, int to, int k, int dimension) {
+        int low = from, high = to - 1;
+        while (high > low) {
+            int middle = (low + high) >>> 1;
+            // Median of three as the pivot, moved to low
+            if (value(points, middle, dimension) < value(points, low, dimension)) swap(points, rows, middle, low);
+            if (value(points, high, dimension) < value(points, low, dimension)) swap(points, rows, high, low);
+            if (value(points, high, dimension) < value(points, middle, dimension)) swap(points, rows, high, middle);
+            swap(points, rows, low, middle);
+            int pivot = value(points, low, dimension);
+            int i = low, j = high + 1;
+            // Hoare partition: stopping on equal values keeps runs of duplicates from degrading it
+            while (true) {
+                do i++; while (i <= high && value(points, i, dimension) < pivot);
+                do j--; while (value(points, j, dimension) > pivot);
+                if (i >= j) break;
+                swap(points, rows, i, j);
+            }
+            swap(points, rows, low, j);
+            if (j == k) return;
+            if (j < k) {
+                low = j + 1;
+            } else {
+                high = j - 1;
+            }
+        }
+    }
+
+    // Same result as select, found by counting the values in the range and then splitting it three ways
+    // around the one at position k.
+    private static void countingSelect(int[] points, int[] rows, int from, int to, int k, int dimension,
+                                       int min, int domain) {
+        int[] counts = new int[domain];
+        for (int i = from; i < to; i++) {
+            counts[value(points, i, dimension) - min]++;
+        }
+        int rank = k - from;
+        int pivot = 0;
+        while (rank >= counts[pivot]) {
+            rank -= counts[pivot++];
+        }
+        pivot += min;
+        int less = from, i = from, greater = to - 1;
+        while (i <= greater) {
+            int value = value(points, i, dimension);
+            if (value < pivot) {
+                swap(points, rows, less++, i++);
+            } else if (value > pivot) {
+                swap(points, rows, i, greater--);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static int value(int[] points, int index, int dimension) {
+        return points[index * DIMENSIONS + dimension];
+    }
+
+    private static void swap(int[] points, int[] rows, int a, int b) {
+        int base = a * DIMENSIONS, other = b * DIMENSIONS;
+        for (int dimension = 0; dimension < DIMENSIONS; dimension++) {
+            int value = points[base + dimension];
+            points[base + dimension] = points[other + dimension];
+            points[other + dimension] = value;
+        }
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    // The k rows closest to the given values, nearest first; ties go to the earlier row.
+    public SimilarPatients nearest(int age, int bp, int cholesterol, int k) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+        NearestSearch search = new NearestSearch(age, bp, cholesterol, Math.min(k, rowCount));
+        if (search.capacity > 0) {
+            search.tree(0, indexedRows, 0);
+            for (int row = indexedRows; row < rowCount; row++) {
+                search.offer(row, search.distance(store.getAge(row), store.getBloodPressure(row),
+                        store.getCholesterol(row)));
+            }
+        }
+        return search.result();
+    }
+
+    // Every row within the given distance of the values, nearest first.
+    public SimilarPatients within(int age, int bp, int cholesterol, double radius) {
+        if (!(radius >= 0)) throw new IllegalArgumentException("radius must not be negative: " + radius);
+        RadiusSearch search = new RadiusSearch(age, bp, cholesterol, radius);
+        search.tree(0, indexedRows, 0);
+        for (int row = indexedRows; row < rowCount; row++) {
+            search.offer(row, search.distance(store.getAge(row), store.getBloodPressure(row),
+                    store.getCholesterol(row)));
+        }
+        return search.result();
+    }
+
+    // Walks the tree nearest side first, skipping a far side whose splitting plane is already further
+    // away than bound(). Distances are compared squared.
+    private abstract class Search {
+        private final double[] query;
+
+        Search(int age, int bp, int cholesterol) {
+            query = new double[] {age * weights[0], bp * weights[1], cholesterol * weights[2]};
+        }
+
+        abstract double bound();
+
+        abstract void offer(int row, double squaredDistance);
+
+        double distance(int age, int bp, int cholesterol) {
+            double a = age * weights[0] - query[0];
+            double b = bp * weights[1] - query[1];
+            double c = cholesterol * weights[2] - query[2];
+            return a * a + b * b + c * c;
+        }
+
+        private void offerPoint(int index) {
+            int base = index * DIMENSIONS;
+            offer(pointRows[index], distance(points[base], points[base + 1], points[base + 2]));
+        }
+
+        void tree(int from, int to, int depth) {
+            if (to - from <= LEAF_SIZE) {
+                for (int index = from; index < to; index++) {
+                    offerPoint(index);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            int dimension = depth % DIMENSIONS;
+            double offset = query[dimension] - points[middle * DIMENSIONS + dimension] * weights[dimension];
+            offerPoint(middle);
+            if (offset < 0) {
+                tree(from, middle, depth + 1);
+                if (offset * offset <= bound()) tree(middle + 1, to, depth + 1);
+            } else {
+                tree(middle + 1, to, depth + 1);
+                if (offset * offset <= bound()) tree(from, middle, depth + 1);
+            }
+        }
+    }
+
+    // The best rows so far in a max-heap on (distance, row), so the worst of them is at the top.
+    private class NearestSearch extends Search {
+        final int capacity;
+        private final int[] rows;
+        private final double[] distances;
+        private int size;
+
+        NearestSearch(int age, int bp, int cholesterol, int capacity) {
+            super(age, bp, cholesterol);
+            this.capacity = capacity;
+            rows = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        @Override
+        double bound() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        @Override
+        void offer(int row, double squaredDistance) {
+            if (size < capacity) {
+                int child = size++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (!worse(squaredDistance, row, distances[parent], rows[parent])) break;
+                    rows[child] = rows[parent];
+                    distances[child] = distances[parent];
+                    child = parent;
+                }
+                rows[child] = row;
+                distances[child] = squaredDistance;
+            } else if (worse(distances[0], rows[0], squaredDistance, row)) {
+                rows[0] = row;
+                distances[0] = squaredDistance;
+                siftDown();
+            }
+        }
+
+        private boolean worse(double distance, int row, double otherDistance, int otherRow) {
+            return distance > otherDistance || (distance == otherDistance && row > otherRow);
+        }
+
+        // Empties the heap from the worst down, filling the result from the back.
+        SimilarPatients result() {
+            int[] sortedRows = new int[size];
+            double[] sortedDistances = new double[size];
+            while (size > 0) {
+                int last = size - 1;
+                sortedRows[last] = rows[0];
+                sortedDistances[last] = Math.sqrt(distances[0]);
+                rows[0] = rows[last];
+                distances[0] = distances[last];
+                size = last;
+                siftDown();
+            }
+            return new SimilarPatients(sortedRows, sortedDistances);
+        }
+
+        private void siftDown() {
+            if (size == 0) return;
+            int row = rows[0];
+            double distance = distances[0];
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) break;
+                if (child + 1 < size && worse(distances[child + 1], rows[child + 1], distances[child], rows[child])) {
+                    child++;
+                }
+                if (!worse(distances[child], rows[child], distance, row)) break;
+                rows[parent] = rows[child];
+                distances[parent] = distances[child];
+                parent = child;
+            }
+            rows[parent] = row;
+            distances[parent] = distance;
+        }
+    }
+
+    private class RadiusSearch extends Search {
+        private final double squaredRadius;
+        private final IntList rows = new IntList();
+
+        RadiusSearch(int age, int bp, int cholesterol, double radius) {
+            super(age, bp, cholesterol);
+            squaredRadius = radius * radius;
+        }
+
+        @Override
+        double bound() {
+            return squaredRadius;
+        }
+
+        @Override
+        void offer(int row, double squaredDistance) {
+            if (squaredDistance <= squaredRadius) rows.add(row);
+        }
+
+        // Sorted on the distance as a float in the high half of a long and the row in the low half, which
+        // orders by distance and then row without boxing. Distances that only differ beyond float
+        // precision are then put in order by insertion sort, in the short runs they share a float.
+        SimilarPatients result() {
+            int count = rows.size();
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                int row = rows.get(i);
+                keys[i] = (long) Float.floatToIntBits((float) distanceOf(row)) << 32 | row;
+            }
+            Arrays.sort(keys);
+            int[] sortedRows = new int[count];
+            double[] distances = new double[count];
+            for (int i = 0; i < count; i++) {
+                int row = (int) keys[i];
+                double distance = distanceOf(row);
+                int j = i;
+                for (; j > 0 && (keys[j - 1] >>> 32) == (keys[i] >>> 32)
+                        && (distances[j - 1] > distance || (distances[j - 1] == distance && sortedRows[j - 1] > row)); j--) {
+                    sortedRows[j] = sortedRows[j - 1];
+                    distances[j] = distances[j - 1];
+                }
+                sortedRows[j] = row;
+                distances[j] = distance;
+            }
+            for (int i = 0; i < count; i++) {
+                distances[i] = Math.sqrt(distances[i]);
+            }
+            return new SimilarPatients(sortedRows, distances);
+        }
+
+        private double distanceOf(int row) {
+            return distance(store.getAge(row), store.getBloodPressure(row), store.getCholesterol(row));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class SortedColumnIndex {
+    private static final int COUNTING_SORT_DOMAIN = 1 << 16;
+
+    private int[] sortedValues = new int[0];
+    private int[] sortedRows = new int[0];
+    private int indexedRows;
+
+    public SortedColumnIndex() {
+    }
+
+    // rebuild() always allocates new arrays, so a copy can share the current ones.
+    SortedColumnIndex(SortedColumnIndex source) {
+        sortedValues = source.sortedValues;
+        sortedRows = source.sortedRows;
+        indexedRows = source.indexedRows;
+    }
+
+    public void rebuild(int[] column, int count) {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int row = 0; row < count; row++) {
+            min = Math.min(min, column[row]);
+            max = Math.max(max, column[row]);
+        }
+        sortedValues = new int[count];
+        sortedRows = new int[count];
+        if (count > 0 && (long) max - min < COUNTING_SORT_DOMAIN) {
+            countingSort(column, count, min, max - min + 1);
+        } else {
+            packedSort(column, count);
+        }
+        indexedRows = count;
+    }
+
+    private void countingSort(int[] column, int count, int min, int domain) {
+        int[] positions = new int[domain + 1];
+        for (int row = 0; row < count; row++) {
+            positions[column[row] - min + 1]++;
+        }
+        for (int value = 1; value <= domain; value++) {
+            positions[value] += positions[value - 1];
+        }
+        for (int row = 0; row < count; row++) {
+            int slot = positions[column[row] - min]++;
+            sortedValues[slot] = column[row];
+            sortedRows[slot] = row;
+        }
+    }
+
+    private void packedSort(int[] column, int count) {
+        long[] packed = new long[count];
+        for (int row = 0; row < count; row++) {
+            packed[row] = ((long) column[row] << 32) | row;
+        }
+        Arrays.parallelSort(packed);
+        for (int i = 0; i < count; i++) {
+            sortedValues[i] = (int) (packed[i] >> 32);
+            sortedRows[i] = (int) packed[i];
+        }
+    }
+
+    public int getIndexedRows() {
+        return indexedRows;
+    }
+
+    public void collect(int low, int high, BitSet into) {
+        for (int i = lowerBound(low), end = lowerBound((long) high + 1); i < end; i++) {
+            into.set(sortedRows[i]);
+        }
+    }
+
+    public int count(int low, int high) {
+        return Math.max(0, lowerBound((long) high + 1) - lowerBound(low));
+    }
+
+    private int lowerBound(long value) {
+        int low = 0, high = indexedRows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] < value) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,144 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class StringPool {
+    private byte[] heap;
+    private int heapSize;
+    private int[] offsets;
+    private int count;
+
+    public StringPool() {
+        heap = new byte[4096];
+        offsets = new int[257];
+    }
+
+    private StringPool(StringPool source) {
+        heap = source.heap;
+        heapSize = source.heapSize;
+        offsets = source.offsets;
+        count = source.count;
+    }
+
+    public int add(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return add(bytes, 0, bytes.length);
+    }
+
+    public int add(byte[] source, int start, int length) {
+        ensureHeap(length);
+        System.arraycopy(source, start, heap, heapSize, length);
+        return commit(length);
+    }
+
+    public int add(ByteBuffer source, int start, int length) {
+        ensureHeap(length);
+        source.get(start, heap, heapSize, length);
+        return commit(length);
+    }
+
+    public int add(StringPool other, int index) {
+        int start = other.offsets[index];
+        return add(other.heap, start, other.offsets[index + 1] - start);
+    }
+
+    public void addAll(StringPool other) {
+        if (heapSize + other.heapSize > heap.length) {
+            heap = Arrays.copyOf(heap, Math.max(heap.length * 2, heapSize + other.heapSize));
+        }
+        if (count + other.count + 1 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, count + other.count + 1));
+        }
+        System.arraycopy(other.heap, 0, heap, heapSize, other.heapSize);
+        for (int i = 1; i <= other.count; i++) {
+            offsets[count + i] = heapSize + other.offsets[i];
+        }
+        heapSize += other.heapSize;
+        count += other.count;
+    }
+
+    private void ensureHeap(int length) {
+        if (heapSize + length > heap.length) {
+            heap = Arrays.copyOf(heap, Math.max(heap.length * 2, heapSize + length));
+        }
+        if (count + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+    }
+
+    private int commit(int length) {
+        heapSize += length;
+        offsets[++count] = heapSize;
+        return count - 1;
+    }
+
+    // Drops the entries in removed from index from onwards, moving the later ones down. Views only read
+    // their own entries, so this is safe while from is at least the size of every view taken.
+    void removeEntries(int from, BitSet removed) {
+        int target = from;
+        int start = offsets[from];
+        int heapEnd = start;
+        for (int index = from; index < count; index++) {
+            int end = offsets[index + 1];
+            if (!removed.get(index)) {
+                System.arraycopy(heap, start, heap, heapEnd, end - start);
+                heapEnd += end - start;
+                offsets[++target] = heapEnd;
+            }
+            start = end;
+        }
+        count = target;
+        heapSize = heapEnd;
+    }
+
+    // Adopts a heap and offset table produced by heap()/offsets(), e.g. from a binary snapshot.
+    void restore(byte[] heap, int[] offsets, int count) {
+        this.heap = heap;
+        this.offsets = offsets;
+        this.count = count;
+        heapSize = offsets[count];
+    }
+
+    // Shares the current entries with this pool. Later adds only write past them or into fresh arrays,
+    // so the view stays valid while this pool keeps growing; the view itself must not be added to.
+    StringPool view() {
+        return new StringPool(this);
+    }
+
+    byte[] heap() { return heap; }
+    int[] offsets() { return offsets; }
+
+    public String get(int index) {
+        int start = offsets[index];
+        return new String(heap, start, offsets[index + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    // Compares two entries by their UTF-8 bytes, which orders them by code point without decoding.
+    public int compare(int first, int second) {
+        int a = offsets[first], aEnd = offsets[first + 1];
+        int b = offsets[second], bEnd = offsets[second + 1];
+        for (; a < aEnd && b < bEnd; a++, b++) {
+            int difference = (heap[a] & 0xFF) - (heap[b] & 0xFF);
+            if (difference != 0) return difference;
+        }
+        return (aEnd - a) - (bEnd - b);
+    }
+
+    // A 64-bit FNV-1a hash of an entry's bytes, mixed so every bit depends on all of them.
+    public long hash(int index) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+            hash = (hash ^ (heap[i] & 0xFF)) * 0x100000001b3L;
+        }
+        return HyperLogLog.mix(hash);
+    }
+
+    public int size() { return count; }
+    public long heapBytes() { return heapSize; }
+
+    public void clear() {
+        heapSize = 0;
+        count = 0;
+    }
+}
@@ -0,0 +1,16 @@
+import java.util.concurrent.CancellationException;
+
+public interface TaskMonitor {
+    TaskMonitor NONE = new TaskMonitor() {
+        public void progress(String phase, long done, long total) { }
+        public boolean isCancelled() { return false; }
+    };
+
+    void progress(String phase, long done, long total);
+
+    boolean isCancelled();
+
+    default void checkCancelled() {
+        if (isCancelled()) throw new CancellationException();
+    }
+}
@@ -0,0 +1,116 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class ValueDictionary {
+    private final int maxCodes;
+    private final ArrayList<String> values;
+    private final HashMap<String, Integer> codes;
+    private final ArrayList<byte[]> encodedValues;
+    private int[] byteTable;
+
+    public ValueDictionary(int maxCodes) {
+        this.maxCodes = maxCodes;
+        values = new ArrayList<>();
+        codes = new HashMap<>();
+        encodedValues = new ArrayList<>();
+        byteTable = new int[16];
+    }
+
+    private ValueDictionary(ValueDictionary source) {
+        maxCodes = source.maxCodes;
+        values = new ArrayList<>(source.values);
+        codes = new HashMap<>(source.codes);
+        encodedValues = new ArrayList<>(source.encodedValues);
+        byteTable = source.byteTable.clone();
+    }
+
+    // Dictionaries stay small, so an independent copy is cheaper than making this one thread-safe.
+    ValueDictionary copy() {
+        return new ValueDictionary(this);
+    }
+
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            if (values.size() >= maxCodes) {
+                throw new IllegalStateException("Too many distinct values (limit " + maxCodes + ")");
+            }
+            code = values.size();
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            values.add(value);
+            codes.put(value, code);
+            encodedValues.add(bytes);
+            if (encodedValues.size() * 2 > byteTable.length) {
+                rehash(byteTable.length * 2);
+            }
+            insertBytes(bytes, code);
+        }
+        return code;
+    }
+
+    public int encode(ByteBuffer source, int start, int length) {
+        int mask = byteTable.length - 1;
+        for (int slot = hash(source, start, length) & mask; byteTable[slot] != 0; slot = (slot + 1) & mask) {
+            int code = byteTable[slot] - 1;
+            if (matches(encodedValues.get(code), source, start, length)) {
+                return code;
+            }
+        }
+        byte[] bytes = new byte[length];
+        source.get(start, bytes, 0, length);
+        return encode(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private void insertBytes(byte[] bytes, int code) {
+        int mask = byteTable.length - 1;
+        int slot = hash(ByteBuffer.wrap(bytes), 0, bytes.length) & mask;
+        while (byteTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        byteTable[slot] = code + 1;
+    }
+
+    private void rehash(int capacity) {
+        byteTable = new int[capacity];
+        for (int code = 0; code < encodedValues.size(); code++) {
+            insertBytes(encodedValues.get(code), code);
+        }
+    }
+
+    private static int hash(ByteBuffer source, int start, int length) {
+        int h = 1;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + source.get(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(byte[] value, ByteBuffer source, int start, int length) {
+        if (value.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (value[i] != source.get(start + i)) return false;
+        }
+        return true;
+    }
+
+    public int codeOf(String value) {
+        return codes.getOrDefault(value, -1);
+    }
+
+    public String valueOf(int code) {
+        return values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public void clear() {
+        values.clear();
+        codes.clear();
+        encodedValues.clear();
+        byteTable = new int[16];
+    }
+}
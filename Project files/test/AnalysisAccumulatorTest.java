@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisAccumulatorTest {
+    private static final String[] BLOOD_GROUPS = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+    private static final String[] DIAGNOSES = {"Healthy", "Hypertension", "Diabetes", "Heart Disease"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void cubeTiersMatchRiskScoresBeforeAndAfterARulesChange() throws IOException {
+        MedicalDataMiner miner = new MedicalDataMiner();
+        assertTrue(miner.loadDataFromFile("patient_data.csv"));
+        int[] before = assertCubeMatchesTierCounts(miner.getView());
+
+        Path rules = directory.resolve("risk-rules.properties");
+        Files.writeString(rules, "tier.medium = 2\ntier.high = 5\n");
+        miner.setRiskRules(RiskRules.load(rules.toString()), TaskMonitor.NONE);
+        int[] after = assertCubeMatchesTierCounts(miner.getView());
+        assertNotEquals(before[RiskTier.HIGH.ordinal()], after[RiskTier.HIGH.ordinal()]);
+    }
+
+    @Test
+    void parallelRangesGiveTheSameSnapshotAsOnePass() {
+        Random random = new Random(23);
+        PatientStore store = new PatientStore();
+        RiskScores scores = new RiskScores(store, RiskRules.defaults());
+        AnalysisAccumulator sequential = new AnalysisAccumulator(store, scores);
+        AnalysisAccumulator parallel = new AnalysisAccumulator(store, scores);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Both batches are over the parallel threshold, and the second brings a diagnosis the first
+            // did not have
+            for (int batch : new int[] {150_000, 120_001}) {
+                int from = store.size();
+                for (int i = 0; i < batch; i++) {
+                    String diagnosis = from > 0 && random.nextInt(50) == 0 ? "Heart Failure"
+                            : DIAGNOSES[random.nextInt(DIAGNOSES.length)];
+                    store.add(from + i, "Patient " + random.nextInt(100_000), 18 + random.nextInt(70),
+                            90 + random.nextInt(100), 120 + random.nextInt(200),
+                            BLOOD_GROUPS[random.nextInt(BLOOD_GROUPS.length)], diagnosis);
+                }
+                scores.addRows(store.size());
+                sequential.addRows(from, store.size(), TaskMonitor.NONE);
+                parallel.addRows(from, store.size(), pool);
+                assertSnapshotsEqual(sequential.snapshot(scores), parallel.snapshot(scores));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertSnapshotsEqual(AnalysisSnapshot expected, AnalysisSnapshot actual) {
+        assertEquals(expected.getPatientCount(), actual.getPatientCount());
+        for (RiskTier tier : RiskTier.values()) {
+            assertArrayEquals(expected.getTierRows(tier), actual.getTierRows(tier), tier.name());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected.getHighRiskRow(i), actual.getHighRiskRow(i));
+        }
+        assertEquals(expected.getHighBPHighChol(), actual.getHighBPHighChol());
+        assertEquals(expected.getHighBPWithHeart(), actual.getHighBPWithHeart());
+        assertEquals(expected.getDiabetesOver50(), actual.getDiabetesOver50());
+        assertEquals(expected.getHealthyUnder30(), actual.getHealthyUnder30());
+        for (int group = 0; group < expected.getAgeGroupCount(); group++) {
+            assertEquals(expected.getAgeGroup(group), actual.getAgeGroup(group));
+        }
+        assertEquals(expected.getDiagnosisCount(), actual.getDiagnosisCount());
+        for (int code = 0; code < expected.getDiagnosisCount(); code++) {
+            assertEquals(expected.getDiagnosisFrequency(code), actual.getDiagnosisFrequency(code));
+        }
+        for (int code = 0; code < expected.getBloodGroupCount(); code++) {
+            assertEquals(expected.getBloodGroupFrequency(code), actual.getBloodGroupFrequency(code));
+        }
+
+        ColumnStatistics[] expectedColumns = {expected.getAge(), expected.getBloodPressure(), expected.getCholesterol()};
+        ColumnStatistics[] actualColumns = {actual.getAge(), actual.getBloodPressure(), actual.getCholesterol()};
+        for (int column = 0; column < expectedColumns.length; column++) {
+            ColumnStatistics e = expectedColumns[column], a = actualColumns[column];
+            assertEquals(e.getCount(), a.getCount());
+            assertEquals(e.getSum(), a.getSum());
+            assertEquals(e.getMin(), a.getMin());
+            assertEquals(e.getMax(), a.getMax());
+            // Merged in a different order, so only equal up to rounding
+            assertEquals(e.getMean(), a.getMean(), 1e-9);
+            assertEquals(e.getStandardDeviation(), a.getStandardDeviation(), 1e-9);
+            for (double fraction = 0.05; fraction < 1; fraction += 0.05) {
+                assertEquals(e.getQuantile(fraction), a.getQuantile(fraction));
+            }
+        }
+        assertEquals(expected.getStatistics().getDistinctIds(), actual.getStatistics().getDistinctIds());
+        assertEquals(expected.getStatistics().getDistinctNames(), actual.getStatistics().getDistinctNames());
+
+        CubeDimension[] dimensions = CubeDimension.values();
+        for (CubeDimension rows : dimensions) {
+            for (CubeDimension columns : dimensions) {
+                if (rows == columns) continue;
+                CubeAggregate[][] expectedCells = expected.getCube().pivot(rows, columns, AggregationCube.allMembers());
+                CubeAggregate[][] actualCells = actual.getCube().pivot(rows, columns, AggregationCube.allMembers());
+                assertEquals(expectedCells.length, actualCells.length);
+                for (int row = 0; row < expectedCells.length; row++) {
+                    assertEquals(expectedCells[row].length, actualCells[row].length);
+                    for (int column = 0; column < expectedCells[row].length; column++) {
+                        assertAggregatesEqual(expectedCells[row][column], actualCells[row][column]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertAggregatesEqual(CubeAggregate expected, CubeAggregate actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        for (int measure : new int[] {AggregationCube.AGE, AggregationCube.BLOOD_PRESSURE, AggregationCube.CHOLESTEROL}) {
+            assertEquals(expected.getSum(measure), actual.getSum(measure));
+            assertEquals(expected.getMin(measure), actual.getMin(measure));
+            assertEquals(expected.getMax(measure), actual.getMax(measure));
+        }
+    }
+
+    private static int[] assertCubeMatchesTierCounts(DatasetView view) {
+        CubeAggregate[] tiers = view.getCube().rollUp(CubeDimension.RISK_TIER, AggregationCube.allMembers());
+        int[] counts = new int[RiskTier.values().length];
+        for (RiskTier tier : RiskTier.values()) {
+            counts[tier.ordinal()] = view.getAnalysis().getTierCount(tier);
+            assertEquals(counts[tier.ordinal()], tiers[tier.ordinal()].getCount(), tier.name());
+        }
+        return counts;
+    }
+}
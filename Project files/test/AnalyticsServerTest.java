@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalyticsServerTest {
+    @TempDir
+    Path directory;
+
+    private AnalyticsServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    void reloadPublishesNewDataAndRulesInTheSameMiner() throws Exception {
+        Path data = directory.resolve("patients.csv");
+        Path rules = directory.resolve("risk-rules.properties");
+        List<String> lines = Files.readAllLines(Path.of("patient_data.csv"));
+        Files.write(data, lines.subList(0, 11));
+        Files.writeString(rules, "tier.high = 7\n");
+        server = new AnalyticsServer("127.0.0.1", 0, data.toString(), rules.toString());
+        server.start();
+        MedicalDataMiner miner = server.getMiner();
+        assertEquals(10, miner.getView().getStore().size());
+
+        Files.write(data, lines);
+        Files.writeString(rules, "tier.high = 5\n");
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/api/reload"))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"patients\": " + (lines.size() - 1)), response.body());
+        assertSame(miner, server.getMiner());
+        assertEquals(lines.size() - 1, miner.getView().getStore().size());
+        assertEquals(rules.toString(), miner.getView().getRiskRules().getSource());
+    }
+
+    @Test
+    void failedReloadKeepsThePreviousData() throws Exception {
+        Path data = directory.resolve("patients.csv");
+        Files.copy(Path.of("patient_data.csv"), data);
+        server = new AnalyticsServer("127.0.0.1", 0, data.toString(), null);
+        DatasetView before = server.getMiner().getView();
+
+        Files.delete(data);
+        assertThrows(IOException.class, server::reload);
+        assertSame(before, server.getMiner().getView());
+
+        // The writer state was restored too, so later writes build on the previous data
+        server.getMiner().addPatients(List.of(new Patient(99999, "New Patient", 40, 120, 180, "O+", "Healthy")));
+        assertEquals(before.getStore().size() + 1, server.getMiner().getView().getStore().size());
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks mined rules against a scan of every row, and that views mined from the supports cached by
+// earlier views find the same rules as mining from scratch.
+class AssociationMinerTest {
+    private static final String[] BLOOD_GROUPS = {"A+", "A-", "B+", "O+", "O-"};
+    private static final String[] DIAGNOSES = {"Healthy", "Hypertension", "Diabetes", "Heart Disease"};
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(5);
+
+    @Test
+    void rulesMatchAScanAcrossAppends() throws IOException {
+        Path rulesFile = directory.resolve("risk-rules.properties");
+        // Low enough thresholds that the rare diagnosis and blood group are items, held as row lists
+        Files.writeString(rulesFile, "mining.minSupport = 0.5\nmining.minConfidence = 30\n"
+                + "mining.maxItems = 4\nmining.maxRules = 100000\n");
+        MedicalDataMiner miner = new MedicalDataMiner();
+        miner.setRiskRules(RiskRules.load(rulesFile.toString()), TaskMonitor.NONE);
+        List<DatasetView> unmined = new ArrayList<>();
+        for (int batch : new int[] {3000, 1, 70, 2500, 9}) {
+            addPatients(miner, batch);
+            DatasetView view = miner.getView();
+            if (batch == 70) {
+                // Mined only after later views have moved the cache past its rows
+                unmined.add(view);
+                continue;
+            }
+            assertMatchesScan(view);
+        }
+        for (DatasetView view : unmined) {
+            assertMatchesScan(view);
+        }
+    }
+
+    private void addPatients(MedicalDataMiner miner, int count) {
+        List<Patient> patients = new ArrayList<>();
+        int first = miner.getView().size();
+        for (int i = 0; i < count; i++) {
+            String diagnosis = random.nextInt(60) == 0 ? "Rare" : DIAGNOSES[random.nextInt(DIAGNOSES.length)];
+            String bloodGroup = random.nextInt(50) == 0 ? "AB-" : BLOOD_GROUPS[random.nextInt(BLOOD_GROUPS.length)];
+            int age = 20 + random.nextInt(70);
+            // Blood pressure leans on age so that some rules have a lift well above one
+            int bp = 90 + age + random.nextInt(60);
+            patients.add(new Patient(first + i, "P", age, bp, 120 + random.nextInt(200), bloodGroup, diagnosis));
+        }
+        miner.addPatients(patients);
+    }
+
+    private static void assertMatchesScan(DatasetView view) {
+        List<AssociationRule> rules = view.getAssociationRules();
+        assertFalse(rules.isEmpty());
+        assertEquals(describe(rules), describe(AssociationMiner.mine(view, ForkJoinPool.commonPool())));
+        List<Set<String>> rows = itemsOfRows(view);
+        boolean rareItems = false;
+        for (AssociationRule rule : rules) {
+            Set<String> antecedent = new HashSet<>(rule.getAntecedent());
+            Set<String> itemset = new HashSet<>(antecedent);
+            itemset.add(rule.getConsequent());
+            int support = 0, antecedentSupport = 0;
+            for (Set<String> row : rows) {
+                if (row.containsAll(itemset)) support++;
+                if (row.containsAll(antecedent)) antecedentSupport++;
+            }
+            assertEquals(support, rule.getSupport(), rule.toString());
+            assertEquals(100.0 * support / antecedentSupport, rule.getConfidencePercent(), 1e-9, rule.toString());
+            rareItems |= itemset.contains("Rare") || itemset.contains("Blood group AB-");
+        }
+        assertTrue(rareItems);
+    }
+
+    private static List<String> describe(List<AssociationRule> rules) {
+        List<String> descriptions = new ArrayList<>();
+        for (AssociationRule rule : rules) {
+            descriptions.add(rule + " " + rule.getSupport() + " " + rule.getConfidencePercent() + " " + rule.getLift());
+        }
+        return descriptions;
+    }
+
+    // The label of every item each row has, worked out from the rules' bands directly
+    private static List<Set<String>> itemsOfRows(DatasetView view) {
+        PatientStore store = view.getStore();
+        RiskRules rules = view.getRiskRules();
+        List<Set<String>> rows = new ArrayList<>();
+        for (int row = 0; row < store.size(); row++) {
+            Set<String> items = new HashSet<>();
+            items.add("Age " + band(rules.getAgeGroupBounds(), store.getAge(row)));
+            items.add("BP " + band(rules.getBloodPressureBands(), store.getBloodPressure(row)));
+            items.add("Cholesterol " + band(rules.getCholesterolBands(), store.getCholesterol(row)));
+            items.add(store.getDiagnosis(row));
+            items.add("Blood group " + store.getBloodGroup(row));
+            rows.add(items);
+        }
+        return rows;
+    }
+
+    private static String band(int[] bounds, int value) {
+        int band = 0;
+        while (band < bounds.length && value >= bounds[band]) {
+            band++;
+        }
+        return RiskRules.bandLabel(bounds, band);
+    }
+}
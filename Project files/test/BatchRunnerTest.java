@@ -0,0 +1,71 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchRunnerTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void inputWithoutAnExtensionKeepsItsWholeName() throws IOException {
+        assertOutputsNamed("patients", "patients");
+    }
+
+    @Test
+    void extensionIsDroppedFromOutputNames() throws IOException {
+        assertOutputsNamed("patients.v2.csv", "patients.v2");
+    }
+
+    @Test
+    void leadingDotIsNotAnExtension() throws IOException {
+        assertOutputsNamed(".patients", ".patients");
+    }
+
+    @Test
+    void csvAndItsSnapshotInOneDirectoryAreRefused() throws IOException {
+        Path shards = Files.createDirectories(directory.resolve("shards"));
+        Files.copy(Path.of("patient_data.csv"), shards.resolve("day1.csv"));
+        MedicalDataMiner miner = new MedicalDataMiner();
+        miner.loadData(shards.resolve("day1.csv").toString(), TaskMonitor.NONE);
+        miner.saveSnapshot(shards.resolve("day1.hdms").toString());
+        Path output = directory.resolve("out");
+
+        int exit = BatchRunner.run(new String[] {"--output", output.toString(), shards.toString()});
+        assertEquals(BatchRunner.EXIT_USAGE, exit);
+        assertFalse(Files.exists(output.resolve("day1.analysis.txt")));
+    }
+
+    @Test
+    void combinedIsReservedAmongSeveralShards() throws IOException {
+        Path shards = Files.createDirectories(directory.resolve("shards"));
+        Files.copy(Path.of("patient_data.csv"), shards.resolve("combined.csv"));
+        Files.copy(Path.of("patient_data.csv"), shards.resolve("day2.csv"));
+        Path output = directory.resolve("out");
+        assertEquals(BatchRunner.EXIT_USAGE, BatchRunner.run(new String[] {"--output", output.toString(),
+                shards.toString()}));
+
+        Files.delete(shards.resolve("day2.csv"));
+        assertEquals(BatchRunner.EXIT_OK, BatchRunner.run(new String[] {"--output", output.toString(),
+                shards.toString()}));
+        assertTrue(Files.exists(output.resolve("combined.analysis.txt")));
+    }
+
+    private void assertOutputsNamed(String inputName, String base) throws IOException {
+        Path input = directory.resolve(inputName);
+        Files.copy(Path.of("patient_data.csv"), input, StandardCopyOption.REPLACE_EXISTING);
+        Path output = directory.resolve("out");
+        int exit = BatchRunner.run(new String[] {"--analyses", "statistics,predictions", "--output",
+                output.toString(), input.toString()});
+        assertEquals(BatchRunner.EXIT_OK, exit);
+        assertTrue(Files.exists(output.resolve(base + ".analysis.txt")));
+        assertTrue(Files.exists(output.resolve(base + ".predictions.csv")));
+    }
+}
@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Compares the one-pass and merged statistics with a plain two-pass mean and variance.
+class ColumnStatisticsTest {
+    private final Random random = new Random(31);
+
+    @Test
+    void mergedBlocksMatchTwoPasses() {
+        // A large offset with a small spread is where summing squares would lose the variance
+        for (int offset : new int[] {0, 2_000_000_000, -2_000_000_000}) {
+            int[] values = new int[200_001];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = offset + (int) (random.nextGaussian() * 50);
+            }
+            ColumnStatistics oneByOne = new ColumnStatistics();
+            for (int value : values) {
+                oneByOne.add(value);
+            }
+            ColumnStatistics blocks = new ColumnStatistics();
+            ColumnStatistics merged = new ColumnStatistics();
+            int[] bounds = {0, 1, 17, 40_000, 40_001, 150_000, values.length};
+            for (int part = 0; part + 1 < bounds.length; part++) {
+                blocks.addAll(values, bounds[part], bounds[part + 1]);
+                ColumnStatistics partial = new ColumnStatistics();
+                partial.addAll(values, bounds[part], bounds[part + 1]);
+                merged.merge(partial);
+            }
+            merged.merge(new ColumnStatistics());
+
+            for (ColumnStatistics statistics : new ColumnStatistics[] {oneByOne, blocks, merged}) {
+                assertMatchesTwoPasses(values, statistics);
+            }
+        }
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        ColumnStatistics statistics = new ColumnStatistics();
+        statistics.addAll(new int[] {1, 2, 3}, 0, 3);
+        ColumnStatistics copy = statistics.copy();
+        statistics.add(100);
+        assertEquals(3, copy.getCount());
+        assertEquals(2.0, copy.getMean());
+        assertEquals(3, copy.getMax());
+        assertEquals(2, copy.getMedian());
+    }
+
+    private static void assertMatchesTwoPasses(int[] values, ColumnStatistics statistics) {
+        long sum = 0;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int value : values) {
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double mean = (double) sum / values.length;
+        double squares = 0;
+        for (int value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        double deviation = Math.sqrt(squares / values.length);
+
+        assertEquals(values.length, statistics.getCount());
+        assertEquals(sum, statistics.getSum());
+        assertEquals(min, statistics.getMin());
+        assertEquals(max, statistics.getMax());
+        assertEquals(mean, statistics.getMean(), Math.abs(mean) * 1e-12 + 1e-9);
+        assertEquals(deviation, statistics.getStandardDeviation(), deviation * 1e-9);
+    }
+}
@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks the column kernel against per-row prediction and against the default rules written out as
+// the if-chain they stand for.
+class DiseasePredictorTest {
+    private static final int MIN_BP = 40, MAX_BP = 260, MIN_CHOLESTEROL = 60, MAX_CHOLESTEROL = 420;
+
+    private final RiskRules rules = RiskRules.defaults();
+
+    @Test
+    void kernelMatchesTheRulesOnEveryRealisticReading() {
+        int bps = MAX_BP - MIN_BP + 1;
+        int cells = bps * (MAX_CHOLESTEROL - MIN_CHOLESTEROL + 1);
+        int[] ages = new int[cells], bloodPressures = new int[cells], cholesterols = new int[cells];
+        for (int age = 0; age <= 120; age++) {
+            for (int cell = 0; cell < cells; cell++) {
+                ages[cell] = age;
+                bloodPressures[cell] = MIN_BP + cell % bps;
+                cholesterols[cell] = MIN_CHOLESTEROL + cell / bps;
+            }
+            assertKernelMatches(ages, bloodPressures, cholesterols);
+        }
+    }
+
+    @Test
+    void kernelMatchesTheRulesAcrossTheIntRange() {
+        Random random = new Random(13);
+        int rows = 1 << 20;
+        int[] ages = new int[rows], bloodPressures = new int[rows], cholesterols = new int[rows];
+        int[] extremes = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1, 0, 1, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+        for (int row = 0; row < rows; row++) {
+            ages[row] = value(random, extremes, 200);
+            bloodPressures[row] = value(random, extremes, 300);
+            cholesterols[row] = value(random, extremes, 500);
+        }
+        assertKernelMatches(ages, bloodPressures, cholesterols);
+    }
+
+    @Test
+    void kernelWritesOnlyTheRequestedRows() {
+        int[] ages = {70, 25, 50, 60, 40};
+        int[] bloodPressures = {170, 110, 135, 145, 120};
+        int[] cholesterols = {190, 170, 250, 180, 190};
+        byte[] codes = {-1, -1, -1, -1, -1};
+        rules.predict(ages, bloodPressures, cholesterols, 1, 4, codes, 2);
+        assertArrayEquals(new byte[] {-1, -1, DiseaseRisk.HEALTHY.code(), DiseaseRisk.HEART_DISEASE.code(),
+                DiseaseRisk.HYPERTENSION.code()}, codes);
+    }
+
+    // Mostly readings near the thresholds, with some anywhere in the int range and some at its ends
+    private static int value(Random random, int[] extremes, int realistic) {
+        int kind = random.nextInt(10);
+        if (kind == 0) return extremes[random.nextInt(extremes.length)];
+        if (kind < 3) return random.nextInt();
+        return random.nextInt(realistic);
+    }
+
+    private void assertKernelMatches(int[] ages, int[] bloodPressures, int[] cholesterols) {
+        byte[] codes = DiseasePredictor.predict(rules, ages, bloodPressures, cholesterols);
+        for (int row = 0; row < ages.length; row++) {
+            int age = ages[row], bp = bloodPressures[row], cholesterol = cholesterols[row];
+            String reading = "age " + age + ", BP " + bp + ", cholesterol " + cholesterol;
+            DiseaseRisk expected = expected(age, bp, cholesterol);
+            assertEquals(expected, rules.predict(age, bp, cholesterol), reading);
+            assertEquals(expected.code(), codes[row], reading);
+        }
+    }
+
+    // The default predict.* thresholds from RiskRules
+    private static DiseaseRisk expected(int age, int bp, int cholesterol) {
+        if (bp > 160 || (bp > 140 && age > 55)) return DiseaseRisk.HYPERTENSION;
+        if (cholesterol > 240 && age > 45) return DiseaseRisk.HEART_DISEASE;
+        if (bp > 130 || cholesterol > 200) return DiseaseRisk.PRE_CONDITION;
+        if (age < 30 && bp < 120 && cholesterol < 180) return DiseaseRisk.HEALTHY;
+        return DiseaseRisk.NEEDS_MONITORING;
+    }
+}
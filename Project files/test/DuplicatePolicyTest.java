@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Duplicate IDs within one batch are resolved in place, on rows no view has seen; a LAST_WINS duplicate
+// of an already published row makes the miner start over on a copy without it.
+class DuplicatePolicyTest {
+    private static final String HEADER = "Patient_ID,Name,Age,Blood_Pressure,Cholesterol,Blood_Group,Diagnosis\n";
+    private static final String BATCH = HEADER
+            + "1,First A,40,120,200,A+,Healthy\n"
+            + "2,First B,50,130,210,B+,Diabetes\n"
+            + "1,Second A,41,121,201,A+,Healthy\n"
+            + "3,First C,60,140,220,O+,Hypertension\n"
+            + "2,Second B,51,131,211,B+,Diabetes\n";
+
+    @TempDir
+    Path directory;
+
+    private final List<String> skipped = new ArrayList<>();
+
+    @Test
+    void keepAllStoresEveryRowAndFindsTheLast() throws IOException {
+        MedicalDataMiner miner = load(DuplicatePolicy.KEEP_ALL);
+        DatasetView view = miner.getView();
+        assertEquals(List.of("First A", "First B", "Second A", "First C", "Second B"), names(view));
+        assertEquals(2, view.rowOf(1));
+        assertEquals(4, view.rowOf(2));
+        assertEquals(2, view.getLoadStats().getDuplicateRows());
+        assertEquals(List.of(), skipped);
+
+        miner.addPatients(List.of(patient(3, "Second C")));
+        assertEquals(5, miner.getView().rowOf(3));
+        assertEquals(6, miner.getView().size());
+    }
+
+    @Test
+    void lastWinsRemovesEarlierRowsOfTheBatchInPlace() throws IOException {
+        MedicalDataMiner miner = load(DuplicatePolicy.LAST_WINS);
+        DatasetView view = miner.getView();
+        assertEquals(List.of("Second A", "First C", "Second B"), names(view));
+        assertEquals(0, view.rowOf(1));
+        assertEquals(2, view.rowOf(2));
+        assertEquals(1, view.rowOf(3));
+        assertEquals(2, view.getLoadStats().getDuplicateRows());
+        assertEquals(List.of(), skipped);
+    }
+
+    @Test
+    void lastWinsOverAPublishedRowStartsOverOnACopy() throws IOException {
+        MedicalDataMiner miner = load(DuplicatePolicy.LAST_WINS);
+        DatasetView before = miner.getView();
+        miner.addPatients(List.of(patient(4, "First D"), patient(3, "Second C"), patient(4, "Second D")));
+        DatasetView after = miner.getView();
+        assertEquals(List.of("Second A", "Second B", "Second C", "Second D"), names(after));
+        for (int id = 1; id <= 4; id++) {
+            assertEquals(id - 1, after.rowOf(id));
+            assertEquals(id, after.getStore().getPatientID(id - 1));
+        }
+        // The earlier view is untouched, rows and ID lookups alike
+        assertEquals(List.of("Second A", "First C", "Second B"), names(before));
+        assertEquals(1, before.rowOf(3));
+        assertEquals(-1, before.rowOf(4));
+
+        // Later appends build on the copy
+        miner.addPatients(List.of(patient(5, "First E")));
+        assertEquals(4, miner.getView().rowOf(5));
+        assertEquals(3, miner.getView().rowOf(4));
+    }
+
+    @Test
+    void rejectKeepsTheFirstRowAndReportsWhereTheOthersAre() throws IOException {
+        MedicalDataMiner miner = load(DuplicatePolicy.REJECT);
+        DatasetView view = miner.getView();
+        assertEquals(List.of("First A", "First B", "First C"), names(view));
+        assertEquals(2, view.getLoadStats().getDuplicateRows());
+        assertEquals(List.of(offsetOf(BATCH, "1,Second A") + ": Duplicate patient ID 1",
+                offsetOf(BATCH, "2,Second B") + ": Duplicate patient ID 2"), skipped);
+
+        // Rows appended later are checked against the published ones and dropped before any view sees them
+        skipped.clear();
+        String appended = "4,First D,70,150,230,A-,Healthy\n3,Second C,61,141,221,O+,Hypertension\n";
+        Files.writeString(directory.resolve("patients.csv"), appended, StandardOpenOption.APPEND);
+        assertEquals(1, miner.tailDataFile());
+        assertEquals(List.of("First A", "First B", "First C", "First D"), names(miner.getView()));
+        assertEquals(List.of(offsetOf(BATCH + appended, "3,Second C") + ": Duplicate patient ID 3"), skipped);
+        assertEquals(3, view.size());
+
+        // Rows added directly have no place in a file
+        skipped.clear();
+        miner.addPatients(List.of(patient(4, "Second D"), patient(6, "First F")));
+        assertEquals(5, miner.getView().size());
+        assertEquals(List.of("-1: Duplicate patient ID 4"), skipped);
+    }
+
+    @Test
+    void rejectReportsTheSameOffsetsInAParallelLoad() throws IOException {
+        MedicalDataMiner sequential = load(DuplicatePolicy.REJECT);
+        List<String> expected = new ArrayList<>(skipped);
+        skipped.clear();
+        MedicalDataMiner parallel = new MedicalDataMiner();
+        parallel.setLoadMode(LoadMode.PARALLEL);
+        parallel.setDuplicatePolicy(DuplicatePolicy.REJECT);
+        parallel.setRowErrorListener(this::rowSkipped);
+        parallel.loadData(directory.resolve("patients.csv").toString(), TaskMonitor.NONE);
+        assertEquals(expected, skipped);
+        assertEquals(names(sequential.getView()), names(parallel.getView()));
+    }
+
+    private MedicalDataMiner load(DuplicatePolicy policy) throws IOException {
+        Path file = directory.resolve("patients.csv");
+        Files.writeString(file, BATCH);
+        MedicalDataMiner miner = new MedicalDataMiner();
+        miner.setDuplicatePolicy(policy);
+        miner.setRowErrorListener(this::rowSkipped);
+        miner.loadData(file.toString(), TaskMonitor.NONE);
+        return miner;
+    }
+
+    private synchronized void rowSkipped(long offset, String reason) {
+        skipped.add(offset + ": " + reason);
+    }
+
+    private static Patient patient(int id, String name) {
+        return new Patient(id, name, 45, 125, 205, "AB+", "Healthy");
+    }
+
+    private static List<String> names(DatasetView view) {
+        List<String> names = new ArrayList<>();
+        for (int row = 0; row < view.size(); row++) {
+            names.add(view.getStore().getName(row));
+        }
+        return names;
+    }
+
+    private static int offsetOf(String text, String line) {
+        return text.indexOf("\n" + line) + 1;
+    }
+}
@@ -0,0 +1,53 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+    // Three standard errors of 1.04 / sqrt(2^14)
+    private static final double MAX_RELATIVE_ERROR = 3 * 1.04 / 128;
+
+    @Test
+    void estimatesStayWithinThreeStandardErrors() {
+        for (int distinct : new int[] {1, 10, 1000, 20_000, 40_000, 100_000, 2_000_000}) {
+            HyperLogLog sequential = new HyperLogLog();
+            HyperLogLog scattered = new HyperLogLog();
+            Random random = new Random(distinct);
+            for (int i = 0; i < distinct; i++) {
+                sequential.addInt(i);
+                // Each value twice, which must not count
+                int value = random.nextInt();
+                scattered.addHash(HyperLogLog.mix(i) ^ value);
+                scattered.addHash(HyperLogLog.mix(i) ^ value);
+            }
+            assertWithinBound(distinct, sequential.estimate());
+            assertWithinBound(distinct, scattered.estimate());
+        }
+        assertTrue(new HyperLogLog().isEmpty());
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void mergeCountsTheUnion() {
+        HyperLogLog first = new HyperLogLog(), second = new HyperLogLog(), union = new HyperLogLog();
+        // Overlapping ranges: 0..299,999 and 200,000..499,999
+        for (int i = 0; i < 500_000; i++) {
+            if (i < 300_000) first.addInt(i);
+            if (i >= 200_000) second.addInt(i);
+            union.addInt(i);
+        }
+        HyperLogLog merged = first.copy();
+        merged.merge(second);
+        assertEquals(union.estimate(), merged.estimate());
+        assertWithinBound(500_000, merged.estimate());
+        // The copy is independent of the original
+        assertWithinBound(300_000, first.estimate());
+    }
+
+    private static void assertWithinBound(int distinct, long estimate) {
+        double error = Math.abs(estimate - distinct) / (double) distinct;
+        assertTrue(error <= MAX_RELATIVE_ERROR, distinct + " distinct values estimated as " + estimate);
+    }
+}
@@ -0,0 +1,158 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedCsvLoaderTest {
+    // The loader never splits finer than this, so a file of under four of them is split every megabyte
+    // whatever the pool's parallelism
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final String[] BLOOD_GROUPS = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+    private static final String[] DIAGNOSES = {"Healthy", "Hypertension", "Diabetes", "Heart Disease", "Asthma"};
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(3);
+
+    @Test
+    void parallelLoadMatchesSequentialLoad() throws IOException {
+        Path file = directory.resolve("patients.csv");
+        Files.write(file, awkwardFile());
+
+        List<Long> sequentialErrors = new ArrayList<>();
+        MedicalDataMiner sequential = load(file, LoadMode.SEQUENTIAL, sequentialErrors);
+        List<Long> parallelErrors = new ArrayList<>();
+        MedicalDataMiner parallel = load(file, LoadMode.PARALLEL, parallelErrors);
+
+        PatientStore expected = sequential.getView().getStore();
+        PatientStore actual = parallel.getView().getStore();
+        assertTrue(expected.size() > 50_000);
+        assertEquals(expected.size(), actual.size());
+        assertDictionariesEqual(expected.getBloodGroups(), actual.getBloodGroups());
+        assertDictionariesEqual(expected.getDiagnoses(), actual.getDiagnoses());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getPatientID(row), actual.getPatientID(row), "row " + row);
+            assertEquals(expected.getName(row), actual.getName(row), "row " + row);
+            assertEquals(expected.getAge(row), actual.getAge(row), "row " + row);
+            assertEquals(expected.getBloodPressure(row), actual.getBloodPressure(row), "row " + row);
+            assertEquals(expected.getCholesterol(row), actual.getCholesterol(row), "row " + row);
+            assertEquals(expected.getBloodGroupCode(row), actual.getBloodGroupCode(row), "row " + row);
+            assertEquals(expected.getDiagnosisCode(row), actual.getDiagnosisCode(row), "row " + row);
+        }
+
+        LoadStats sequentialStats = sequential.getLastLoadStats();
+        LoadStats parallelStats = parallel.getLastLoadStats();
+        assertTrue(sequentialStats.getMalformedRows() > 0);
+        assertEquals(sequentialStats.getMalformedRows(), parallelStats.getMalformedRows());
+        assertEquals(sequentialStats.getBytes(), parallelStats.getBytes());
+        // Chunks report their skipped lines as they go, so only the set of offsets is comparable
+        Collections.sort(parallelErrors);
+        assertEquals(sequentialErrors, parallelErrors);
+    }
+
+    @Test
+    void unterminatedLastLineIsLeftForTheTail() throws IOException {
+        for (LoadMode mode : LoadMode.values()) {
+            Path file = directory.resolve(mode + ".csv");
+            Files.writeString(file, "Patient_ID,Name,Age,Blood_Pressure,Cholesterol,Blood_Group,Diagnosis\r\n"
+                    + "1,Patient A,40,120,200,A+,Healthy\r\n2,Patient B,5");
+            MedicalDataMiner miner = new MedicalDataMiner();
+            miner.setLoadMode(mode);
+            miner.loadData(file.toString(), TaskMonitor.NONE);
+            assertEquals(1, miner.getView().size(), mode.toString());
+
+            Files.writeString(file, "5,130,210,O+,Diabetes\r\n", StandardOpenOption.APPEND);
+            assertEquals(1, miner.tailDataFile(), mode.toString());
+            Patient tailed = miner.getView().getPatientById(2);
+            assertEquals("Patient B", tailed.getName());
+            assertEquals(55, tailed.getAge());
+
+            // Not following the file, the load takes the final line as it is
+            Files.writeString(file, "3,Patient C,60,140,220,B+,Hypertension", StandardOpenOption.APPEND);
+            miner.setFollowDataFile(false);
+            miner.loadData(file.toString(), TaskMonitor.NONE);
+            assertEquals(3, miner.getView().size(), mode.toString());
+            assertThrows(IllegalStateException.class, miner::tailDataFile);
+        }
+    }
+
+    private static MedicalDataMiner load(Path file, LoadMode mode, List<Long> errors) throws IOException {
+        MedicalDataMiner miner = new MedicalDataMiner();
+        miner.setLoadMode(mode);
+        miner.setRowErrorListener((offset, reason) -> {
+            synchronized (errors) {
+                errors.add(offset);
+            }
+        });
+        miner.loadData(file.toString(), TaskMonitor.NONE);
+        return miner;
+    }
+
+    private static void assertDictionariesEqual(ValueDictionary expected, ValueDictionary actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int code = 0; code < expected.size(); code++) {
+            assertEquals(expected.valueOf(code), actual.valueOf(code));
+        }
+    }
+
+    // Mixed line endings, trailing commas, blank and malformed lines, a diagnosis first seen in a later
+    // chunk, and a line ending on each place the loader looks for a chunk boundary: alternately with
+    // the LF and the CR of a CRLF at that byte. The last line has no newline.
+    private byte[] awkwardFile() {
+        StringBuilder text = new StringBuilder("Patient_ID,Name,Age,Blood_Pressure,Cholesterol,Blood_Group,Diagnosis\n");
+        int headerLength = text.length();
+        long probe = headerLength + CHUNK_SIZE;
+        int id = 1;
+        boolean onLineFeed = true;
+        while (text.length() < 3.5 * CHUNK_SIZE) {
+            long remaining = probe - text.length();
+            if (remaining < 200) {
+                // Ends with CRLF so that the probe byte is its LF, or the CR before it
+                String line = line(id++, text.length() > 2 * CHUNK_SIZE);
+                int nameEnd = line.indexOf(',', line.indexOf(',') + 1);
+                int padding = (int) remaining + (onLineFeed ? 1 : 2) - line.length() - 2;
+                text.append(line, 0, nameEnd).append("x".repeat(padding)).append(line, nameEnd, line.length())
+                        .append("\r\n");
+                // The loader resumes its search a chunk after the line following the probe
+                probe = (onLineFeed ? probe + 1 : probe + 2) + CHUNK_SIZE;
+                onLineFeed = !onLineFeed;
+                continue;
+            }
+            int kind = random.nextInt(100);
+            if (kind == 0) {
+                text.append("\r\n");
+            } else if (kind == 1) {
+                text.append(id++).append(",Short Line,40,120\r\n");
+            } else if (kind == 2) {
+                text.append(id++).append(",Bad Number,4x0,120,200,A+,Healthy\n");
+            } else {
+                String line = line(id++, text.length() > 2 * CHUNK_SIZE);
+                // Trailing commas are tolerated, as String.split would drop them
+                if (kind < 8) line += kind < 5 ? "," : ",,";
+                text.append(line).append(kind % 2 == 0 ? "\r\n" : "\n");
+            }
+        }
+        text.append(line(id, true));
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String line(int id, boolean late) {
+        String diagnosis = late && random.nextInt(20) == 0 ? "Late Diagnosis" : DIAGNOSES[random.nextInt(DIAGNOSES.length)];
+        return id + ",Patient " + id + "," + (18 + random.nextInt(70)) + "," + (90 + random.nextInt(100))
+                + "," + (120 + random.nextInt(200)) + "," + BLOOD_GROUPS[random.nextInt(BLOOD_GROUPS.length)] + ","
+                + diagnosis;
+    }
+}
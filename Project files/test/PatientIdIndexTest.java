@@ -0,0 +1,88 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PatientIdIndexTest {
+    private final Random random = new Random(17);
+
+    @Test
+    void viewsStopAtTheirRowCountWhileNewIdsFillSharedSlots() {
+        PatientIdIndex index = new PatientIdIndex();
+        // Room for every ID up front, so the tables stay shared with the view throughout
+        index.ensureCapacity(3000);
+        Map<Integer, Integer> before = new HashMap<>();
+        int row = 0;
+        while (row < 1000) {
+            // IDs from a narrow range collide often, so later IDs land in the earlier ones' probe chains
+            int id = random.nextInt(4000);
+            if (index.putIfAbsent(id, row) < 0) before.put(id, row++);
+        }
+        PatientIdIndex view = index.view(row);
+        Map<Integer, Integer> after = new HashMap<>(before);
+        while (row < 3000) {
+            int id = random.nextInt(4000);
+            if (index.putIfAbsent(id, row) < 0) after.put(id, row++);
+        }
+        for (int id = 0; id < 4000; id++) {
+            assertEquals(before.getOrDefault(id, -1), view.get(id), "view, ID " + id);
+            assertEquals(after.getOrDefault(id, -1), index.get(id), "index, ID " + id);
+        }
+        assertEquals(3000, index.size());
+        assertThrows(UnsupportedOperationException.class, () -> view.put(5000, 0));
+    }
+
+    @Test
+    void viewsKeepTheirTablesWhenTheIndexGrows() {
+        PatientIdIndex index = new PatientIdIndex();
+        List<PatientIdIndex> views = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (int row = 0; row < 100_000; row++) {
+            int id = random.nextInt();
+            while (!seen.add(id)) {
+                id = random.nextInt();
+            }
+            assertEquals(-1, index.put(id, row));
+            ids.add(id);
+            if (Integer.bitCount(row) == 1) views.add(index.view(row + 1));
+        }
+        assertEquals(100_000, index.size());
+        for (int row = 0; row < ids.size(); row++) {
+            assertEquals(row, index.get(ids.get(row)));
+        }
+        for (PatientIdIndex view : views) {
+            int rows = view.size();
+            for (int row = 0; row < ids.size(); row += 97) {
+                assertEquals(row < rows ? row : -1, view.get(ids.get(row)), "view of " + rows + " rows");
+            }
+        }
+    }
+
+    @Test
+    void remappingAnIdUnsharesTheTables() {
+        PatientIdIndex index = new PatientIdIndex();
+        for (int row = 0; row < 100; row++) {
+            index.put(row * 7, row);
+        }
+        PatientIdIndex view = index.view(100);
+        assertEquals(10, index.put(70, 150));
+        assertEquals(10, view.get(70));
+        assertEquals(150, index.get(70));
+        // Mapping an ID to the row it already has is not a change, and neither is putIfAbsent
+        assertEquals(150, index.put(70, 150));
+        assertEquals(20, index.putIfAbsent(140, 151));
+        PatientIdIndex later = index.view(152);
+        assertEquals(150, later.get(70));
+        assertEquals(20, later.get(140));
+        assertEquals(-1, later.get(1));
+    }
+}
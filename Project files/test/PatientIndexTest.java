@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PatientIndexTest {
+    private static final String[] BLOOD_GROUPS = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+    private static final String[] DIAGNOSES = {"Healthy", "Hypertension", "Diabetes", "Heart Disease"};
+
+    @Test
+    void viewsKeepTheirRowsWhileTheWriterAppends() {
+        Random random = new Random(42);
+        PatientStore store = new PatientStore();
+        RiskScores scores = new RiskScores(store, RiskRules.defaults());
+        PatientIndex index = new PatientIndex(store, scores);
+        List<PatientIndex> views = new ArrayList<>();
+        List<PatientStore> storeViews = new ArrayList<>();
+
+        // Odd batch sizes so that views end part way through a bitmap word
+        for (int batch : new int[] {1, 63, 2, 130, 5000, 37}) {
+            int from = store.size();
+            for (int i = 0; i < batch; i++) {
+                store.add(from + i, "P", 20 + random.nextInt(60), 90 + random.nextInt(100),
+                        120 + random.nextInt(200), BLOOD_GROUPS[random.nextInt(BLOOD_GROUPS.length)],
+                        DIAGNOSES[random.nextInt(DIAGNOSES.length)]);
+            }
+            scores.addRows(store.size());
+            index.addRows(from, store.size());
+            PatientStore storeView = store.view();
+            storeViews.add(storeView);
+            views.add(index.view(storeView, scores.view(storeView)));
+
+            for (int v = 0; v < views.size(); v++) {
+                assertMatchesScan(views.get(v), storeViews.get(v), scores);
+            }
+        }
+    }
+
+    private static void assertMatchesScan(PatientIndex view, PatientStore store, RiskScores scores) {
+        assertEquals(store.size(), view.getRowCount());
+        for (String bloodGroup : BLOOD_GROUPS) {
+            BitSet expected = new BitSet();
+            for (int row = 0; row < store.size(); row++) {
+                if (store.getBloodGroup(row).equals(bloodGroup)) expected.set(row);
+            }
+            assertEquals(expected, view.bloodGroup(bloodGroup), bloodGroup);
+        }
+        for (String diagnosis : DIAGNOSES) {
+            BitSet expected = new BitSet();
+            for (int row = 0; row < store.size(); row++) {
+                if (store.getDiagnosis(row).equals(diagnosis)) expected.set(row);
+            }
+            assertEquals(expected, view.diagnosis(diagnosis), diagnosis);
+        }
+        for (RiskTier tier : RiskTier.values()) {
+            BitSet expected = new BitSet();
+            for (int row = 0; row < store.size(); row++) {
+                if (scores.getTier(row) == tier) expected.set(row);
+            }
+            assertEquals(expected, view.riskTier(tier), tier.name());
+        }
+    }
+
+    @Test
+    void rowBitmapMasksRowsPastTheCount() {
+        RowBitmap bitmap = new RowBitmap();
+        for (int row : new int[] {0, 5, 63, 64, 65, 127, 128, 2000}) {
+            bitmap.set(row);
+        }
+        assertEquals(BitSet.valueOf(new long[0]), bitmap.toBitSet(0));
+        assertEquals(bits(0, 5), bitmap.toBitSet(63));
+        assertEquals(bits(0, 5, 63), bitmap.toBitSet(64));
+        assertEquals(bits(0, 5, 63, 64), bitmap.toBitSet(65));
+        assertEquals(bits(0, 5, 63, 64, 65, 127, 128), bitmap.toBitSet(1000));
+        assertEquals(bits(0, 5, 63, 64, 65, 127, 128, 2000), bitmap.toBitSet(Integer.MAX_VALUE));
+    }
+
+    private static BitSet bits(int... rows) {
+        BitSet result = new BitSet();
+        for (int row : rows) {
+            result.set(row);
+        }
+        return result;
+    }
+}
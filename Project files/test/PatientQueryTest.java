@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PatientQueryTest {
+    private DatasetView view;
+
+    @BeforeEach
+    void load() {
+        MedicalDataMiner miner = new MedicalDataMiner();
+        miner.loadDataFromFile("patient_data.csv");
+        view = miner.getView();
+    }
+
+    @Test
+    void strictBoundsAtTheIntLimitsMatchNothing() {
+        assertEquals(0, view.query().ageAbove(Integer.MAX_VALUE).count());
+        assertEquals(0, view.query().ageBelow(Integer.MIN_VALUE).count());
+        assertEquals(0, view.query().bpAbove(Integer.MAX_VALUE).count());
+        assertEquals(0, view.query().cholesterolAbove(Integer.MAX_VALUE).count());
+        assertEquals(0, view.query().bpAbove(Integer.MAX_VALUE).diagnosis("Healthy").count());
+    }
+
+    @Test
+    void strictBoundsJustInsideTheLimitsMatchEverything() {
+        int rows = view.getStore().size();
+        assertEquals(rows, view.query().ageAbove(Integer.MIN_VALUE).count());
+        assertEquals(rows, view.query().ageBelow(Integer.MAX_VALUE).count());
+        assertEquals(rows, view.query().bpAbove(Integer.MIN_VALUE).count());
+        assertEquals(rows, view.query().cholesterolAbove(Integer.MIN_VALUE).count());
+    }
+
+    @Test
+    void strictBoundsExcludeTheBoundItself() {
+        PatientStore store = view.getStore();
+        int bp = store.getBloodPressure(0);
+        int expected = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (store.getBloodPressure(row) > bp) expected++;
+        }
+        assertEquals(expected, view.query().bpAbove(bp).count());
+    }
+}
@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Loads the same data from CSV and from a snapshot of it and compares the two stores row by row.
+class PatientSnapshotFileTest {
+    private static final String HEADER = "ID,Name,Age,BP,Cholesterol,BloodGroup,Diagnosis\n";
+    private static final String[] BLOOD_GROUPS = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+    private static final String[] NAMES = {
+            "Rajesh Kumar", "Zoë Ångström", "José Muñoz", "Łukasz Żółć", "Παναγιώτης", "Иван Петров",
+            "राजेश कुमार", "李小龙", "佐藤 健", "Ngozi 👩‍⚕️", ""
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void emptyStoreRoundTrips() throws IOException {
+        PatientStore csv = loadCsv(HEADER);
+        assertEquals(0, csv.size());
+        assertRoundTrip(csv);
+        assertRoundTrip(new PatientStore());
+    }
+
+    @Test
+    void sampleDatasetRoundTrips() throws IOException {
+        PatientStore csv = loadCsv(Files.readString(Path.of("patient_data.csv")));
+        assertTrue(csv.size() > 0);
+        assertRoundTrip(csv);
+    }
+
+    @Test
+    void nonAsciiNamesAndEveryDictionaryValueRoundTrip() throws IOException {
+        List<String> diagnoses = new ArrayList<>(List.of("Healthy", "Hypertension", "Diabetes",
+                "Heart Disease", "Maladie cœliaque", "糖尿病", "Болезнь"));
+        for (int i = 0; i < 300; i++) {
+            diagnoses.add("Condition " + i);
+        }
+        StringBuilder text = new StringBuilder(HEADER);
+        int rows = Math.max(diagnoses.size(), BLOOD_GROUPS.length * NAMES.length);
+        for (int row = 0; row < rows; row++) {
+            text.append(row - 150).append(',')
+                    .append(NAMES[row % NAMES.length]).append(',')
+                    .append(row % 120).append(',')
+                    .append(60 + row % 160).append(',')
+                    .append(100 + row % 250).append(',')
+                    .append(BLOOD_GROUPS[row / NAMES.length % BLOOD_GROUPS.length]).append(',')
+                    .append(diagnoses.get(row % diagnoses.size())).append('\n');
+        }
+        PatientStore csv = loadCsv(text.toString());
+        assertEquals(rows, csv.size());
+        assertEquals(BLOOD_GROUPS.length, csv.getBloodGroups().size());
+        assertEquals(diagnoses.size(), csv.getDiagnoses().size());
+        assertRoundTrip(csv);
+    }
+
+    private PatientStore loadCsv(String text) throws IOException {
+        Path file = Files.createTempFile(directory, "patients", ".csv");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        PatientStore store = new PatientStore();
+        new MappedCsvLoader(store).load(file.toString());
+        return store;
+    }
+
+    private void assertRoundTrip(PatientStore expected) throws IOException {
+        Path file = Files.createTempFile(directory, "patients", ".hdms");
+        PatientSnapshotFile.write(expected, file.toString());
+        assertTrue(PatientSnapshotFile.isSnapshot(file.toString()));
+        PatientStore actual = new PatientStore();
+        LoadStats stats = PatientSnapshotFile.read(file.toString(), actual);
+
+        assertEquals(expected.size(), stats.getRows());
+        assertEquals(expected.size(), actual.size());
+        assertDictionariesEqual(expected.getBloodGroups(), actual.getBloodGroups());
+        assertDictionariesEqual(expected.getDiagnoses(), actual.getDiagnoses());
+        for (int row = 0; row < expected.size(); row++) {
+            String at = "row " + row;
+            assertEquals(expected.getPatientID(row), actual.getPatientID(row), at);
+            assertEquals(expected.getName(row), actual.getName(row), at);
+            assertEquals(expected.getAge(row), actual.getAge(row), at);
+            assertEquals(expected.getBloodPressure(row), actual.getBloodPressure(row), at);
+            assertEquals(expected.getCholesterol(row), actual.getCholesterol(row), at);
+            assertEquals(expected.getBloodGroupCode(row), actual.getBloodGroupCode(row), at);
+            assertEquals(expected.getBloodGroup(row), actual.getBloodGroup(row), at);
+            assertEquals(expected.getDiagnosisCode(row), actual.getDiagnosisCode(row), at);
+            assertEquals(expected.getDiagnosis(row), actual.getDiagnosis(row), at);
+        }
+    }
+
+    private static void assertDictionariesEqual(ValueDictionary expected, ValueDictionary actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int code = 0; code < expected.size(); code++) {
+            assertEquals(expected.valueOf(code), actual.valueOf(code), "code " + code);
+            assertEquals(code, actual.codeOf(expected.valueOf(code)), "code " + code);
+        }
+    }
+}
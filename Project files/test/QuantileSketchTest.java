@@ -0,0 +1,138 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Measures rank error against the sorted values: a quantile is off by how far the requested rank lies
+// outside the ranks the returned value actually occupies.
+class QuantileSketchTest {
+    // The documented error is around 1.7/k of the count, under 1% with the default k
+    private static final double MAX_RANK_ERROR = 0.01;
+
+    private final Random random = new Random(29);
+
+    @Test
+    void valuesWithinTheSpanAreExact() {
+        int[] values = new int[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 60 + random.nextInt(QuantileSketch.MAX_SPAN - 1);
+        }
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.addAll(values, 0, values.length);
+        assertTrue(sketch.isExact());
+        assertEquals(0, maxRankError(sketch, values));
+    }
+
+    @Test
+    void spilledSketchStaysWithinItsErrorBound() {
+        for (int[] values : new int[][] {spread(1_000_000), sorted(spread(300_000)), skewed(500_000)}) {
+            QuantileSketch sketch = new QuantileSketch();
+            for (int value : values) {
+                sketch.add(value);
+            }
+            assertFalse(sketch.isExact());
+            assertEquals(values.length, sketch.getCount());
+            assertTrue(maxRankError(sketch, values) <= MAX_RANK_ERROR * values.length);
+        }
+    }
+
+    @Test
+    void mergedHalvesMatchOnePass() {
+        int[] values = skewed(600_000);
+        QuantileSketch whole = new QuantileSketch();
+        whole.addAll(values, 0, values.length);
+        // Uneven parts, one of them small enough to still be a histogram when merged
+        int[] bounds = {0, 1000, 250_000, 300_000, values.length};
+        QuantileSketch merged = new QuantileSketch();
+        for (int part = 0; part + 1 < bounds.length; part++) {
+            QuantileSketch sketch = new QuantileSketch();
+            sketch.addAll(values, bounds[part], bounds[part + 1]);
+            merged.merge(sketch);
+        }
+        assertEquals(whole.getCount(), merged.getCount());
+        assertTrue(maxRankError(whole, values) <= MAX_RANK_ERROR * values.length);
+        assertTrue(maxRankError(merged, values) <= MAX_RANK_ERROR * values.length);
+        for (double fraction = 0.01; fraction < 1; fraction += 0.01) {
+            int wholeRank = rankOf(values, whole.getQuantile(fraction));
+            int mergedRank = rankOf(values, merged.getQuantile(fraction));
+            assertTrue(Math.abs(wholeRank - mergedRank) <= 2 * MAX_RANK_ERROR * values.length, "fraction " + fraction);
+        }
+    }
+
+    @Test
+    void mergedHistogramsStayExact() {
+        // The halves cover neighbouring ranges that together just fit, though the room each histogram
+        // leaves around its own values would not
+        int[] values = new int[50_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i < 20_000 ? 100 + random.nextInt(2000) : 2100 + random.nextInt(QuantileSketch.MAX_SPAN - 2000);
+        }
+        QuantileSketch first = new QuantileSketch();
+        first.addAll(values, 0, 20_000);
+        QuantileSketch second = new QuantileSketch();
+        second.addAll(values, 20_000, values.length);
+        first.merge(second);
+        assertTrue(first.isExact());
+        assertEquals(0, maxRankError(first, values));
+    }
+
+    private int[] spread(int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(2_000_000) - 1_000_000;
+        }
+        return values;
+    }
+
+    private static int[] sorted(int[] values) {
+        Arrays.sort(values);
+        return values;
+    }
+
+    // Heavy repeats of a few values alongside a long tail
+    private int[] skewed(int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(3) == 0 ? 200 + random.nextInt(5) : (int) Math.exp(random.nextDouble() * 14);
+        }
+        return values;
+    }
+
+    private static long maxRankError(QuantileSketch sketch, int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        long worst = 0;
+        for (double fraction = 0.01; fraction < 1; fraction += 0.01) {
+            int value = sketch.getQuantile(fraction);
+            long target = (long) Math.max(1, Math.ceil(fraction * sorted.length));
+            // Ranks below, and up to and including, the returned value
+            long below = lowerBound(sorted, value);
+            long through = lowerBound(sorted, value + 1L);
+            long error = target <= below ? below + 1 - target : target > through ? target - through : 0;
+            worst = Math.max(worst, error);
+        }
+        return worst;
+    }
+
+    private static int rankOf(int[] values, int value) {
+        int rank = 0;
+        for (int v : values) {
+            if (v <= value) rank++;
+        }
+        return rank;
+    }
+
+    private static int lowerBound(int[] sorted, long value) {
+        int low = 0, high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,127 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Checks the k-d tree searches against a scan of every row, with the rows in distance order and ties
+// broken by row number, as the index promises.
+class SimilarityIndexTest {
+    private final Random random = new Random(11);
+
+    @Test
+    void matchesAScanAcrossRebuildsAndUnindexedTails() {
+        PatientStore store = new PatientStore();
+        SimilarityIndex index = new SimilarityIndex(store);
+        // The first batch is large enough to be indexed, the later ones stay in the scanned tail until
+        // the last one triggers a rebuild, some built in parallel
+        for (int batch : new int[] {6000, 700, 1, 5000}) {
+            addRows(store, batch);
+            index.addRows(store.size(), batch % 2 == 0 ? ForkJoinPool.commonPool() : null);
+            PatientStore storeView = store.view();
+            SimilarityIndex view = index.view(storeView);
+            for (int query = 0; query < 40; query++) {
+                int age = 15 + random.nextInt(80), bp = 80 + random.nextInt(120), cholesterol = 110 + random.nextInt(220);
+                assertNearest(storeView, view, age, bp, cholesterol, 1 + random.nextInt(60));
+                assertWithin(storeView, view, age, bp, cholesterol, random.nextDouble() * 0.6);
+            }
+        }
+    }
+
+    @Test
+    void tiesAreBrokenByRowNumber() {
+        PatientStore store = new PatientStore();
+        for (int row = 0; row < 9000; row++) {
+            // Few distinct points, so nearly every distance is shared by many rows
+            store.add(row, "P", 40 + row % 3, 120 + row % 2 * 10, 200, "A+", "Healthy");
+        }
+        SimilarityIndex index = new SimilarityIndex(store);
+        index.addRows(store.size(), null);
+        assertNearest(store, index, 41, 125, 200, 50);
+        assertNearest(store, index, 40, 120, 200, 5000);
+        assertWithin(store, index, 41, 125, 200, 0);
+        assertWithin(store, index, 40, 120, 200, 1.5);
+    }
+
+    @Test
+    void kBeyondTheRowCountReturnsEveryRow() {
+        PatientStore store = new PatientStore();
+        addRows(store, 7);
+        SimilarityIndex index = new SimilarityIndex(store);
+        index.addRows(store.size(), null);
+        SimilarPatients all = index.nearest(50, 130, 200, 20);
+        assertEquals(7, all.size());
+        assertNearest(store, index, 50, 130, 200, 20);
+        assertEquals(0, index.nearest(50, 130, 200, 0).size());
+        assertEquals(0, new SimilarityIndex(new PatientStore()).nearest(50, 130, 200, 5).size());
+        assertThrows(IllegalArgumentException.class, () -> index.nearest(50, 130, 200, -1));
+        assertThrows(IllegalArgumentException.class, () -> index.within(50, 130, 200, Double.NaN));
+    }
+
+    private void addRows(PatientStore store, int count) {
+        for (int i = 0; i < count; i++) {
+            int age = random.nextInt(5) == 0 ? 40 : 18 + random.nextInt(70);
+            int cholesterol = random.nextBoolean() ? 200 : 120 + random.nextInt(180);
+            store.add(store.size(), "P", age, 90 + random.nextInt(100), cholesterol, "A+", "Healthy");
+        }
+    }
+
+    private static void assertNearest(PatientStore store, SimilarityIndex index, int age, int bp, int cholesterol, int k) {
+        Integer[] order = scan(store, age, bp, cholesterol);
+        double[] distances = distances(store, age, bp, cholesterol);
+        SimilarPatients nearest = index.nearest(age, bp, cholesterol, k);
+        int expected = Math.min(k, store.size());
+        assertEquals(expected, nearest.size());
+        for (int i = 0; i < expected; i++) {
+            assertEquals(order[i], nearest.getRow(i), "neighbour " + i);
+            assertEquals(Math.sqrt(distances[order[i]]), nearest.getDistance(i), "distance " + i);
+        }
+    }
+
+    private static void assertWithin(PatientStore store, SimilarityIndex index, int age, int bp, int cholesterol,
+                                     double radius) {
+        Integer[] order = scan(store, age, bp, cholesterol);
+        double[] distances = distances(store, age, bp, cholesterol);
+        int[] expected = Arrays.stream(order).filter(row -> distances[row] <= radius * radius)
+                .mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(expected, index.within(age, bp, cholesterol, radius).getRows());
+    }
+
+    private static Integer[] scan(PatientStore store, int age, int bp, int cholesterol) {
+        double[] distances = distances(store, age, bp, cholesterol);
+        Integer[] order = new Integer[store.size()];
+        for (int row = 0; row < order.length; row++) {
+            order[row] = row;
+        }
+        Arrays.sort(order, (a, b) -> distances[a] != distances[b] ? Double.compare(distances[a], distances[b])
+                : Integer.compare(a, b));
+        return order;
+    }
+
+    // Squared distances in standard deviations of each column over all rows, computed as the index does
+    private static double[] distances(PatientStore store, int age, int bp, int cholesterol) {
+        int[][] columns = {store.ages(), store.bloodPressures(), store.cholesterols()};
+        int[] query = {age, bp, cholesterol};
+        int rows = store.size();
+        double[] distances = new double[rows];
+        for (int dimension = 0; dimension < 3; dimension++) {
+            double sum = 0, squares = 0;
+            for (int row = 0; row < rows; row++) {
+                sum += columns[dimension][row];
+                squares += (double) columns[dimension][row] * columns[dimension][row];
+            }
+            double mean = sum / rows;
+            double deviation = Math.sqrt(Math.max(0, squares / rows - mean * mean));
+            double weight = deviation > 0 ? 1 / deviation : 1;
+            for (int row = 0; row < rows; row++) {
+                double offset = columns[dimension][row] * weight - query[dimension] * weight;
+                distances[row] += offset * offset;
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The string-producing analyses render from the miner's cached snapshot, so they measure rendering
+ * alone. The {@code fusedAnalysisPass*} benchmarks measure the scan that builds the snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnalysisBenchmark {
+    @Param({"10000", "1000000"})
+    public long rows;
+
+    private MinerHandle miner;
+    private Path report;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String file = PatientDataGenerator.cached(rows).toString();
+        miner = new MinerHandle();
+        if (!miner.loadDataFromFile(file)) {
+            throw new IllegalStateException("Failed to load " + file);
+        }
+        report = Files.createTempFile("medical_report", ".txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(report);
+    }
+
+    @Benchmark
+    public Object fusedAnalysisPass() {
+        return miner.analysisPass(null);
+    }
+
+    @Benchmark
+    public Object fusedAnalysisPassParallel() {
+        return miner.analysisPass(ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public String calculateBasicStatistics() {
+        return miner.calculateBasicStatistics();
+    }
+
+    @Benchmark
+    public String performRiskAnalysis() {
+        return miner.performRiskAnalysis();
+    }
+
+    @Benchmark
+    public String findPatterns() {
+        return miner.findPatterns();
+    }
+
+    @Benchmark
+    public String analyzeFrequency() {
+        return miner.analyzeFrequency();
+    }
+
+    @Benchmark
+    public List<?> getHighRiskPatients() {
+        return miner.getHighRiskPatients();
+    }
+
+    @Benchmark
+    public void generateReport() {
+        miner.generateReport(report.toString());
+    }
+}
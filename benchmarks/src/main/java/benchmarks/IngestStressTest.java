@@ -0,0 +1,154 @@
+package benchmarks;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hammers one {@code MedicalDataMiner} with readers while a writer appends fixed-size batches to its
+ * data file, tails them in and periodically reloads the whole file. Every batch has the same odd size,
+ * so any row count a reader observes that is not a multiple of it means a half-applied batch or a
+ * half-loaded dataset. Readers also check that the store, scores, aggregates, tier lists, index and
+ * aggregation cube of each view they take agree with each other. Exits with status 1 on the first inconsistency.
+ *
+ * <pre>java -cp benchmarks.jar benchmarks.IngestStressTest [--readers 4] [--seconds 10]
+ *     [--batch 997] [--reload-every 10]</pre>
+ */
+public final class IngestStressTest {
+    private static final Pattern TOTAL = Pattern.compile("Total Patients Analyzed: (\\d+)");
+    private static final Pattern TIER = Pattern.compile("RISK: (\\d+) patients");
+
+    private IngestStressTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int readers = 4;
+        int seconds = 10;
+        int batch = 997;
+        int reloadEvery = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--readers": readers = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--batch": batch = Integer.parseInt(args[++i]); break;
+                case "--reload-every": reloadEvery = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Usage: IngestStressTest [--readers n] [--seconds n] [--batch rows] "
+                            + "[--reload-every batches]");
+                    System.exit(2);
+            }
+        }
+
+        Path file = Files.createTempFile("ingest_stress_", ".csv");
+        file.toFile().deleteOnExit();
+        SplittableRandom random = new SplittableRandom(batch);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("ID,Name,Age,BP,Cholesterol,BloodGroup,Diagnosis\n");
+            PatientDataGenerator.writeRows(writer, 1, batch, random);
+        }
+        MinerHandle miner = new MinerHandle();
+        if (!miner.loadDataFromFile(file.toString())) {
+            throw new IllegalStateException("Cannot load " + file);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong checks = new AtomicLong();
+        List<String> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            int rowsPerBatch = batch;
+            Thread reader = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        String problem = check(miner, rowsPerBatch);
+                        checks.incrementAndGet();
+                        if (problem != null) {
+                            fail(failures, running, problem);
+                        }
+                    }
+                } catch (Throwable t) {
+                    fail(failures, running, "Reader failed: " + t);
+                }
+            }, "reader-" + r);
+            threads.add(reader);
+            reader.start();
+        }
+
+        long batches = 0;
+        long reloads = 0;
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        try {
+            while (running.get() && System.nanoTime() < deadline) {
+                try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+                    PatientDataGenerator.writeRows(writer, (batches + 1) * batch + 1, batch, random);
+                }
+                batches++;
+                if (reloadEvery > 0 && batches % reloadEvery == 0) {
+                    if (!miner.loadDataFromFile(file.toString())) {
+                        fail(failures, running, "Reload failed");
+                    }
+                    reloads++;
+                } else if (miner.tailDataFile() != batch) {
+                    fail(failures, running, "Tail did not pick up exactly one batch");
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        System.out.printf("%d readers, %d batches of %d rows, %d reloads, %,d consistent reads%n",
+                readers, batches, batch, reloads, checks.get() - failures.size());
+        if (!failures.isEmpty()) {
+            failures.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.println("No reader saw a partial batch or an inconsistent view");
+    }
+
+    // Returns a description of the first inconsistency found, or null.
+    private static String check(MinerHandle miner, int batch) {
+        int[] counts = miner.viewCounts();
+        for (int count : counts) {
+            if (count != counts[0] || count % batch != 0) {
+                return "Inconsistent view (store, scores, aggregates, tiers, index, cube): " + Arrays.toString(counts);
+            }
+        }
+        String risk = miner.performRiskAnalysis();
+        Matcher total = TOTAL.matcher(risk);
+        if (!total.find()) {
+            return "Risk analysis without a total: " + risk;
+        }
+        int patients = Integer.parseInt(total.group(1));
+        int tiers = 0;
+        for (Matcher tier = TIER.matcher(risk); tier.find(); ) {
+            tiers += Integer.parseInt(tier.group(1));
+        }
+        if (patients % batch != 0 || tiers != patients) {
+            return "Risk analysis of a partial batch: " + patients + " patients, " + tiers + " in tiers";
+        }
+        for (Object patient : miner.getHighRiskPatients()) {
+            if (patient == null) return "Missing high-risk patient";
+        }
+        return null;
+    }
+
+    private static void fail(List<String> failures, AtomicBoolean running, String problem) {
+        synchronized (failures) {
+            failures.add(problem);
+        }
+        running.set(false);
+    }
+}
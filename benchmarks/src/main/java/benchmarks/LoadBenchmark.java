@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"10000", "1000000"})
+    public long rows;
+
+    // SNAPSHOT loads the binary image written from the same CSV rather than parsing text.
+    @Param({"SEQUENTIAL", "PARALLEL", "SNAPSHOT"})
+    public String loadMode;
+
+    private String file;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        file = PatientDataGenerator.cached(rows).toString();
+        if (loadMode.equals("SNAPSHOT")) {
+            String snapshot = file.replaceFirst("\\.csv$", ".hdms");
+            MinerHandle miner = new MinerHandle();
+            if (!miner.loadDataFromFile(file)) {
+                throw new IllegalStateException("Failed to load " + file);
+            }
+            miner.saveSnapshot(snapshot);
+            file = snapshot;
+        }
+    }
+
+    @Benchmark
+    public MinerHandle loadDataFromFile() {
+        MinerHandle miner = new MinerHandle();
+        miner.setLoadMode(loadMode.equals("SNAPSHOT") ? "SEQUENTIAL" : loadMode);
+        if (!miner.loadDataFromFile(file)) {
+            throw new IllegalStateException("Failed to load " + file);
+        }
+        return miner;
+    }
+}
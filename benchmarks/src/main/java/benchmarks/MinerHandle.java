@@ -0,0 +1,247 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The application classes live in the default package, which code in a named package cannot
+ * reference, and JMH refuses default-package benchmarks. The benchmarks therefore reach
+ * {@code MedicalDataMiner} through method handles resolved once when this class loads.
+ */
+final class MinerHandle {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final Class<?> MINER = type("MedicalDataMiner");
+    private static final Class<?> STORE = type("PatientStore");
+    private static final Class<?> ACCUMULATOR = type("AnalysisAccumulator");
+    private static final Class<?> LOAD_MODE = type("LoadMode");
+    private static final Class<?> VIEW = type("DatasetView");
+    private static final Class<?> RISK_SCORES = type("RiskScores");
+    private static final Class<?> ANALYSIS = type("AnalysisSnapshot");
+    private static final Class<?> RISK_TIER = type("RiskTier");
+    private static final Class<?> CUBE = type("AggregationCube");
+    private static final Class<?> CUBE_AGGREGATE_TYPE = type("CubeAggregate");
+
+    private static final MethodHandle NEW_MINER = constructor(MINER);
+    private static final MethodHandle NEW_ACCUMULATOR = constructor(ACCUMULATOR, STORE, RISK_SCORES);
+    private static final MethodHandle LOAD = method(MINER, "loadDataFromFile", boolean.class, String.class);
+    private static final MethodHandle SAVE_SNAPSHOT = method(MINER, "saveSnapshot", void.class, String.class);
+    private static final MethodHandle SET_LOAD_MODE = method(MINER, "setLoadMode", void.class, LOAD_MODE);
+    private static final MethodHandle GET_STORE = method(MINER, "getPatientStore", STORE);
+    private static final MethodHandle STORE_SIZE = method(STORE, "size", int.class);
+    private static final MethodHandle BASIC_STATISTICS = method(MINER, "calculateBasicStatistics", String.class);
+    private static final MethodHandle RISK_ANALYSIS = method(MINER, "performRiskAnalysis", String.class);
+    private static final MethodHandle FIND_PATTERNS = method(MINER, "findPatterns", String.class);
+    private static final MethodHandle ANALYZE_FREQUENCY = method(MINER, "analyzeFrequency", String.class);
+    private static final MethodHandle HIGH_RISK = method(MINER, "getHighRiskPatients", List.class);
+    private static final MethodHandle GENERATE_REPORT = method(MINER, "generateReport", void.class, String.class);
+    private static final MethodHandle ADD_ROWS = method(ACCUMULATOR, "addRows", void.class, int.class, int.class);
+    private static final MethodHandle ADD_ROWS_PARALLEL =
+            method(ACCUMULATOR, "addRows", void.class, int.class, int.class, ForkJoinPool.class);
+    private static final MethodHandle PREDICT_DISEASE =
+            method(MINER, "predictDisease", String.class, int.class, int.class, int.class);
+    private static final MethodHandle PREDICT_BATCH = defaultRulesPredictor();
+    private static final MethodHandle GET_RISK_SCORES = method(MINER, "getRiskScores", RISK_SCORES);
+    private static final MethodHandle SNAPSHOT = method(ACCUMULATOR, "snapshot", ANALYSIS, RISK_SCORES);
+    private static final MethodHandle TAIL = method(MINER, "tailDataFile", int.class);
+    private static final MethodHandle GET_VIEW = method(MINER, "getView", VIEW);
+    private static final MethodHandle VIEW_STORE = method(VIEW, "getStore", STORE);
+    private static final MethodHandle VIEW_RISK_SCORES = method(VIEW, "getRiskScores", RISK_SCORES);
+    private static final MethodHandle VIEW_ANALYSIS = method(VIEW, "getAnalysis", ANALYSIS);
+    private static final MethodHandle VIEW_QUERY = method(VIEW, "query", type("PatientQuery"));
+    private static final MethodHandle VIEW_CUBE = method(VIEW, "getCube", CUBE);
+    private static final MethodHandle CUBE_ALL = staticMethod(CUBE, "allMembers", int[].class);
+    private static final MethodHandle CUBE_AGGREGATE = method(CUBE, "aggregate", CUBE_AGGREGATE_TYPE, int[].class);
+    private static final MethodHandle AGGREGATE_COUNT = method(CUBE_AGGREGATE_TYPE, "getCount", long.class);
+    private static final MethodHandle SCORES_SIZE = method(RISK_SCORES, "size", int.class);
+    private static final MethodHandle PATIENT_COUNT = method(ANALYSIS, "getPatientCount", int.class);
+    private static final MethodHandle TIER_COUNT = method(ANALYSIS, "getTierCount", int.class, RISK_TIER);
+    private static final MethodHandle QUERY_COUNT = method(type("PatientQuery"), "count", int.class);
+
+    private final Object miner;
+
+    MinerHandle() {
+        try {
+            miner = NEW_MINER.invoke();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    boolean loadDataFromFile(String filename) {
+        try {
+            return (boolean) LOAD.invoke(miner, filename);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    void saveSnapshot(String filename) {
+        try {
+            SAVE_SNAPSHOT.invoke(miner, filename);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    int tailDataFile() {
+        try {
+            return (int) TAIL.invoke(miner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * The row count of one published view as seen by each of its parts: the store, the risk scores,
+     * the aggregates, the tier lists summed, the index and the aggregation cube. In a consistent view
+     * they are all equal.
+     */
+    int[] viewCounts() {
+        try {
+            Object view = GET_VIEW.invoke(miner);
+            Object analysis = VIEW_ANALYSIS.invoke(view);
+            int tierTotal = 0;
+            for (Object tier : RISK_TIER.getEnumConstants()) {
+                tierTotal += (int) TIER_COUNT.invoke(analysis, tier);
+            }
+            return new int[] {
+                (int) STORE_SIZE.invoke(VIEW_STORE.invoke(view)),
+                (int) SCORES_SIZE.invoke(VIEW_RISK_SCORES.invoke(view)),
+                (int) PATIENT_COUNT.invoke(analysis),
+                tierTotal,
+                (int) QUERY_COUNT.invoke(VIEW_QUERY.invoke(view)),
+                (int) (long) AGGREGATE_COUNT.invoke(CUBE_AGGREGATE.invoke(VIEW_CUBE.invoke(view), CUBE_ALL.invoke())),
+            };
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void setLoadMode(String mode) {
+        try {
+            SET_LOAD_MODE.invoke(miner, Enum.valueOf((Class) LOAD_MODE, mode));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    String calculateBasicStatistics() { return render(BASIC_STATISTICS); }
+    String performRiskAnalysis() { return render(RISK_ANALYSIS); }
+    String findPatterns() { return render(FIND_PATTERNS); }
+    String analyzeFrequency() { return render(ANALYZE_FREQUENCY); }
+
+    List<?> getHighRiskPatients() {
+        try {
+            return (List<?>) HIGH_RISK.invoke(miner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    void generateReport(String filename) {
+        try {
+            GENERATE_REPORT.invoke(miner, filename);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    String predictDisease(int age, int bp, int cholesterol) {
+        try {
+            return (String) PREDICT_DISEASE.invoke(miner, age, bp, cholesterol);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void predictBatch(int[] ages, int[] bloodPressures, int[] cholesterols, byte[] codes) {
+        try {
+            PREDICT_BATCH.invokeExact(ages, bloodPressures, cholesterols, 0, ages.length, codes, 0);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Runs the fused analysis pass over the loaded store from scratch, bypassing the miner's cached snapshot.
+     * Risk scores are computed once at load time, so the pass reuses the miner's score column.
+     */
+    Object analysisPass(ForkJoinPool pool) {
+        try {
+            Object store = GET_STORE.invoke(miner);
+            int rows = (int) STORE_SIZE.invoke(store);
+            Object riskScores = GET_RISK_SCORES.invoke(miner);
+            Object accumulator = NEW_ACCUMULATOR.invoke(store, riskScores);
+            if (pool == null) {
+                ADD_ROWS.invoke(accumulator, 0, rows);
+            } else {
+                ADD_ROWS_PARALLEL.invoke(accumulator, 0, rows, pool);
+            }
+            return SNAPSHOT.invoke(accumulator, riskScores);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /** Binds the batch {@code RiskRules.predict} kernel to the built-in default rules. */
+    private static MethodHandle defaultRulesPredictor() {
+        Class<?> rules = type("RiskRules");
+        try {
+            Object defaults = staticMethod(rules, "defaults", rules).invoke();
+            return method(rules, "predict", void.class, int[].class, int[].class, int[].class,
+                    int.class, int.class, byte[].class, int.class).bindTo(defaults);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private String render(MethodHandle analysis) {
+        try {
+            return (String) analysis.invoke(miner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application class " + name + " is not on the classpath", e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            return LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle method(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return LOOKUP.findVirtual(owner, name, MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return LOOKUP.findStatic(owner, name, MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new IllegalStateException(t);
+    }
+}
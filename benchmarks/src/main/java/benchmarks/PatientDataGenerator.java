@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Writes synthetic files in the {@code patient_data.csv} layout. Vitals drift upward with age and
+ * with the diagnosis, so the risk tiers and patterns found in the sample data show up at scale too.
+ */
+public final class PatientDataGenerator {
+    private static final String[] FIRST_NAMES = {
+        "Rajesh", "Priya", "Amit", "Sunita", "Vikram", "Anita", "Suresh", "Kavita", "Rahul", "Deepa",
+        "Arun", "Meera", "Sanjay", "Pooja", "Manish", "Rekha", "Nitin", "Anjali", "Ravi", "Neha"
+    };
+    private static final String[] LAST_NAMES = {
+        "Kumar", "Sharma", "Patel", "Verma", "Singh", "Reddy", "Gupta", "Joshi", "Mehta", "Nair",
+        "Khanna", "Iyer", "Desai", "Rao", "Agarwal", "Pillai", "Saxena", "Chopra", "Malhotra", "Bose"
+    };
+    private static final String[] BLOOD_GROUPS = {"O+", "A+", "B+", "AB+", "O-", "A-", "B-", "AB-"};
+    private static final int[] BLOOD_GROUP_WEIGHTS = {24, 22, 22, 10, 6, 6, 6, 4};
+    private static final String[] DIAGNOSES = {"Healthy", "Hypertension", "Heart Disease", "Diabetes", "Pre-Diabetes"};
+    private static final int[] DIAGNOSIS_WEIGHTS = {48, 14, 14, 12, 12};
+    private static final int[] BP_BUMP = {0, 25, 20, 8, 5};
+    private static final int[] CHOLESTEROL_BUMP = {0, 15, 40, 20, 10};
+
+    private PatientDataGenerator() {
+    }
+
+    public static void write(Path file, long rows, long seed) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("ID,Name,Age,BP,Cholesterol,BloodGroup,Diagnosis\n");
+            writeRows(writer, 101, rows, new SplittableRandom(seed));
+        }
+    }
+
+    /** Writes {@code rows} data lines without a header, numbering patients from {@code firstId}. */
+    static void writeRows(Writer writer, long firstId, long rows, SplittableRandom random) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        for (long i = 0; i < rows; i++) {
+            int age = 18 + random.nextInt(68);
+            int diagnosis = pick(random, DIAGNOSIS_WEIGHTS);
+            int bp = 100 + age / 3 + BP_BUMP[diagnosis] + random.nextInt(25);
+            int cholesterol = 140 + age / 2 + CHOLESTEROL_BUMP[diagnosis] + random.nextInt(45);
+            line.setLength(0);
+            line.append(firstId + i).append(',')
+                .append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(' ')
+                .append(LAST_NAMES[random.nextInt(LAST_NAMES.length)]).append(',')
+                .append(age).append(',').append(bp).append(',').append(cholesterol).append(',')
+                .append(BLOOD_GROUPS[pick(random, BLOOD_GROUP_WEIGHTS)]).append(',')
+                .append(DIAGNOSES[diagnosis]).append('\n');
+            writer.append(line);
+        }
+    }
+
+    /** Returns a generated file for the given row count, reusing one from the temp directory when present. */
+    public static Path cached(long rows) throws IOException {
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"), "patient_data_" + rows + ".csv");
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            Path partial = Files.createTempFile(file.getParent(), "patient_data_", ".tmp");
+            write(partial, rows, rows);
+            Files.move(partial, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    private static int pick(SplittableRandom random, int[] weights) {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) return i;
+        }
+        return weights.length - 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: PatientDataGenerator <rows> [output.csv] [seed]");
+            System.exit(2);
+        }
+        long rows = Long.parseLong(args[0].replace("_", ""));
+        Path output = Paths.get(args.length > 1 ? args[1] : "patient_data_" + rows + ".csv");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : rows;
+        long start = System.nanoTime();
+        write(output, rows, seed);
+        System.out.printf("Wrote %,d rows to %s in %.1f s%n", rows, output, (System.nanoTime() - start) / 1e9);
+    }
+}
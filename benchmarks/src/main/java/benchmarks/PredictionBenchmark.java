@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares screening a batch through the formatted {@code predictDisease} call with the columnar
+ * {@code DiseasePredictor} kernel. Scores are reported per prediction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PredictionBenchmark {
+    private static final int BATCH = 1 << 20;
+
+    private final int[] ages = new int[BATCH];
+    private final int[] bloodPressures = new int[BATCH];
+    private final int[] cholesterols = new int[BATCH];
+    private final byte[] codes = new byte[BATCH];
+    private MinerHandle miner;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(42);
+        for (int i = 0; i < BATCH; i++) {
+            ages[i] = 18 + random.nextInt(70);
+            bloodPressures[i] = 90 + random.nextInt(100);
+            cholesterols[i] = 140 + random.nextInt(140);
+        }
+        miner = new MinerHandle();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void predictDiseaseStrings(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(miner.predictDisease(ages[i], bloodPressures[i], cholesterols[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public byte[] predictBatch() {
+        MinerHandle.predictBatch(ages, bloodPressures, cholesterols, codes);
+        return codes;
+    }
+}
@@ -0,0 +1,153 @@
+package benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test for a running {@code AnalyticsServer}: a fixed number of clients issue
+ * requests back to back for a fixed time, and the latencies of every request are reported as
+ * percentiles. Optionally reloads the dataset on a timer, to show what a reload does to tail latency.
+ *
+ * <pre>java -cp benchmarks.jar benchmarks.ServiceLoadTest [--clients 32] [--seconds 30]
+ *     [--reload-every 10] http://localhost:8080</pre>
+ */
+public final class ServiceLoadTest {
+    private static final String[] PATHS = {
+        "/api/statistics",
+        "/api/risk",
+        "/api/patterns",
+        "/api/frequency",
+        "/api/predict?age=60&bp=150&cholesterol=250",
+        "/api/patients?tier=HIGH&minAge=60&limit=50",
+        "/api/patients?diagnosis=Diabetes&bpAbove=140&offset=100&limit=20",
+    };
+
+    private ServiceLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = 32;
+        int seconds = 30;
+        int reloadEvery = 0;
+        String baseUrl = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--clients": clients = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--reload-every": reloadEvery = Integer.parseInt(args[++i]); break;
+                default: baseUrl = args[i].replaceAll("/+$", "");
+            }
+        }
+        if (baseUrl == null) {
+            System.err.println("Usage: ServiceLoadTest [--clients n] [--seconds n] [--reload-every n] <base-url>");
+            System.exit(2);
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        List<HttpRequest> requests = new ArrayList<>();
+        for (String path : PATHS) {
+            requests.add(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build());
+        }
+        HttpRequest reload = HttpRequest.newBuilder(URI.create(baseUrl + "/api/reload"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+
+        // Warm up the server's JIT before measuring
+        runClients(client, requests, clients, System.nanoTime() + Duration.ofSeconds(Math.min(5, seconds)).toNanos());
+
+        AtomicLong reloads = new AtomicLong();
+        Thread reloader = null;
+        if (reloadEvery > 0) {
+            long intervalMillis = reloadEvery * 1000L;
+            reloader = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(intervalMillis);
+                        client.send(reload, HttpResponse.BodyHandlers.discarding());
+                        reloads.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    // Test finished
+                } catch (Exception e) {
+                    System.err.println("Reload failed: " + e);
+                }
+            }, "reloader");
+            reloader.setDaemon(true);
+            reloader.start();
+        }
+        long start = System.nanoTime();
+        Result result = runClients(client, requests, clients, start + Duration.ofSeconds(seconds).toNanos());
+        long elapsed = System.nanoTime() - start;
+        if (reloader != null) reloader.interrupt();
+
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.printf("%,d requests from %d clients in %.1f s: %,.0f req/s, %,d errors, %d reloads%n",
+                latencies.length, clients, elapsed / 1e9, latencies.length * 1e9 / elapsed, result.errors,
+                reloads.get());
+        System.out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static final class Result {
+        final long[] latencies;
+        final long errors;
+
+        Result(long[] latencies, long errors) {
+            this.latencies = latencies;
+            this.errors = errors;
+        }
+    }
+
+    private static Result runClients(HttpClient client, List<HttpRequest> requests, int clients, long deadline)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int first = c;
+            futures.add(pool.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                for (int i = first; System.nanoTime() < deadline; i++) {
+                    HttpRequest request = requests.get(i % requests.size());
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) errors.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                    latencies[count++] = System.nanoTime() - begin;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        pool.shutdown();
+        long[] all = new long[0];
+        for (Future<long[]> future : futures) {
+            long[] part = future.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + part.length);
+            System.arraycopy(part, 0, all, offset, part.length);
+        }
+        return new Result(all, errors.get());
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}